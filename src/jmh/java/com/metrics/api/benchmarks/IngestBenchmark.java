@@ -0,0 +1,94 @@
+package com.metrics.api.benchmarks;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.metrics.api.datatransferobjects.SaveItemDTO;
+import com.metrics.api.datatransferobjects.UpdateItemDTO;
+import com.metrics.api.ingest.JsonValueStreamReader;
+import com.metrics.api.ingest.MetricFrames;
+import com.metrics.api.model.IngestResult;
+import com.metrics.api.model.MetricItem;
+import com.metrics.api.model.UpdateResult;
+import com.metrics.api.repository.CustomMetricRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one PUT body of valuesPerRequest values , from raw bytes to values applied in the repository : JSON
+ * bound to a list of DTOs ( PUT /metrics ) , JSON streamed into batches and 24 byte binary frames
+ * ( both PUT /metrics/bulk ). Scores are requests per second , the gc profiler adds allocation per request.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IngestBenchmark {
+
+    private static final TypeReference<List<UpdateItemDTO>> UPDATE_LIST = new TypeReference<List<UpdateItemDTO>>() {
+    };
+
+    @Param({"100"})
+    public int metrics;
+
+    @Param({"10000"})
+    public int valuesPerRequest;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final JsonValueStreamReader jsonValueStreamReader = new JsonValueStreamReader(objectMapper);
+    private CustomMetricRepository repository;
+    private byte[] jsonBody;
+    private byte[] frameBody;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        // Fresh repository per iteration so the heap does not fill up with appended values
+        repository = new CustomMetricRepository();
+        List<SaveItemDTO> postedMetrics = new ArrayList<>(metrics);
+        for (int i = 0; i < metrics; i++) {
+            postedMetrics.add(new SaveItemDTO("metric." + i, 0.0));
+        }
+        List<UUID> metricIds = new ArrayList<>(metrics);
+        for (MetricItem metricItem : repository.save(postedMetrics)) {
+            metricIds.add(metricItem.getId());
+        }
+
+        SplittableRandom random = new SplittableRandom(17);
+        List<UpdateItemDTO> updates = new ArrayList<>(valuesPerRequest);
+        ByteBuffer frames = ByteBuffer.allocate(valuesPerRequest * MetricFrames.FRAME_BYTES);
+        for (int i = 0; i < valuesPerRequest; i++) {
+            UUID metricId = metricIds.get(random.nextInt(metrics));
+            double value = random.nextDouble() * 1000;
+            updates.add(new UpdateItemDTO(metricId, value));
+            MetricFrames.encode(metricId, value, frames);
+        }
+        jsonBody = objectMapper.writeValueAsBytes(updates);
+        frameBody = frames.array();
+    }
+
+    @Benchmark
+    public List<UpdateResult> jsonBound() throws IOException {
+        List<UpdateItemDTO> updates = objectMapper.readValue(new ByteArrayInputStream(jsonBody), UPDATE_LIST);
+        return repository.update(updates);
+    }
+
+    @Benchmark
+    public IngestResult jsonStreamed() throws IOException {
+        return jsonValueStreamReader.read(new ByteArrayInputStream(jsonBody), repository::ingest);
+    }
+
+    @Benchmark
+    public IngestResult frames() throws IOException {
+        return MetricFrames.read(new ByteArrayInputStream(frameBody), repository::ingest);
+    }
+
+}
@@ -0,0 +1,245 @@
+package com.metrics.api.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.metrics.api.MetricsApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed loop load test of PUT /metrics comparing the Tomcat worker pool ( metrics.web.threads=platform ) with a
+ * virtual thread per request ( virtual , needs a JDK 21 runtime ). For each mode the application is started in
+ * this JVM with the write ahead log on, so every update parks until its group commit , then each connection count
+ * runs connections client threads , each sending its next request as soon as the previous one answered.
+ * <p>
+ * Reports requests per second and the p50 / p99 / max latency per mode and connection count. Client and server
+ * share the machine , compare modes against each other rather than reading the numbers as absolute.
+ * <p>
+ * Run with ./gradlew loadTest , options through -PloadTestArgs e.g.
+ * -PloadTestArgs="--modes=platform,virtual --connections=50,500,2000 --seconds=10" and -PloadTestJava pointing at
+ * a JDK 21 java executable for the virtual mode.
+ */
+public class LoadTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        options.put("modes", "platform,virtual");
+        options.put("connections", "50,500,2000");
+        options.put("seconds", "10");
+        options.put("warmup-seconds", "3");
+        options.put("metrics", "100000");
+        options.put("values", "10");
+        options.put("wal", "true");
+        for (String arg : args) {
+            String[] option = arg.replaceFirst("^--", "").split("=", 2);
+            options.put(option[0], option[1]);
+        }
+        List<Integer> connectionCounts = new ArrayList<>();
+        for (String count : options.get("connections").split(",")) {
+            connectionCounts.add(Integer.parseInt(count.trim()));
+        }
+        // Keep-alive connections cached per host by HttpURLConnection , one per client thread
+        System.setProperty("http.maxConnections", String.valueOf(Collections.max(connectionCounts)));
+
+        List<String> report = new ArrayList<>();
+        report.add(String.format("%-9s %11s %12s %9s %9s %9s %8s", "mode", "connections", "requests/s", "p50 ms",
+                "p99 ms", "max ms", "errors"));
+        for (String mode : options.get("modes").split(",")) {
+            ConfigurableApplicationContext context = start(mode.trim(), Boolean.parseBoolean(options.get("wal")));
+            try {
+                String base = "http://localhost:"
+                        + ((WebServerApplicationContext) context).getWebServer().getPort() + "/api";
+                List<String> metricIds = seed(base, Integer.parseInt(options.get("metrics")));
+                for (int connections : connectionCounts) {
+                    Result result = run(base, metricIds, connections, Integer.parseInt(options.get("values")),
+                            Integer.parseInt(options.get("warmup-seconds")),
+                            Integer.parseInt(options.get("seconds")));
+                    report.add(String.format("%-9s %11d %12.0f %9.2f %9.2f %9.2f %8d", mode.trim(), connections,
+                            result.throughput, result.percentileMillis(0.50), result.percentileMillis(0.99),
+                            result.percentileMillis(1.0), result.errors));
+                    System.out.println(report.get(report.size() - 1));
+                }
+            } finally {
+                context.close();
+            }
+        }
+        System.out.println();
+        for (String line : report) {
+            System.out.println(line);
+        }
+    }
+
+    private static ConfigurableApplicationContext start(String mode, boolean wal) throws IOException {
+        return new SpringApplicationBuilder(MetricsApplication.class).run(
+                "--server.port=0",
+                "--metrics.web.threads=" + mode,
+                "--metrics.wal.enabled=" + wal,
+                "--metrics.wal.directory=" + Files.createTempDirectory("load-test-wal"),
+                "--metrics.wal.snapshot-interval-ms=0",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN");
+    }
+
+    private static List<String> seed(String base, int metrics) throws IOException {
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < metrics; i++) {
+            body.append(i == 0 ? "" : ",").append("{\"name\":\"load.").append(i).append("\",\"value\":0.0}");
+        }
+        byte[] response = send(base + "/metrics", "POST", body.append(']').toString()
+                .getBytes(StandardCharsets.UTF_8));
+        List<String> metricIds = new ArrayList<>(metrics);
+        for (JsonNode metric : OBJECT_MAPPER.readTree(response)) {
+            metricIds.add(metric.get("id").asText());
+        }
+        return metricIds;
+    }
+
+    private static Result run(String base, List<String> metricIds, int connections, int values, int warmupSeconds,
+                              int seconds) throws InterruptedException {
+        // A few bodies built upfront so the clients do not spend their time on JSON
+        SplittableRandom random = new SplittableRandom(17);
+        byte[][] bodies = new byte[4096][];
+        for (int b = 0; b < bodies.length; b++) {
+            StringBuilder body = new StringBuilder("[");
+            for (int v = 0; v < values; v++) {
+                body.append(v == 0 ? "" : ",").append("{\"id\":\"")
+                        .append(metricIds.get(random.nextInt(metricIds.size()))).append("\",\"value\":")
+                        .append(random.nextDouble() * 1000).append('}');
+            }
+            bodies[b] = body.append(']').toString().getBytes(StandardCharsets.UTF_8);
+        }
+
+        long measureFrom = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long measureUntil = measureFrom + TimeUnit.SECONDS.toNanos(seconds);
+        long[][] latencies = new long[connections][];
+        int[] counts = new int[connections];
+        AtomicLong errors = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(connections);
+        for (int c = 0; c < connections; c++) {
+            int client = c;
+            Thread thread = new Thread(() -> {
+                long[] recorded = new long[1024];
+                int count = 0;
+                int next = client;
+                try {
+                    while (true) {
+                        long started = System.nanoTime();
+                        if (started >= measureUntil) {
+                            break;
+                        }
+                        try {
+                            send(base + "/metrics", "PUT", bodies[next++ % bodies.length]);
+                        } catch (IOException e) {
+                            if (started >= measureFrom) {
+                                errors.incrementAndGet();
+                            }
+                            continue;
+                        }
+                        if (started >= measureFrom) {
+                            if (count == recorded.length) {
+                                recorded = Arrays.copyOf(recorded, count << 1);
+                            }
+                            recorded[count++] = System.nanoTime() - started;
+                        }
+                    }
+                } finally {
+                    latencies[client] = recorded;
+                    counts[client] = count;
+                    done.countDown();
+                }
+            }, "load-client-" + c);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        done.await();
+
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        long[] merged = new long[total];
+        int position = 0;
+        for (int c = 0; c < connections; c++) {
+            System.arraycopy(latencies[c], 0, merged, position, counts[c]);
+            position += counts[c];
+        }
+        Arrays.sort(merged);
+        return new Result(merged, (double) total / seconds, errors.get());
+    }
+
+    private static byte[] send(String url, String method, byte[] body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod(method);
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setFixedLengthStreamingMode(body.length);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body);
+        }
+        int status = connection.getResponseCode();
+        if (status >= 300) {
+            // Drained so the connection goes back to the keep-alive cache
+            try (InputStream error = connection.getErrorStream()) {
+                if (error != null) {
+                    while (error.read() >= 0) {
+                        // discard
+                    }
+                }
+            }
+            throw new IOException(method + " " + url + " answered " + status);
+        }
+        try (InputStream in = connection.getInputStream()) {
+            return readAll(in);
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        byte[] buffer = new byte[8192];
+        int length = 0;
+        int read;
+        while ((read = in.read(buffer, length, buffer.length - length)) >= 0) {
+            length += read;
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, length << 1);
+            }
+        }
+        return Arrays.copyOf(buffer, length);
+    }
+
+
+    private static final class Result {
+
+        private final long[] sortedLatencies;
+        private final double throughput;
+        private final long errors;
+
+        private Result(long[] sortedLatencies, double throughput, long errors) {
+            this.sortedLatencies = sortedLatencies;
+            this.throughput = throughput;
+            this.errors = errors;
+        }
+
+        private double percentileMillis(double percentile) {
+            if (sortedLatencies.length == 0) {
+                return Double.NaN;
+            }
+            int index = (int) Math.ceil(percentile * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(0, index)] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.metrics.api.benchmarks;
+
+import com.metrics.api.datatransferobjects.SaveItemDTO;
+import com.metrics.api.datatransferobjects.UpdateItemDTO;
+import com.metrics.api.model.MetricItem;
+import com.metrics.api.model.UpdateResult;
+import com.metrics.api.repository.CustomMetricRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link CustomMetricRepository#save} and {@link CustomMetricRepository#update}.
+ * Each operation is one batch, so values per second is the score multiplied by batchSize.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricRepositoryBenchmark {
+
+    @Param({"1", "1000", "10000"})
+    public int metrics;
+
+    @Param({"1", "1000"})
+    public int pointsPerMetric;
+
+    @Param({"1", "100", "10000"})
+    public int batchSize;
+
+    private CustomMetricRepository repository;
+    // Saves go to their own repository , replaced every iteration so the store does not grow over the trial
+    private CustomMetricRepository saveRepository;
+    private List<UUID> metricIds;
+    private List<SaveItemDTO> saveBatch;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        repository = new CustomMetricRepository();
+        metricIds = new ArrayList<>(metrics);
+
+        List<SaveItemDTO> postedMetrics = new ArrayList<>(metrics);
+        for (int i = 0; i < metrics; i++) {
+            postedMetrics.add(new SaveItemDTO("metric." + i, 0.0));
+        }
+        for (MetricItem metricItem : repository.save(postedMetrics)) {
+            metricIds.add(metricItem.getId());
+        }
+
+        List<UpdateItemDTO> preload = new ArrayList<>();
+        for (UUID metricId : metricIds) {
+            for (int p = 1; p < pointsPerMetric; p++) {
+                preload.add(new UpdateItemDTO(metricId, (double) p));
+            }
+            if (preload.size() > 100_000) {
+                repository.update(preload);
+                preload.clear();
+            }
+        }
+        repository.update(preload);
+
+        saveBatch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            saveBatch.add(new SaveItemDTO("saved." + i, (double) i));
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void resetSaves() {
+        saveRepository = new CustomMetricRepository();
+    }
+
+    /**
+     * Per thread batch of updates spread randomly over the registered metrics
+     */
+    @State(Scope.Thread)
+    public static class UpdateBatch {
+
+        List<UpdateItemDTO> items;
+
+        @Setup(Level.Iteration)
+        public void setUp(MetricRepositoryBenchmark benchmark) {
+            SplittableRandom random = new SplittableRandom();
+            items = new ArrayList<>(benchmark.batchSize);
+            for (int i = 0; i < benchmark.batchSize; i++) {
+                UUID metricId = benchmark.metricIds.get(random.nextInt(benchmark.metrics));
+                items.add(new UpdateItemDTO(metricId, random.nextDouble() * 1000));
+            }
+        }
+    }
+
+    @Benchmark
+    public List<MetricItem> save() {
+        return saveRepository.save(saveBatch);
+    }
+
+    @Benchmark
+    public List<UpdateResult> update(UpdateBatch batch) {
+        return repository.update(batch.items);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public List<UpdateResult> update4Threads(UpdateBatch batch) {
+        return repository.update(batch.items);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public List<UpdateResult> update16Threads(UpdateBatch batch) {
+        return repository.update(batch.items);
+    }
+
+}
@@ -0,0 +1,111 @@
+package com.metrics.api.benchmarks;
+
+import com.metrics.api.datatransferobjects.SaveItemDTO;
+import com.metrics.api.datatransferobjects.UpdateItemDTO;
+import com.metrics.api.model.MetricItem;
+import com.metrics.api.persistence.DurabilityManager;
+import com.metrics.api.persistence.RecoveryReport;
+import com.metrics.api.persistence.WriteAheadLog;
+import com.metrics.api.repository.CustomMetricRepository;
+import com.metrics.api.repository.CustomStatsRepository;
+import com.metrics.api.repository.MetricLocks;
+import com.metrics.api.storage.ChunkedDoubleSeries;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Startup recovery time for totalPoints values spread over metrics , either all in the write ahead log or all
+ * in a snapshot. Each measurement is one cold recovery into a fresh repository , stats included.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+@State(Scope.Benchmark)
+public class RecoveryBenchmark {
+
+    @Param({"1000"})
+    public int metrics;
+
+    @Param({"10000000", "30000000"})
+    public int totalPoints;
+
+    @Param({"false", "true"})
+    public boolean snapshot;
+
+    private Path directory;
+    private DurabilityManager recovered;
+    private CustomMetricRepository repository;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("recovery-benchmark");
+        DurabilityManager writer = node();
+
+        List<SaveItemDTO> postedMetrics = new ArrayList<>(metrics);
+        for (int i = 0; i < metrics; i++) {
+            postedMetrics.add(new SaveItemDTO("metric." + i, 0.0));
+        }
+        List<UUID> metricIds = new ArrayList<>(metrics);
+        for (MetricItem metricItem : repository.save(postedMetrics)) {
+            metricIds.add(metricItem.getId());
+        }
+
+        SplittableRandom random = new SplittableRandom(17);
+        List<UpdateItemDTO> batch = new ArrayList<>(10_000);
+        for (int p = metrics; p < totalPoints; p++) {
+            batch.add(new UpdateItemDTO(metricIds.get(random.nextInt(metrics)), random.nextDouble() * 1000));
+            if (batch.size() == 10_000) {
+                repository.update(batch);
+                batch.clear();
+            }
+        }
+        repository.update(batch);
+
+        if (snapshot) {
+            writer.snapshot();
+        }
+        writer.stop();
+    }
+
+    @TearDown(Level.Iteration)
+    public void stopNode() {
+        recovered.stop();
+        recovered = null;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public RecoveryReport recover() throws IOException {
+        recovered = node();
+        return recovered.getRecoveryReport();
+    }
+
+    private DurabilityManager node() throws IOException {
+        MetricLocks metricLocks = new MetricLocks();
+        CustomStatsRepository statsRepository = new CustomStatsRepository(metricLocks);
+        WriteAheadLog writeAheadLog = new WriteAheadLog(directory, 5);
+        repository = new CustomMetricRepository(ChunkedDoubleSeries::new, statsRepository, metricLocks,
+                writeAheadLog);
+        DurabilityManager durabilityManager = new DurabilityManager(repository, statsRepository, writeAheadLog, 0);
+        durabilityManager.start();
+        return durabilityManager;
+    }
+}
@@ -0,0 +1,52 @@
+package com.metrics.api.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.metrics.api.model.MetricItem;
+import com.metrics.api.storage.ChunkedDoubleSeries;
+import com.metrics.api.storage.ValueSeries;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of writing the {@code List<MetricItem>} responses of POST and PUT /metrics as JSON.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    @Param({"1", "100"})
+    public int metrics;
+
+    @Param({"1", "1000", "100000"})
+    public int pointsPerMetric;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private List<MetricItem> metricItems;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        metricItems = new ArrayList<>(metrics);
+        for (int i = 0; i < metrics; i++) {
+            ValueSeries series = new ChunkedDoubleSeries();
+            for (int p = 0; p < pointsPerMetric; p++) {
+                series.append(p, p * 0.5);
+            }
+            metricItems.add(new MetricItem(UUID.randomUUID(), "metric." + i, series));
+        }
+    }
+
+    @Benchmark
+    public byte[] writeMetricItems() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(metricItems);
+    }
+
+}
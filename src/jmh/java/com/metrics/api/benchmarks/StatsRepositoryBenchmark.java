@@ -0,0 +1,126 @@
+package com.metrics.api.benchmarks;
+
+import com.metrics.api.datatransferobjects.SaveItemDTO;
+import com.metrics.api.datatransferobjects.UpdateItemDTO;
+import com.metrics.api.model.MetricItem;
+import com.metrics.api.model.StatsMode;
+import com.metrics.api.model.SummaryStatistics;
+import com.metrics.api.repository.CustomMetricRepository;
+import com.metrics.api.repository.CustomStatsRepository;
+import com.metrics.api.repository.MetricLocks;
+import com.metrics.api.storage.ChunkedDoubleSeries;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of stats rebuilds, incremental recording and reads in {@link CustomStatsRepository}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StatsRepositoryBenchmark {
+
+    @Param({"10", "1000"})
+    public int metrics;
+
+    @Param({"1", "10000"})
+    public int pointsPerMetric;
+
+    @Param({"1", "100"})
+    public int batchSize;
+
+    @Param({"EXACT", "APPROXIMATE", "LAZY_EXACT"})
+    public StatsMode statsMode;
+
+    private CustomStatsRepository statsRepository;
+    private List<MetricItem> metricItems;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        MetricLocks metricLocks = new MetricLocks();
+        statsRepository = new CustomStatsRepository(metricLocks);
+        CustomMetricRepository repository =
+                new CustomMetricRepository(ChunkedDoubleSeries::new, statsRepository, metricLocks);
+
+        List<SaveItemDTO> postedMetrics = new ArrayList<>(metrics);
+        for (int i = 0; i < metrics; i++) {
+            postedMetrics.add(new SaveItemDTO("metric." + i, 0.0, statsMode));
+        }
+        metricItems = repository.save(postedMetrics);
+
+        SplittableRandom random = new SplittableRandom(17);
+        List<UpdateItemDTO> preload = new ArrayList<>();
+        for (MetricItem metricItem : metricItems) {
+            for (int p = 1; p < pointsPerMetric; p++) {
+                preload.add(new UpdateItemDTO(metricItem.getId(), random.nextDouble() * 1000));
+            }
+            if (preload.size() > 100_000) {
+                repository.update(preload);
+                preload.clear();
+            }
+        }
+        repository.update(preload);
+    }
+
+    /**
+     * Per thread choice of metrics and values
+     */
+    @State(Scope.Thread)
+    public static class Request {
+
+        List<UUID> metricIds;
+        List<MetricItem> rebuilt;
+        long[] timestamps;
+        double[] values;
+        UUID recordedId;
+
+        @Setup(Level.Iteration)
+        public void setUp(StatsRepositoryBenchmark benchmark) {
+            SplittableRandom random = new SplittableRandom();
+            metricIds = new ArrayList<>(benchmark.batchSize);
+            for (int i = 0; i < benchmark.batchSize; i++) {
+                metricIds.add(benchmark.metricItems.get(random.nextInt(benchmark.metrics)).getId());
+            }
+            rebuilt = Collections.singletonList(benchmark.metricItems.get(random.nextInt(benchmark.metrics)));
+            long now = System.currentTimeMillis();
+            timestamps = new long[benchmark.batchSize];
+            values = new double[benchmark.batchSize];
+            for (int i = 0; i < values.length; i++) {
+                timestamps[i] = now + i;
+                values[i] = random.nextDouble() * 1000;
+            }
+            recordedId = metricIds.get(0);
+        }
+    }
+
+    @Benchmark
+    public void calculateStatsForMetrics(Request request) {
+        statsRepository.calculateStatsForMetrics(request.rebuilt);
+    }
+
+    @Benchmark
+    public void recordValues(Request request) {
+        statsRepository.recordValues(request.recordedId, request.timestamps, request.values, 0, request.values.length);
+    }
+
+    @Benchmark
+    public List<SummaryStatistics> findStatsForMetric(Request request) {
+        return statsRepository.findStatsForMetric(request.metricIds);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public List<SummaryStatistics> findStatsForMetric4Threads(Request request) {
+        return statsRepository.findStatsForMetric(request.metricIds);
+    }
+
+}
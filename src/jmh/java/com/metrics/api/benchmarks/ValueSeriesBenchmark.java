@@ -0,0 +1,96 @@
+package com.metrics.api.benchmarks;
+
+import com.metrics.api.storage.ChunkedDoubleSeries;
+import com.metrics.api.storage.CompressedValueSeries;
+import com.metrics.api.storage.ValueCursor;
+import com.metrics.api.storage.ValueSeries;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Raw chunks against XOR compressed blocks : bytes per point ( printed once per trial ) , scan throughput through a
+ * cursor , which is what reads and stats rebuilds pay , and append throughput.
+ * <p>
+ * Shapes : constant repeats one value , gauge moves by 0.1 steps like a temperature or a queue depth , counter adds
+ * small random increments and random uses random 64 bit patterns , the worst case for XOR encoding. Points come
+ * every second with a little jitter on one in ten.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValueSeriesBenchmark {
+
+    @Param({"raw", "compressed"})
+    public String encoding;
+
+    @Param({"constant", "gauge", "counter", "random"})
+    public String shape;
+
+    @Param({"100000"})
+    public int points;
+
+    private long[] timestamps;
+    private double[] values;
+    private ValueSeries series;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(7);
+        timestamps = new long[points];
+        values = new double[points];
+        long timestamp = 1_600_000_000_000L;
+        double value = 50.0;
+        for (int i = 0; i < points; i++) {
+            timestamp += random.nextInt(10) == 0 ? 1000 + random.nextInt(-20, 20) : 1000;
+            switch (shape) {
+                case "gauge":
+                    value = Math.round((value + (random.nextInt(3) - 1) * 0.1) * 10) / 10.0;
+                    break;
+                case "counter":
+                    value += random.nextInt(100);
+                    break;
+                case "random":
+                    value = Double.longBitsToDouble(random.nextLong() >>> 2);
+                    break;
+                default:
+                    break;
+            }
+            timestamps[i] = timestamp;
+            values[i] = value;
+        }
+        series = fill();
+        System.out.printf("%n%s %s : %.2f bytes per point%n", encoding, shape,
+                (double) series.estimatedHeapBytes() / points);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100_000)
+    public double scan() {
+        double sum = 0;
+        ValueCursor cursor = series.cursor(0, series.size());
+        while (cursor.next()) {
+            sum += cursor.value() + cursor.timestamp();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100_000)
+    public ValueSeries append() {
+        return fill();
+    }
+
+    private ValueSeries fill() {
+        ValueSeries filled = "compressed".equals(encoding) ? new CompressedValueSeries() : new ChunkedDoubleSeries();
+        for (int i = 0; i < points; i++) {
+            filled.append(timestamps[i], values[i]);
+        }
+        return filled;
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.metrics.api;
+
+import com.metrics.api.cluster.MetricRouter;
+import com.metrics.api.repository.MetricJournal;
+import com.metrics.api.storage.ChunkedDoubleSeries;
+import com.metrics.api.storage.CompressedValueSeries;
+import com.metrics.api.storage.ValueSeriesFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+
+@Configuration
+public class StorageConfig {
+
+    /**
+     * Storage used for the values of every metric, primitive chunks unless another factory is registered
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(name = "metrics.storage.encoding", havingValue = "raw", matchIfMissing = true)
+    public ValueSeriesFactory valueSeriesFactory() {
+        return ChunkedDoubleSeries::new;
+    }
+
+    /**
+     * Values sealed into XOR compressed blocks , for heap storage of series whose values change little
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(name = "metrics.storage.encoding", havingValue = "compressed")
+    public ValueSeriesFactory compressedValueSeriesFactory() {
+        return CompressedValueSeries::new;
+    }
+
+    /**
+     * Saves and updates are only kept in memory unless the write ahead log is enabled
+     */
+    @Bean
+    @ConditionalOnProperty(name = "metrics.wal.enabled", havingValue = "false", matchIfMissing = true)
+    public MetricJournal metricJournal() {
+        return MetricJournal.NONE;
+    }
+
+    /**
+     * Every metric is stored on this node unless cluster mode is enabled
+     */
+    @Bean
+    @ConditionalOnProperty(name = "metrics.cluster.enabled", havingValue = "false", matchIfMissing = true)
+    public MetricRouter metricRouter() {
+        return MetricRouter.LOCAL;
+    }
+}
@@ -0,0 +1,56 @@
+package com.metrics.api;
+
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ConcurrentTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+/**
+ * Runs every request , and the streamed responses written after it returns , on its own virtual thread instead of
+ * the bounded Tomcat worker pool. Requests waiting on a group commit or on the stats pipeline then park without
+ * holding a pool thread, so the number of requests in flight is only bounded by Tomcat's maxConnections.
+ * <p>
+ * Sources stay at Java 8 , the executor is looked up at startup and needs a JDK 21 or later runtime. The stats
+ * shards , the log flusher and the other long running background threads stay platform threads.
+ */
+@Configuration
+@ConditionalOnProperty(name = "metrics.web.threads", havingValue = "virtual")
+public class VirtualThreadConfig implements WebMvcConfigurer {
+
+    private final ExecutorService executor = virtualThreadPerTaskExecutor();
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadProtocolHandler() {
+        return protocolHandler -> protocolHandler.setExecutor(executor);
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(new ConcurrentTaskExecutor(executor));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    static ExecutorService virtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("metrics.web.threads=virtual needs JDK 21 or later , this is JDK "
+                    + System.getProperty("java.version"), e);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create the virtual thread executor", e);
+        }
+    }
+}
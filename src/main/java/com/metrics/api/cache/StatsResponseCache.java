@@ -0,0 +1,196 @@
+package com.metrics.api.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.metrics.api.model.SummaryStatistics;
+import com.metrics.api.repository.StatsRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Bounded LRU cache of serialized GET /metrics/summarystatistics responses , by entry count and by total bytes.
+ * <p>
+ * An entry is keyed by the requested id list ( in request order , which is the order of the response ) and
+ * percentiles, and remembers the stats version of every metric it was built from. It is served while none of those
+ * versions moved and none of its windows slid, so a dashboard polling the same ids only pays for a few volatile
+ * reads until a value is recorded.
+ */
+@Component
+public class StatsResponseCache {
+
+    // Responses bigger than this are always rebuilt , they would crowd out everything else
+    private static final int MAX_ENTRY_BYTES = 1 << 20;
+
+    public static final long DEFAULT_MAX_BYTES = 64L << 20;
+
+    private final StatsRepository statsRepository;
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+    private final int maxEntries;
+    private final long maxBytes;
+    // Access ordered , eldest first
+    private final LinkedHashMap<Key, CachedResponse> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // Bytes of every cached body , guarded by entries
+    private long bytes;
+
+    @Autowired
+    public StatsResponseCache(StatsRepository statsRepository, ObjectMapper objectMapper,
+                              @Value("${metrics.stats.cache.max-entries:1024}") int maxEntries,
+                              @Value("${metrics.stats.cache.max-bytes:67108864}") long maxBytes) {
+        this(statsRepository, objectMapper, maxEntries, maxBytes, Clock.systemUTC());
+    }
+
+    public StatsResponseCache(StatsRepository statsRepository, ObjectMapper objectMapper, int maxEntries,
+                              Clock clock) {
+        this(statsRepository, objectMapper, maxEntries, DEFAULT_MAX_BYTES, clock);
+    }
+
+    /**
+     * @param maxEntries - responses kept , 0 disables the cache
+     * @param maxBytes   - total bytes of the responses kept , the least recently used ones are evicted beyond it
+     */
+    public StatsResponseCache(StatsRepository statsRepository, ObjectMapper objectMapper, int maxEntries,
+                              long maxBytes, Clock clock) {
+        this.statsRepository = statsRepository;
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param metricIds   - requested ids
+     * @param percentiles - requested percentiles
+     * @param loader      - builds the response when there is no valid entry
+     * @return serialized JSON response
+     */
+    public byte[] get(List<UUID> metricIds, List<Double> percentiles, Supplier<List<SummaryStatistics>> loader)
+            throws JsonProcessingException {
+        if (maxEntries <= 0) {
+            return objectMapper.writeValueAsBytes(loader.get());
+        }
+
+        Key key = new Key(metricIds, percentiles);
+        CachedResponse entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry != null && entry.isValid(statsRepository, metricIds, clock.millis())) {
+            return entry.body;
+        }
+
+        // Versions are read before the stats , a write in between makes the entry stale rather than wrong
+        long[] versions = new long[metricIds.size()];
+        boolean cacheable = true;
+        for (int i = 0; i < versions.length; i++) {
+            versions[i] = statsRepository.statsVersion(metricIds.get(i));
+            cacheable &= versions[i] >= 0;
+        }
+        List<SummaryStatistics> stats = loader.get();
+        byte[] body = objectMapper.writeValueAsBytes(stats);
+
+        long validUntil = Long.MAX_VALUE;
+        for (SummaryStatistics stat : stats) {
+            validUntil = Math.min(validUntil, stat.getValidUntil() == 0 ? Long.MAX_VALUE : stat.getValidUntil());
+        }
+        if (cacheable && body.length <= Math.min(MAX_ENTRY_BYTES, maxBytes)) {
+            put(key, new CachedResponse(versions, validUntil, body));
+        }
+        return body;
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return bytes of every cached response
+     */
+    public long bytes() {
+        synchronized (entries) {
+            return bytes;
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            bytes = 0;
+        }
+    }
+
+    /**
+     * Evicts the least recently used responses until both bounds hold , the new response fits on its own
+     */
+    private void put(Key key, CachedResponse response) {
+        synchronized (entries) {
+            CachedResponse replaced = entries.put(key, response);
+            bytes += response.body.length - (replaced == null ? 0 : replaced.body.length);
+            Iterator<CachedResponse> eldest = entries.values().iterator();
+            while (entries.size() > maxEntries || bytes > maxBytes) {
+                bytes -= eldest.next().body.length;
+                eldest.remove();
+            }
+        }
+    }
+
+
+    private static final class Key {
+
+        private final List<UUID> metricIds;
+        private final List<Double> percentiles;
+        private final int hash;
+
+        private Key(List<UUID> metricIds, List<Double> percentiles) {
+            this.metricIds = new ArrayList<>(metricIds);
+            this.percentiles = new ArrayList<>(percentiles);
+            this.hash = 31 * this.metricIds.hashCode() + this.percentiles.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key that = (Key) o;
+            return hash == that.hash && metricIds.equals(that.metricIds) && percentiles.equals(that.percentiles);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+
+    private static final class CachedResponse {
+
+        private final long[] versions;
+        private final long validUntil;
+        private final byte[] body;
+
+        private CachedResponse(long[] versions, long validUntil, byte[] body) {
+            this.versions = versions;
+            this.validUntil = validUntil;
+            this.body = body;
+        }
+
+        private boolean isValid(StatsRepository statsRepository, List<UUID> metricIds, long now) {
+            if (now >= validUntil) {
+                return false;
+            }
+            for (int i = 0; i < versions.length; i++) {
+                if (statsRepository.statsVersion(metricIds.get(i)) != versions[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
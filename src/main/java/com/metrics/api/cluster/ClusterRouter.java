@@ -0,0 +1,333 @@
+package com.metrics.api.cluster;
+
+import com.metrics.api.constants.ErrorCodes;
+import com.metrics.api.datatransferobjects.SaveItemDTO;
+import com.metrics.api.datatransferobjects.UpdateItemDTO;
+import com.metrics.api.model.MetricItem;
+import com.metrics.api.model.MetricRef;
+import com.metrics.api.model.PartialStatistics;
+import com.metrics.api.model.SummaryStatistics;
+import com.metrics.api.model.UpdateResult;
+import com.metrics.api.repository.MetricDoestNotExistException;
+import com.metrics.api.repository.StatsBackpressureException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriUtils;
+
+import javax.annotation.PreDestroy;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Routes calls over a {@link HashRing} of every node of the cluster , this node being self.
+ * <p>
+ * Saves are given their id here so they can go straight to its owner , an id owned by the node holding the name of
+ * the metric so every metric sharing a name lives on one node. Calls spanning several nodes are batched into one
+ * request per node over the regular API , the remote requests run in parallel on forwarder threads while the local
+ * part runs on the calling thread. Each node applies its part on its own : a node failing does not undo
+ * the parts other nodes already applied.
+ */
+@Component
+@ConditionalOnProperty(name = "metrics.cluster.enabled", havingValue = "true")
+public class ClusterRouter implements MetricRouter {
+
+    private static final ParameterizedTypeReference<List<MetricItem>> METRIC_ITEMS =
+            new ParameterizedTypeReference<List<MetricItem>>() {
+            };
+    private static final ParameterizedTypeReference<List<MetricRef>> METRIC_REFS =
+            new ParameterizedTypeReference<List<MetricRef>>() {
+            };
+    private static final ParameterizedTypeReference<List<UpdateResult>> UPDATE_RESULTS =
+            new ParameterizedTypeReference<List<UpdateResult>>() {
+            };
+    private static final ParameterizedTypeReference<List<SummaryStatistics>> SUMMARY_STATISTICS =
+            new ParameterizedTypeReference<List<SummaryStatistics>>() {
+            };
+    private static final ParameterizedTypeReference<PartialStatistics> PARTIAL_STATISTICS =
+            new ParameterizedTypeReference<PartialStatistics>() {
+            };
+
+    private final HashRing ring;
+    private final String self;
+    private final RestTemplate restTemplate;
+    private final ExecutorService forwarder;
+
+    @Autowired
+    public ClusterRouter(RestTemplateBuilder restTemplateBuilder,
+                         @Value("${metrics.cluster.nodes}") String nodes,
+                         @Value("${metrics.cluster.self}") String self,
+                         @Value("${metrics.cluster.virtual-nodes:128}") int virtualNodes,
+                         @Value("${metrics.cluster.timeout-ms:5000}") long timeoutMillis,
+                         @Value("${metrics.cluster.forward-threads:16}") int forwardThreads) {
+        this(new HashRing(Arrays.asList(nodes.trim().split("\\s*,\\s*")), virtualNodes), self,
+                restTemplateBuilder.setConnectTimeout(Duration.ofMillis(timeoutMillis))
+                        .setReadTimeout(Duration.ofMillis(timeoutMillis)).build(), forwardThreads);
+    }
+
+    public ClusterRouter(HashRing ring, String self, RestTemplate restTemplate, int forwardThreads) {
+        if (!ring.getNodes().contains(self)) {
+            throw new IllegalArgumentException("This node " + self + " is not one of the cluster nodes");
+        }
+        this.ring = ring;
+        this.self = self;
+        this.restTemplate = restTemplate;
+        this.forwarder = Executors.newFixedThreadPool(forwardThreads, runnable -> {
+            Thread thread = new Thread(runnable, "cluster-forwarder");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public String ownerOf(UUID metricId) {
+        String owner = ring.ownerOf(metricId);
+        return self.equals(owner) ? null : owner;
+    }
+
+    @Override
+    public String ownerOfName(String name) {
+        String owner = ring.ownerOfName(name);
+        return self.equals(owner) ? null : owner;
+    }
+
+    @Override
+    public List<MetricItem> save(List<SaveItemDTO> metrics, Function<List<SaveItemDTO>, List<MetricItem>> local) {
+        List<UUID> metricIds = new ArrayList<>(metrics.size());
+        for (SaveItemDTO metric : metrics) {
+            String holder = metric.getName() == null ? null : ring.ownerOfName(metric.getName());
+            if (metric.getId() == null) {
+                // About one draw per node , until the id lands on the node holding the name
+                UUID metricId;
+                do {
+                    metricId = UUID.randomUUID();
+                } while (holder != null && !holder.equals(ring.ownerOf(metricId)));
+                metric.setId(metricId);
+            } else if (holder != null && !holder.equals(ring.ownerOf(metric.getId()))) {
+                throw new IllegalArgumentException("Metric id " + metric.getId() + " is not owned by the node "
+                        + "holding the name " + metric.getName());
+            }
+            metricIds.add(metric.getId());
+        }
+        return scatter(metricIds, metrics, local,
+                (node, part) -> exchange(node, HttpMethod.POST, "/metrics", part, METRIC_ITEMS));
+    }
+
+    @Override
+    public List<UpdateResult> update(List<UpdateItemDTO> metrics,
+                                     Function<List<UpdateItemDTO>, List<UpdateResult>> local) {
+        List<UUID> metricIds = new ArrayList<>(metrics.size());
+        for (UpdateItemDTO metric : metrics) {
+            metricIds.add(metric.getId());
+        }
+        Map<String, List<Integer>> owned = ring.partition(metricIds);
+        if (owned.size() == 1 && owned.containsKey(self)) {
+            return local.apply(metrics);
+        }
+
+        // One result per metric rather than per value , merged back by id in the order the metrics first appear
+        Map<UUID, UpdateResult> byId = new HashMap<>();
+        for (List<UpdateResult> part : gather(owned, metrics, local,
+                (node, part) -> exchange(node, HttpMethod.PUT, "/metrics", part, UPDATE_RESULTS)).values()) {
+            if (part == null) {
+                throw new IllegalStateException("Expected update results from a node");
+            }
+            for (UpdateResult result : part) {
+                byId.put(result.getId(), result);
+            }
+        }
+        List<UpdateResult> results = new ArrayList<>(byId.size());
+        for (UUID metricId : new LinkedHashSet<>(metricIds)) {
+            results.add(byId.get(metricId));
+        }
+        return results;
+    }
+
+    @Override
+    public List<SummaryStatistics> stats(List<UUID> metricIds, List<Double> percentiles, boolean consistent,
+                                         boolean partial, Function<List<UUID>, List<SummaryStatistics>> local) {
+        StringBuilder path = new StringBuilder("/metrics/summarystatistics?consistent=").append(consistent);
+        if (percentiles != null && !percentiles.isEmpty()) {
+            path.append("&percentiles=");
+            for (int i = 0; i < percentiles.size(); i++) {
+                path.append(i == 0 ? "" : ",").append(percentiles.get(i));
+            }
+        }
+        // POST , a GET carrying a body is not sent as such by every client
+        if (!partial) {
+            String statsPath = path.toString();
+            return scatter(metricIds, metricIds, local,
+                    (node, part) -> exchange(node, HttpMethod.POST, statsPath, part, SUMMARY_STATISTICS));
+        }
+
+        // The owner answers the stats it has , put back in the positions of its part with null for the missing ids
+        String statsPath = path.append("&partial=true").toString();
+        return scatter(metricIds, metricIds, local, (node, part) -> {
+            PartialStatistics answered = exchange(node, HttpMethod.POST, statsPath, part, PARTIAL_STATISTICS);
+            Map<String, SummaryStatistics> byId = new HashMap<>();
+            for (SummaryStatistics stats : answered.getStatistics()) {
+                byId.put(stats.getId(), stats);
+            }
+            List<SummaryStatistics> positioned = new ArrayList<>(part.size());
+            for (UUID metricId : part) {
+                positioned.add(byId.get(metricId.toString()));
+            }
+            return positioned;
+        });
+    }
+
+    @Override
+    public List<MetricRef> findByName(String node, String name, int limit) {
+        return exchange(node, HttpMethod.GET, "/metrics?name=" + UriUtils.encodeQueryParam(name,
+                StandardCharsets.UTF_8) + "&limit=" + limit, null, METRIC_REFS);
+    }
+
+    @Override
+    public void fetch(String node, String pathAndQuery, OutputStream body) {
+        try {
+            // The error handler of the template runs first , so body only sees the response of a call that succeeded
+            restTemplate.execute(URI.create(node + pathAndQuery), HttpMethod.GET,
+                    request -> request.getHeaders().set(FORWARDED_HEADER, self),
+                    response -> StreamUtils.copy(response.getBody(), body));
+        } catch (HttpStatusCodeException | ResourceAccessException e) {
+            throw translate(node, e);
+        }
+    }
+
+    public HashRing getRing() {
+        return ring;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        forwarder.shutdownNow();
+    }
+
+    /**
+     * Split requests by the node owning their metric , requests and metricIds go together position by position
+     *
+     * @return results of every request in the order of the requests
+     */
+    private <T, R> List<R> scatter(List<UUID> metricIds, List<T> requests, Function<List<T>, List<R>> local,
+                                   BiFunction<String, List<T>, List<R>> remote) {
+        Map<String, List<Integer>> owned = ring.partition(metricIds);
+        if (owned.size() == 1 && owned.containsKey(self)) {
+            return local.apply(requests);
+        }
+
+        List<R> results = new ArrayList<>(Collections.nCopies(requests.size(), (R) null));
+        for (Map.Entry<String, List<R>> node : gather(owned, requests, local, remote).entrySet()) {
+            place(results, owned.get(node.getKey()), node.getValue());
+        }
+        return results;
+    }
+
+    /**
+     * Send every node its part of the requests , the remote parts in parallel while the local part runs here
+     *
+     * @param owned - positions of the requests per owning node
+     * @return results per node , as answered for its part
+     */
+    private <T, R> Map<String, List<R>> gather(Map<String, List<Integer>> owned, List<T> requests,
+                                               Function<List<T>, List<R>> local,
+                                               BiFunction<String, List<T>, List<R>> remote) {
+        Map<String, Future<List<R>>> forwarded = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Integer>> node : owned.entrySet()) {
+            if (!node.getKey().equals(self)) {
+                List<T> part = select(requests, node.getValue());
+                forwarded.put(node.getKey(), forwarder.submit(() -> remote.apply(node.getKey(), part)));
+            }
+        }
+
+        Map<String, List<R>> results = new LinkedHashMap<>();
+        List<Integer> localPositions = owned.get(self);
+        if (localPositions != null) {
+            results.put(self, local.apply(select(requests, localPositions)));
+        }
+        for (Map.Entry<String, Future<List<R>>> node : forwarded.entrySet()) {
+            results.put(node.getKey(), await(node.getKey(), node.getValue()));
+        }
+        return results;
+    }
+
+    private static <T> List<T> select(List<T> requests, List<Integer> positions) {
+        List<T> part = new ArrayList<>(positions.size());
+        for (int position : positions) {
+            part.add(requests.get(position));
+        }
+        return part;
+    }
+
+    private static <R> void place(List<R> results, List<Integer> positions, List<R> part) {
+        if (part == null || part.size() != positions.size()) {
+            throw new IllegalStateException("Expected " + positions.size() + " results from a node");
+        }
+        for (int i = 0; i < positions.size(); i++) {
+            results.set(positions.get(i), part.get(i));
+        }
+    }
+
+    private static <R> R await(String node, Future<R> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NodeUnavailableException(node, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new NodeUnavailableException(node, e.getCause());
+        }
+    }
+
+    private <T> T exchange(String node, HttpMethod method, String pathAndQuery, Object body,
+                           ParameterizedTypeReference<T> type) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(FORWARDED_HEADER, self);
+        try {
+            return restTemplate.exchange(URI.create(node + pathAndQuery), method, new HttpEntity<>(body, headers),
+                    type).getBody();
+        } catch (HttpStatusCodeException | ResourceAccessException e) {
+            throw translate(node, e);
+        }
+    }
+
+    /**
+     * Same exceptions as a local call , so the controllers answer with the status the owner answered
+     */
+    private static RuntimeException translate(String node, RuntimeException e) {
+        if (!(e instanceof HttpStatusCodeException)) {
+            return new NodeUnavailableException(node, e);
+        }
+        switch (((HttpStatusCodeException) e).getStatusCode()) {
+            case NOT_FOUND:
+                return new MetricDoestNotExistException(ErrorCodes.METRIC_DOES_NOT_EXIST);
+            case BAD_REQUEST:
+                return new IllegalArgumentException("Rejected by " + node);
+            case TOO_MANY_REQUESTS:
+                return new StatsBackpressureException(ErrorCodes.STATS_BACKPRESSURE);
+            default:
+                return new NodeUnavailableException(node, e);
+        }
+    }
+}
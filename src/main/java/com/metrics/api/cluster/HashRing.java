@@ -0,0 +1,97 @@
+package com.metrics.api.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Consistent hash ring mapping metric ids , and metric names , to the node that owns them.
+ * <p>
+ * Each node is placed on the ring at virtualNodes points hashed from its url, a metric belongs to the first point
+ * at or after the hash of its id. Adding or removing a node therefore only moves the ids of the ranges next to its
+ * points, about 1 / nodes of them, and every node holding the same list of urls computes the same owners.
+ */
+public class HashRing {
+
+    private final List<String> nodes;
+    private final NavigableMap<Long, String> points = new TreeMap<>();
+
+    /**
+     * @param nodes        - base urls of every node , e.g. http://host:8080/api
+     * @param virtualNodes - points per node , more points spread the ids more evenly
+     */
+    public HashRing(List<String> nodes, int virtualNodes) {
+        if (nodes.isEmpty() || virtualNodes < 1) {
+            throw new IllegalArgumentException("A ring needs at least one node and one point per node");
+        }
+        if (new HashSet<>(nodes).size() != nodes.size()) {
+            throw new IllegalArgumentException("Cluster nodes must be distinct");
+        }
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+        MessageDigest md5 = md5();
+        for (String node : nodes) {
+            for (int i = 0; i < virtualNodes; i++) {
+                byte[] digest = md5.digest((node + "#" + i).getBytes(StandardCharsets.UTF_8));
+                long point = 0;
+                for (int b = 0; b < 8; b++) {
+                    point = (point << 8) | (digest[b] & 0xFF);
+                }
+                // Colliding points keep the first node , every ring built from the same list agrees
+                points.putIfAbsent(point, node);
+            }
+        }
+    }
+
+    /**
+     * @return url of the node owning the metric
+     */
+    public String ownerOf(UUID metricId) {
+        Map.Entry<Long, String> point = points.ceilingEntry(hash(metricId));
+        return point == null ? points.firstEntry().getValue() : point.getValue();
+    }
+
+    /**
+     * @return url of the node holding the metrics named name , names are placed on the ring like ids
+     */
+    public String ownerOfName(String name) {
+        return ownerOf(UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * @return positions of the ids grouped by the node owning them , nodes in the order of their first id
+     */
+    public Map<String, List<Integer>> partition(List<UUID> metricIds) {
+        Map<String, List<Integer>> owned = new LinkedHashMap<>();
+        for (int i = 0; i < metricIds.size(); i++) {
+            owned.computeIfAbsent(ownerOf(metricIds.get(i)), node -> new ArrayList<>()).add(i);
+        }
+        return owned;
+    }
+
+    public List<String> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Random UUIDs are already uniform , the finalizer of MurmurHash3 still mixes both halves so ids built by hand
+     * ( e.g. sequential ones ) spread over the ring too
+     */
+    private static long hash(UUID metricId) {
+        long h = metricId.getMostSignificantBits() * 31 + metricId.getLeastSignificantBits();
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static MessageDigest md5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.metrics.api.cluster;
+
+import com.metrics.api.datatransferobjects.SaveItemDTO;
+import com.metrics.api.datatransferobjects.UpdateItemDTO;
+import com.metrics.api.model.MetricItem;
+import com.metrics.api.model.MetricRef;
+import com.metrics.api.model.SummaryStatistics;
+import com.metrics.api.model.UpdateResult;
+
+import java.io.OutputStream;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Sends each call to the node owning its metrics , every metric is owned by this node unless cluster mode is on.
+ * <p>
+ * Calls spanning metrics of several nodes are split per node , the part owned by this node goes to local and the
+ * results come back in the order of the request.
+ */
+public interface MetricRouter {
+
+    /**
+     * Header marking a call forwarded by another node , it is applied locally whatever the ring says so nodes
+     * disagreeing on the ring cannot forward a call back and forth
+     */
+    String FORWARDED_HEADER = "X-Metrics-Forwarded-By";
+
+    MetricRouter LOCAL = new MetricRouter() {
+    };
+
+    /**
+     * @return base url of the node owning the metric , null when it is this node
+     */
+    default String ownerOf(UUID metricId) {
+        return null;
+    }
+
+    /**
+     * Every metric saved under a name is owned by the node holding that name , so names are unique and looked up
+     * on one node
+     *
+     * @return base url of the node holding the name , null when it is this node
+     */
+    default String ownerOfName(String name) {
+        return null;
+    }
+
+    default boolean ownsAll(List<UUID> metricIds) {
+        for (UUID metricId : metricIds) {
+            if (ownerOf(metricId) != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param local - saves the metrics owned by this node
+     */
+    default List<MetricItem> save(List<SaveItemDTO> metrics, Function<List<SaveItemDTO>, List<MetricItem>> local) {
+        return local.apply(metrics);
+    }
+
+    /**
+     * @param metrics - values whose metric id is set
+     * @param local   - appends the values of the metrics owned by this node
+     * @return one result per metric , in the order each metric first appears in metrics
+     */
+    default List<UpdateResult> update(List<UpdateItemDTO> metrics,
+                                      Function<List<UpdateItemDTO>, List<UpdateResult>> local) {
+        return local.apply(metrics);
+    }
+
+    /**
+     * @param partial - stats of unknown metrics come back null instead of failing the call
+     * @param local   - stats of the metrics owned by this node , following the same partial contract
+     */
+    default List<SummaryStatistics> stats(List<UUID> metricIds, List<Double> percentiles, boolean consistent,
+                                          boolean partial, Function<List<UUID>, List<SummaryStatistics>> local) {
+        return local.apply(metricIds);
+    }
+
+    /**
+     * @param node  - base url of the node holding the name
+     * @param limit - maximum number of metrics returned
+     * @return metrics named name on that node , oldest first
+     */
+    default List<MetricRef> findByName(String node, String name, int limit) {
+        throw new IllegalStateException("Every name is local outside cluster mode");
+    }
+
+    /**
+     * Copy the body of a GET response of another node as it arrives , nothing is written when that node fails
+     *
+     * @param node         - base url of another node
+     * @param pathAndQuery - e.g. /metrics/{id}?last=10
+     * @param body         - stream the body is copied to
+     */
+    default void fetch(String node, String pathAndQuery, OutputStream body) {
+        throw new IllegalStateException("Every metric is local outside cluster mode");
+    }
+}
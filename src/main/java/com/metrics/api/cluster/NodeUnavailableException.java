@@ -0,0 +1,8 @@
+package com.metrics.api.cluster;
+
+public class NodeUnavailableException extends RuntimeException {
+
+    public NodeUnavailableException(String node, Throwable cause) {
+        super("Node " + node + " did not answer", cause);
+    }
+}
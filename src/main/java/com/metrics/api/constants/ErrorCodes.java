@@ -9,4 +9,6 @@ public class ErrorCodes {
     public static final String METRIC_DOES_NOT_EXIST = "Metric does not exist";
     public static final String METRIC_ALREADY_EXIST = "Metric already exist";
     public static final String UUID_NOT_FOUND = "UUID not found";
+    public static final String STATS_BACKPRESSURE = "Stats pipeline is full, retry later";
+    public static final String NODE_UNAVAILABLE = "Node owning the metric is unavailable";
 }
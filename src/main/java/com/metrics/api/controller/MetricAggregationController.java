@@ -0,0 +1,81 @@
+package com.metrics.api.controller;
+
+
+import com.metrics.api.model.AggregateStatistics;
+import com.metrics.api.model.MetricItem;
+import com.metrics.api.repository.MetricRepository;
+import com.metrics.api.repository.StatsRepository;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.*;
+
+@RestController
+@AllArgsConstructor
+public class MetricAggregationController {
+
+
+    private final MetricRepository customMetricRepository;
+
+    private final StatsRepository statsRepository;
+
+
+    /**
+     * API to merge the Summary Statistics of every metric whose name matches pattern , optionally grouped by the
+     * leading dot separated segments of their names
+     *
+     * @param pattern     - name prefix or glob e.g. api.latency.*
+     * @param groupBy     - number of leading name segments forming a group , e.g. 2 merges api.latency.a and
+     *                    api.latency.b into api.latency , 0 ( default ) merges every match into one group
+     * @param percentiles - percentiles to report ( defaults to 50,90,99,99.9 ) , merged from APPROXIMATE metrics only
+     * @param limit       - maximum number of metrics selected
+     * @return one entry per group ordered by group
+     */
+    @GetMapping("/metrics/aggregate")
+    public List<AggregateStatistics> aggregate(@RequestParam String pattern,
+                                               @RequestParam(defaultValue = "0") int groupBy,
+                                               @RequestParam(required = false) List<Double> percentiles,
+                                               @RequestParam(defaultValue = "100000") int limit) {
+
+        if (groupBy < 0 || limit < 1) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, "groupBy must not be negative and limit must be positive");
+        }
+        List<Double> requested = percentiles == null ? StatsRepository.DEFAULT_PERCENTILES : percentiles;
+
+        // Search results are ordered by name , so groups come out ordered too
+        Map<String, List<UUID>> groups = new LinkedHashMap<>();
+        for (MetricItem metricItem : customMetricRepository.search(pattern, limit)) {
+            String group = groupBy == 0 ? pattern : groupOf(metricItem.getName(), groupBy);
+            groups.computeIfAbsent(group, key -> new ArrayList<>()).add(metricItem.getId());
+        }
+
+        List<AggregateStatistics> aggregates = new ArrayList<>(groups.size());
+        try {
+            for (Map.Entry<String, List<UUID>> group : groups.entrySet()) {
+                AggregateStatistics aggregate = statsRepository.aggregateStats(group.getValue(), requested);
+                aggregate.setGroup(group.getKey());
+                aggregates.add(aggregate);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+        return aggregates;
+    }
+
+    private static String groupOf(String name, int segments) {
+        int end = -1;
+        for (int i = 0; i < segments; i++) {
+            end = name.indexOf('.', end + 1);
+            if (end < 0) {
+                return name;
+            }
+        }
+        return name.substring(0, end);
+    }
+}
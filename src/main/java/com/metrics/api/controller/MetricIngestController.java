@@ -0,0 +1,99 @@
+package com.metrics.api.controller;
+
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.metrics.api.constants.ErrorCodes;
+import com.metrics.api.ingest.JsonValueStreamReader;
+import com.metrics.api.ingest.MetricFrames;
+import com.metrics.api.ingest.ValueBatchHandler;
+import com.metrics.api.model.IngestResult;
+import com.metrics.api.monitoring.IngestMetrics;
+import com.metrics.api.repository.MetricRepository;
+import com.metrics.api.repository.StatsBackpressureException;
+import com.metrics.api.repository.StatsRepository;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+
+@RestController
+@AllArgsConstructor
+public class MetricIngestController {
+
+
+    private final MetricRepository customMetricRepository;
+
+    private final StatsRepository statsRepository;
+
+    private final JsonValueStreamReader jsonValueStreamReader;
+
+    private final IngestMetrics ingestMetrics;
+
+
+    /**
+     * API to append large batches of values , the body is the same JSON array as PUT /metrics but it is parsed
+     * incrementally and applied in batches, the response only holds counts.
+     * Values of metrics that do not exist are skipped and counted as rejected.
+     *
+     * @param request - raw request , its body is streamed
+     * @return IngestResult - counts of received , accepted and rejected values
+     */
+    @PutMapping(value = "/metrics/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public IngestResult bulkUpdateMetrics(HttpServletRequest request) throws IOException {
+
+        try {
+            IngestResult result = jsonValueStreamReader.read(request.getInputStream(), applyBatch());
+            ingestMetrics.recordBatch(IngestMetrics.BULK, result.getReceived());
+            return result;
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, e.getMessage(), e);
+
+        } catch (StatsBackpressureException e) {
+            throw new ResponseStatusException(
+                    HttpStatus.TOO_MANY_REQUESTS, ErrorCodes.STATS_BACKPRESSURE, e);
+        }
+    }
+
+
+    /**
+     * API to append large batches of values encoded as fixed 24 byte frames ( UUID + double , see
+     * {@link MetricFrames} ) read straight from the request stream , the response only holds counts.
+     * Values are stamped with the time their batch is read.
+     *
+     * @param request - raw request , its body is streamed
+     * @return IngestResult - counts of received , accepted and rejected values
+     */
+    @PutMapping(value = "/metrics/bulk", consumes = MetricFrames.CONTENT_TYPE)
+    public IngestResult bulkUpdateMetricFrames(HttpServletRequest request) throws IOException {
+
+        try {
+            IngestResult result = MetricFrames.read(request.getInputStream(), applyBatch());
+            ingestMetrics.recordBatch(IngestMetrics.FRAMES, result.getReceived());
+            return result;
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, e.getMessage(), e);
+
+        } catch (StatsBackpressureException e) {
+            throw new ResponseStatusException(
+                    HttpStatus.TOO_MANY_REQUESTS, ErrorCodes.STATS_BACKPRESSURE, e);
+        }
+    }
+
+
+    private ValueBatchHandler applyBatch() {
+        return batch -> {
+            // Blocks or rejects before the batch is written when the stats pipeline is full
+            statsRepository.admit(batch.ids());
+            return customMetricRepository.ingest(batch);
+        };
+    }
+
+
+}
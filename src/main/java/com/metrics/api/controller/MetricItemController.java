@@ -1,24 +1,45 @@
 package com.metrics.api.controller;
 
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.metrics.api.cache.StatsResponseCache;
+import com.metrics.api.cluster.MetricRouter;
+import com.metrics.api.cluster.NodeUnavailableException;
 import com.metrics.api.constants.ErrorCodes;
 import com.metrics.api.datatransferobjects.SaveItemDTO;
 import com.metrics.api.datatransferobjects.UpdateItemDTO;
 import com.metrics.api.model.MetricItem;
+import com.metrics.api.model.MetricRef;
+import com.metrics.api.model.PartialStatistics;
 import com.metrics.api.model.SummaryStatistics;
+import com.metrics.api.model.UpdateResult;
+import com.metrics.api.monitoring.IngestMetrics;
+import com.metrics.api.query.MetricValuesBody;
+import com.metrics.api.query.ValueQuery;
 import com.metrics.api.repository.MetricAlreadyExistsException;
 import com.metrics.api.repository.MetricDoestNotExistException;
 import com.metrics.api.repository.MetricRepository;
+import com.metrics.api.repository.RetainedValues;
+import com.metrics.api.repository.StatsBackpressureException;
 import com.metrics.api.repository.StatsRepository;
 import lombok.AllArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @RestController
@@ -30,31 +51,45 @@ public class MetricItemController {
 
     private final StatsRepository statsRepository;
 
+    private final StatsResponseCache statsResponseCache;
+
+    private final ObjectMapper objectMapper;
+
+    private final IngestMetrics ingestMetrics;
+
+    private final MetricRouter metricRouter;
+
 
     /**
-     * API To Save Metrics
+     * API To Save Metrics , in cluster mode each metric is saved on the node owning its id
      *
      * @param saveItemDTO
      * @param response
+     * @param forwardedBy - node that forwarded the call , absent for calls from clients
      * @return savedMetrics - Newly Saved Metrics
      */
     @PostMapping("/metrics")
-    public List<MetricItem> saveMetric(@Valid @RequestBody List<SaveItemDTO> saveItemDTO, HttpServletResponse response) {
+    public List<MetricItem> saveMetric(@Valid @RequestBody List<SaveItemDTO> saveItemDTO, HttpServletResponse response,
+                                       @RequestHeader(value = MetricRouter.FORWARDED_HEADER, required = false)
+                                               String forwardedBy) {
         List<MetricItem> savedMetrics = null;
 
         try {
 
-            savedMetrics = customMetricRepository.save(saveItemDTO);
+            // Stats for each UUID are initialized by the repository
+            savedMetrics = routerFor(forwardedBy).save(saveItemDTO, customMetricRepository::save);
+            ingestMetrics.recordBatch(IngestMetrics.SAVE, saveItemDTO.size());
             response.setStatus(201);
 
-            // calculate Stats for each UUID
-            statsRepository.calculateStatsForMetrics(savedMetrics);
-
-        } catch (MetricAlreadyExistsException e) {
+        } catch (MetricAlreadyExistsException | IllegalArgumentException e) {
 
 
             throw new ResponseStatusException(
                     HttpStatus.BAD_REQUEST, e.getMessage(), e);
+
+        } catch (NodeUnavailableException e) {
+            throw new ResponseStatusException(
+                    HttpStatus.SERVICE_UNAVAILABLE, ErrorCodes.NODE_UNAVAILABLE, e);
         }
 
         return savedMetrics;
@@ -63,18 +98,49 @@ public class MetricItemController {
 
 
     /**
-     * API to retrieve details about a particular Metric
+     * API to retrieve details about a particular Metric , its values are streamed from storage. Without parameters
+     * every retained value is returned , offset / limit , last and from / to narrow them to a page whose response
+     * carries its offset and the nextOffset to continue from. In cluster mode the response of the node owning the
+     * metric is copied to the response as it arrives.
      *
      * @param id
+     * @param query    - offset , limit , last , from , to ( epoch milliseconds ) and timestamps=true to get the
+     *                 timestamp of each value , all optional
+     * @param request  - raw request , its query is passed on to the owning node
+     * @param response - written directly when the response is relayed
      */
     @GetMapping("/metrics/{id}")
-    public MetricItem helperMethod(@PathVariable String id) {
+    public ResponseEntity<StreamingResponseBody> helperMethod(@PathVariable String id, ValueQuery query,
+                                                              HttpServletRequest request,
+                                                              HttpServletResponse response) {
 
         try {
-            return customMetricRepository.find(id);
+            query.validate();
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+
+        try {
+            String owner = ownerOf(id, request.getHeader(MetricRouter.FORWARDED_HEADER));
+            if (owner != null) {
+                // Headers are only sent with the first bytes , a failing owner still gets its status mapped below
+                String queryString = request.getQueryString();
+                response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                metricRouter.fetch(owner, "/metrics/" + id + (queryString == null ? "" : "?" + queryString),
+                        response.getOutputStream());
+                return null;
+            }
+            MetricItem metricItem = customMetricRepository.find(id);
+            RetainedValues retained = customMetricRepository.retained(metricItem);
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
+                    .body(new MetricValuesBody(objectMapper.getFactory(), metricItem, retained, query));
         } catch (MetricDoestNotExistException e) {
             throw new ResponseStatusException(
                     HttpStatus.NOT_FOUND, "Metric does not exist", e);
+        } catch (NodeUnavailableException e) {
+            throw new ResponseStatusException(
+                    HttpStatus.SERVICE_UNAVAILABLE, ErrorCodes.NODE_UNAVAILABLE, e);
         } catch (Exception e) {
 
             throw new ResponseStatusException(
@@ -85,48 +151,281 @@ public class MetricItemController {
     }
 
 
+    /**
+     * API to look Metrics up by name , exact when name is given , otherwise by prefix or glob ( * and ? wildcards )
+     *
+     * @param name        - exact name
+     * @param pattern     - name prefix or glob e.g. cpu.*.user
+     * @param limit       - maximum number of metrics returned
+     * @param forwardedBy - node that forwarded the call , absent for calls from clients
+     * @return matching metrics without their values , ordered by name
+     * <p>
+     * In cluster mode an exact name is looked up on the node holding it , patterns only search this node.
+     */
+    @GetMapping("/metrics")
+    public List<MetricRef> findMetrics(@RequestParam(required = false) String name,
+                                       @RequestParam(required = false) String pattern,
+                                       @RequestParam(defaultValue = "100") int limit,
+                                       @RequestHeader(value = MetricRouter.FORWARDED_HEADER, required = false)
+                                               String forwardedBy) {
+
+        if ((name == null) == (pattern == null) || limit < 1) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, "Exactly one of name or pattern and a positive limit are required");
+        }
+        List<MetricRef> found = new ArrayList<>();
+        if (name != null) {
+            MetricRouter router = routerFor(forwardedBy);
+            String holder = router.ownerOfName(name);
+            if (holder != null) {
+                try {
+                    return router.findByName(holder, name, limit);
+                } catch (NodeUnavailableException e) {
+                    throw new ResponseStatusException(
+                            HttpStatus.SERVICE_UNAVAILABLE, ErrorCodes.NODE_UNAVAILABLE, e);
+                }
+            }
+            try {
+                found.add(new MetricRef(customMetricRepository.findByName(name)));
+            } catch (MetricDoestNotExistException e) {
+                // No metric with that name , empty result
+            } catch (IllegalArgumentException e) {
+                // Shared name , every metric holding it
+                for (MetricItem metricItem : customMetricRepository.search(name, limit)) {
+                    if (name.equals(metricItem.getName())) {
+                        found.add(new MetricRef(metricItem));
+                    }
+                }
+            }
+        } else {
+            for (MetricItem metricItem : customMetricRepository.search(pattern, limit)) {
+                found.add(new MetricRef(metricItem));
+            }
+        }
+        return found;
+    }
+
+
     /**
      * API To Retrieve Summary Statistics on metrics specified in request
      *
-     * @param metricSummary
+     * @param metricSummary ids or names of the metrics
+     * @param percentiles   optional percentiles to report e.g. 50,90,99,99.9 ( defaults to those four ) , metrics
+     *                      created in EXACT mode only report p50 , APPROXIMATE and LAZY_EXACT ones report any
+     * @param consistent    wait for every value already posted to these metrics to reach the stats ( default ) ,
+     *                      false returns the stats as they are right now
+     * @param partial       answer { statistics , missing } with the stats of the metrics that exist and the ids or
+     *                      names matching no metric , instead of a 404 for the whole request ( default false )
+     * @param forwardedBy   node that forwarded the call , absent for calls from clients
      * @return List<SummaryStatistics> Summary Statistics for Metrics Specified </SummaryStatistics>
+     * <p>
+     * POST is accepted too for clients that cannot send a body with a GET. In cluster mode names are looked up on the
+     * node holding them and the ids are batched into one request per owning node. Partial responses are not cached.
      */
-    @GetMapping("/metrics/summarystatistics")
-    public List<SummaryStatistics> getSummaryStatistics(@RequestBody List<UUID> metricSummary) {
-
-        List<SummaryStatistics> summaryStatistics = null;
+    @RequestMapping(value = "/metrics/summarystatistics", method = {RequestMethod.GET, RequestMethod.POST})
+    public ResponseEntity<byte[]> getSummaryStatistics(@RequestBody List<String> metricSummary,
+                                                       @RequestParam(required = false) List<Double> percentiles,
+                                                       @RequestParam(defaultValue = "true") boolean consistent,
+                                                       @RequestParam(defaultValue = "false") boolean partial,
+                                                       @RequestHeader(value = MetricRouter.FORWARDED_HEADER,
+                                                               required = false) String forwardedBy)
+            throws JsonProcessingException {
+
+        List<Double> requested = percentiles == null ? StatsRepository.DEFAULT_PERCENTILES : percentiles;
+        byte[] summaryStatistics = null;
         try {
-            summaryStatistics = statsRepository.findStatsForMetric(metricSummary);
+            MetricRouter router = routerFor(forwardedBy);
+            if (partial) {
+                summaryStatistics = objectMapper.writeValueAsBytes(
+                        partialStatistics(metricSummary, percentiles, requested, consistent, router));
+            } else {
+                List<UUID> metricIds = new ArrayList<>(metricSummary.size());
+                for (String idOrName : metricSummary) {
+                    metricIds.add(resolve(idOrName, router));
+                }
+                if (router.ownsAll(metricIds)) {
+                    if (consistent) {
+                        statsRepository.awaitWrites(metricIds);
+                    }
+                    summaryStatistics = statsResponseCache.get(metricIds, requested,
+                            () -> statsRepository.findStatsForMetric(metricIds, requested));
+                } else {
+                    // Each owning node answers its part from its own cache
+                    summaryStatistics = objectMapper.writeValueAsBytes(router.stats(metricIds, percentiles, consistent,
+                            false, local -> {
+                                if (consistent) {
+                                    statsRepository.awaitWrites(local);
+                                }
+                                return statsRepository.findStatsForMetric(local, requested);
+                            }));
+                }
+            }
         } catch (MetricDoestNotExistException e) {
             throw new ResponseStatusException(
                     HttpStatus.NOT_FOUND, ErrorCodes.UUID_NOT_FOUND, e);
 
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, e.getMessage(), e);
+
+        } catch (NodeUnavailableException e) {
+            throw new ResponseStatusException(
+                    HttpStatus.SERVICE_UNAVAILABLE, ErrorCodes.NODE_UNAVAILABLE, e);
         }
-        return summaryStatistics;
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(summaryStatistics);
     }
 
     /**
      * API to update Metric based on new double values
      *
-     * @param metricItems MetricItemDTO ( persistent enties should not be used as requestbody)
-     * @return updatedMetricItemList - List of Updated Values
+     * @param metricItems MetricItemDTO ( persistent enties should not be used as requestbody) , each carrying the id
+     *                    or the name of its metric , in cluster mode names are looked up on the node holding them
+     *                    and the values are batched into one request per owning node
+     * @param forwardedBy node that forwarded the call , absent for calls from clients
+     * @return updatedMetrics - one result per updated metric , in the order each metric first appears
      */
     @PutMapping("/metrics")
-    public List<MetricItem> updateMetric(@RequestBody List<UpdateItemDTO> metricItems) {
+    public List<UpdateResult> updateMetric(@RequestBody List<UpdateItemDTO> metricItems,
+                                         @RequestHeader(value = MetricRouter.FORWARDED_HEADER, required = false)
+                                                 String forwardedBy) {
 
-        List<MetricItem> updatedMetricItemList = null;
+        List<UpdateResult> updatedMetrics = null;
 
         try {
-            updatedMetricItemList = customMetricRepository.update(metricItems);
-            statsRepository.calculateStatsForMetrics(updatedMetricItemList);
-
+            MetricRouter router = routerFor(forwardedBy);
+            Map<String, UUID> named = new HashMap<>();
+            for (UpdateItemDTO metricItem : metricItems) {
+                if (metricItem.getId() == null) {
+                    UUID metricId = named.get(metricItem.getName());
+                    if (metricId == null) {
+                        metricId = idOfName(metricItem.getName(), router);
+                        named.put(metricItem.getName(), metricId);
+                    }
+                    metricItem.setId(metricId);
+                }
+            }
+
+            updatedMetrics = router.update(metricItems, local -> {
+                // Blocks or rejects before anything is written when the stats pipeline is full
+                List<UUID> metricIds = new ArrayList<>(local.size());
+                for (UpdateItemDTO metricItem : local) {
+                    metricIds.add(metricItem.getId());
+                }
+                statsRepository.admit(metricIds);
+
+                // Values are appended and handed to the stats in order by the repository
+                return customMetricRepository.update(local);
+            });
+            ingestMetrics.recordBatch(IngestMetrics.UPDATE, metricItems.size());
 
         } catch (MetricDoestNotExistException e) {
             throw new ResponseStatusException(
                     HttpStatus.NOT_FOUND, ErrorCodes.UUID_NOT_FOUND, e);
 
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, e.getMessage(), e);
+
+        } catch (StatsBackpressureException e) {
+            throw new ResponseStatusException(
+                    HttpStatus.TOO_MANY_REQUESTS, ErrorCodes.STATS_BACKPRESSURE, e);
+
+        } catch (NodeUnavailableException e) {
+            throw new ResponseStatusException(
+                    HttpStatus.SERVICE_UNAVAILABLE, ErrorCodes.NODE_UNAVAILABLE, e);
+        }
+        return updatedMetrics;
+    }
+
+
+    /**
+     * Calls forwarded by another node are for metrics this node owns , they are never routed again
+     */
+    private MetricRouter routerFor(String forwardedBy) {
+        return forwardedBy == null ? metricRouter : MetricRouter.LOCAL;
+    }
+
+    /**
+     * @return node owning the metric with that id , null when it is this node or id is not a UUID
+     */
+    private String ownerOf(String id, String forwardedBy) {
+        try {
+            return routerFor(forwardedBy).ownerOf(UUID.fromString(id));
+        } catch (IllegalArgumentException e) {
+            // Not an id , reported by the lookup
+            return null;
+        }
+    }
+
+
+    /**
+     * Stats of the requested metrics that exist , in request order , with the ids and names matching no metric
+     */
+    private PartialStatistics partialStatistics(List<String> metricSummary, List<Double> percentiles,
+                                                List<Double> requested, boolean consistent, MetricRouter router) {
+        // Position by position , null where a name matched no metric
+        List<UUID> resolved = new ArrayList<>(metricSummary.size());
+        List<UUID> metricIds = new ArrayList<>(metricSummary.size());
+        for (String idOrName : metricSummary) {
+            UUID metricId = null;
+            try {
+                metricId = resolve(idOrName, router);
+                metricIds.add(metricId);
+            } catch (MetricDoestNotExistException e) {
+                // Reported as missing
+            }
+            resolved.add(metricId);
+        }
+
+        Iterator<SummaryStatistics> found = router.stats(metricIds, percentiles, consistent, true, local -> {
+            if (consistent) {
+                statsRepository.awaitWrites(local);
+            }
+            return statsRepository.findAvailableStats(local, requested);
+        }).iterator();
+        List<SummaryStatistics> statistics = new ArrayList<>(metricIds.size());
+        List<String> missing = new ArrayList<>();
+        for (int i = 0; i < metricSummary.size(); i++) {
+            SummaryStatistics stats = resolved.get(i) == null ? null : found.next();
+            if (stats == null) {
+                missing.add(metricSummary.get(i));
+            } else {
+                statistics.add(stats);
+            }
+        }
+        return new PartialStatistics(statistics, missing);
+    }
+
+    /**
+     * Entries that parse as a UUID are ids , anything else is looked up as a name
+     */
+    private UUID resolve(String idOrName, MetricRouter router) throws MetricDoestNotExistException {
+        if (idOrName != null && idOrName.length() == 36) {
+            try {
+                return UUID.fromString(idOrName);
+            } catch (IllegalArgumentException e) {
+                // Not an id
+            }
+        }
+        return idOfName(idOrName, router);
+    }
+
+    /**
+     * Names are looked up on the node holding them , which has every metric sharing the name
+     */
+    private UUID idOfName(String name, MetricRouter router) throws MetricDoestNotExistException {
+        String holder = name == null ? null : router.ownerOfName(name);
+        if (holder == null) {
+            return customMetricRepository.findByName(name).getId();
+        }
+        List<MetricRef> found = router.findByName(holder, name, 2);
+        if (found.isEmpty()) {
+            throw new MetricDoestNotExistException("Metric does not exist");
+        }
+        if (found.size() > 1) {
+            throw new IllegalArgumentException("Metric name " + name + " is ambiguous, several metrics share it");
         }
-        return updatedMetricItemList;
+        return found.get(0).getId();
     }
 
 
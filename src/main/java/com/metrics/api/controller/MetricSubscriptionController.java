@@ -0,0 +1,60 @@
+package com.metrics.api.controller;
+
+
+import com.metrics.api.constants.ErrorCodes;
+import com.metrics.api.repository.MetricDoestNotExistException;
+import com.metrics.api.repository.MetricRepository;
+import com.metrics.api.subscription.StatsSubscriptions;
+import com.metrics.api.subscription.TooManySubscribersException;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.UUID;
+
+@RestController
+@AllArgsConstructor
+public class MetricSubscriptionController {
+
+
+    private final MetricRepository customMetricRepository;
+
+    private final StatsSubscriptions statsSubscriptions;
+
+
+    /**
+     * API to follow the Summary Statistics of metrics as server-sent events , an event named "stats" holding the
+     * same JSON as one element of GET /metrics/summarystatistics is pushed whenever a metric changed , at most once
+     * per metric every metrics.subscriptions.interval-ms
+     *
+     * @param ids - metrics to follow e.g. ids=uuid1,uuid2
+     * @return event stream
+     */
+    @GetMapping(value = "/metrics/summarystatistics/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribe(@RequestParam List<UUID> ids) {
+
+        if (ids.isEmpty()) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, "At least one metric id is required");
+        }
+        try {
+            for (UUID id : ids) {
+                customMetricRepository.find(id.toString());
+            }
+            return statsSubscriptions.subscribe(ids);
+        } catch (MetricDoestNotExistException e) {
+            throw new ResponseStatusException(
+                    HttpStatus.NOT_FOUND, ErrorCodes.UUID_NOT_FOUND, e);
+
+        } catch (TooManySubscribersException e) {
+            throw new ResponseStatusException(
+                    HttpStatus.SERVICE_UNAVAILABLE, e.getMessage(), e);
+        }
+    }
+}
@@ -1,19 +1,42 @@
 package com.metrics.api.datatransferobjects;
 
+import com.metrics.api.model.StatsMode;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import javax.validation.constraints.NotBlank;
+import java.util.UUID;
 
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 public class SaveItemDTO {
 
+    public SaveItemDTO(String name, Double value) {
+        this(name, value, StatsMode.EXACT, null);
+    }
+
+    public SaveItemDTO(String name, Double value, StatsMode statsMode) {
+        this(name, value, statsMode, null);
+    }
+
+    public SaveItemDTO(String name, Double value, StatsMode statsMode, Long timestamp) {
+        this(name, value, statsMode, timestamp, null);
+    }
+
     @NotBlank
     private String name;
 
     @NotBlank
     private Double value;
+
+    // Optional , EXACT when not specified , LAZY_EXACT for metrics written far more often than read
+    private StatsMode statsMode;
+
+    // Optional epoch milliseconds , assigned by the server when not specified
+    private Long timestamp;
+
+    // Optional , generated by the server when not specified. Set by the node routing a save to the owner of the id
+    private UUID id;
 }
@@ -11,7 +11,25 @@ import java.util.UUID;
 @NoArgsConstructor
 public class UpdateItemDTO {
 
+    public UpdateItemDTO(UUID id, Double value) {
+        this(id, value, null);
+    }
+
+    public UpdateItemDTO(UUID id, Double value, Long timestamp) {
+        this(id, value, timestamp, null);
+    }
+
+    public UpdateItemDTO(String name, Double value) {
+        this(null, value, null, name);
+    }
+
     private UUID id;
     private Double value;
 
+    // Optional epoch milliseconds , assigned by the server when not specified
+    private Long timestamp;
+
+    // Optional , name of the metric when id is not specified
+    private String name;
+
 }
@@ -0,0 +1,135 @@
+package com.metrics.api.ingest;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.metrics.api.model.IngestResult;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.UUID;
+
+/**
+ * Reads a JSON array of {"id","value","timestamp"} objects ( the PUT /metrics body ) token by token.
+ * <p>
+ * No DTO or string is materialized per value : field names come from the parser symbol table, ids are decoded
+ * straight from the parser character buffer and values are collected into a reused {@link ValueBatch} of
+ * {@link #BATCH_SIZE} entries handed to the handler as soon as it fills up. Memory stays flat whatever the size of
+ * the request.
+ */
+@Component
+public class JsonValueStreamReader {
+
+    public static final int BATCH_SIZE = 4096;
+
+    private final JsonFactory jsonFactory;
+
+    @Autowired
+    public JsonValueStreamReader(ObjectMapper objectMapper) {
+        this(objectMapper.getFactory());
+    }
+
+    public JsonValueStreamReader(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    /**
+     * @param in      - request body
+     * @param handler - applies each batch , batches before a malformed entry stay applied
+     * @throws IllegalArgumentException when an entry has no id or value
+     * @throws IOException              when the body is not valid JSON
+     */
+    public IngestResult read(InputStream in, ValueBatchHandler handler) throws IOException {
+        ValueBatch batch = new ValueBatch(BATCH_SIZE);
+        long received = 0;
+        long accepted = 0;
+        long batches = 0;
+
+        try (JsonParser parser = jsonFactory.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("Expected an array of values");
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+                UUID id = null;
+                double value = 0;
+                boolean hasValue = false;
+                long timestamp = 0;
+                boolean hasTimestamp = false;
+
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    JsonToken fieldValue = parser.nextToken();
+                    if (fieldValue == JsonToken.VALUE_NULL) {
+                        continue;
+                    }
+                    switch (field) {
+                        case "id":
+                            id = parseUuid(parser.getTextCharacters(), parser.getTextOffset(),
+                                    parser.getTextLength());
+                            break;
+                        case "value":
+                            value = parser.getDoubleValue();
+                            hasValue = true;
+                            break;
+                        case "timestamp":
+                            timestamp = parser.getLongValue();
+                            hasTimestamp = true;
+                            break;
+                        default:
+                            parser.skipChildren();
+                    }
+                }
+                if (id == null || !hasValue) {
+                    throw new IllegalArgumentException("Every value needs an id and a value");
+                }
+
+                batch.add(id, hasTimestamp ? timestamp : System.currentTimeMillis(), value);
+                received++;
+                if (batch.isFull()) {
+                    accepted += handler.apply(batch);
+                    batches++;
+                    batch.clear();
+                }
+            }
+            if (token != JsonToken.END_ARRAY) {
+                throw new IllegalArgumentException("Expected an array of values");
+            }
+        }
+
+        if (batch.size() > 0) {
+            accepted += handler.apply(batch);
+            batches++;
+        }
+        return new IngestResult(received, accepted, received - accepted, batches);
+    }
+
+    /**
+     * Decode a canonical 8-4-4-4-12 UUID without building a String
+     */
+    static UUID parseUuid(char[] chars, int offset, int length) {
+        if (length != 36 || chars[offset + 8] != '-' || chars[offset + 13] != '-' || chars[offset + 18] != '-'
+                || chars[offset + 23] != '-') {
+            throw new IllegalArgumentException("Invalid UUID " + new String(chars, offset, length));
+        }
+        long mostSignificant = hex(chars, offset, 8) << 32 | hex(chars, offset + 9, 4) << 16
+                | hex(chars, offset + 14, 4);
+        long leastSignificant = hex(chars, offset + 19, 4) << 48 | hex(chars, offset + 24, 12);
+        return new UUID(mostSignificant, leastSignificant);
+    }
+
+    private static long hex(char[] chars, int offset, int digits) {
+        long result = 0;
+        for (int i = offset; i < offset + digits; i++) {
+            int digit = Character.digit(chars[i], 16);
+            if (digit < 0) {
+                throw new IllegalArgumentException("Invalid UUID digit " + chars[i]);
+            }
+            result = result << 4 | digit;
+        }
+        return result;
+    }
+}
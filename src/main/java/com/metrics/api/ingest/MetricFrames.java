@@ -0,0 +1,105 @@
+package com.metrics.api.ingest;
+
+import com.metrics.api.model.IngestResult;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * Binary ingest protocol , a stream of fixed 24 byte big-endian frames : UUID most significant bits ( 8 ) ,
+ * least significant bits ( 8 ) and the value as an IEEE 754 double ( 8 ). Values are stamped with the time their
+ * batch is read.
+ * <p>
+ * {@link #read(InputStream, ValueBatchHandler)} decodes straight from the request stream into a reused
+ * {@link ValueBatch}, {@link #encode(UUID, double, ByteBuffer)} and {@link #decode(ByteBuffer, long, ValueBatch)}
+ * are the round-trip helpers for clients and tests.
+ */
+public final class MetricFrames {
+
+    public static final String CONTENT_TYPE = "application/x-metric-frames";
+
+    public static final int FRAME_BYTES = 24;
+
+    private MetricFrames() {
+    }
+
+    /**
+     * @param in      - stream of frames , its length must be a multiple of {@link #FRAME_BYTES}
+     * @param handler - applies each batch , batches before a truncated frame stay applied
+     * @throws IllegalArgumentException when the stream ends in the middle of a frame
+     */
+    public static IngestResult read(InputStream in, ValueBatchHandler handler) throws IOException {
+        ValueBatch batch = new ValueBatch(JsonValueStreamReader.BATCH_SIZE);
+        byte[] bytes = new byte[JsonValueStreamReader.BATCH_SIZE * FRAME_BYTES];
+        ByteBuffer frames = ByteBuffer.wrap(bytes);
+        long received = 0;
+        long accepted = 0;
+        long batches = 0;
+
+        int filled = 0;
+        int read;
+        while ((read = in.read(bytes, filled, bytes.length - filled)) != -1) {
+            filled += read;
+            if (filled < bytes.length) {
+                continue;
+            }
+            accepted += decodeAll(frames, filled, batch, handler);
+            received += batch.size();
+            batches++;
+            batch.clear();
+            filled = 0;
+        }
+
+        if (filled % FRAME_BYTES != 0) {
+            throw new IllegalArgumentException("Truncated frame , the body must be a multiple of " + FRAME_BYTES
+                    + " bytes");
+        }
+        if (filled > 0) {
+            accepted += decodeAll(frames, filled, batch, handler);
+            received += batch.size();
+            batches++;
+        }
+        return new IngestResult(received, accepted, received - accepted, batches);
+    }
+
+    /**
+     * Write one frame at the position of target
+     */
+    public static void encode(UUID metricId, double value, ByteBuffer target) {
+        target.putLong(metricId.getMostSignificantBits());
+        target.putLong(metricId.getLeastSignificantBits());
+        target.putDouble(value);
+    }
+
+    /**
+     * Write one frame to out
+     */
+    public static void encode(UUID metricId, double value, OutputStream out) throws IOException {
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_BYTES);
+        encode(metricId, value, frame);
+        out.write(frame.array());
+    }
+
+    /**
+     * Read the frame at the position of source into target
+     *
+     * @param timestamp - epoch milliseconds to stamp the value with
+     */
+    public static void decode(ByteBuffer source, long timestamp, ValueBatch target) {
+        UUID metricId = new UUID(source.getLong(), source.getLong());
+        target.add(metricId, timestamp, source.getDouble());
+    }
+
+    private static int decodeAll(ByteBuffer frames, int length, ValueBatch batch, ValueBatchHandler handler) {
+        long now = System.currentTimeMillis();
+        frames.clear();
+        frames.limit(length);
+        while (frames.hasRemaining()) {
+            decode(frames, now, batch);
+        }
+        return handler.apply(batch);
+    }
+}
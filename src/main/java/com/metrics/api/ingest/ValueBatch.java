@@ -0,0 +1,80 @@
+package com.metrics.api.ingest;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.UUID;
+
+/**
+ * Reusable batch of (metric id , timestamp , value) entries held in parallel arrays, filled by the bulk ingest
+ * readers and applied with {@link com.metrics.api.repository.MetricRepository#ingest(ValueBatch)}.
+ */
+public class ValueBatch {
+
+    private final UUID[] ids;
+    private final long[] timestamps;
+    private final double[] values;
+    private final List<UUID> idView = new IdView();
+    private int size;
+
+    public ValueBatch(int capacity) {
+        this.ids = new UUID[capacity];
+        this.timestamps = new long[capacity];
+        this.values = new double[capacity];
+    }
+
+    public void add(UUID id, long timestamp, double value) {
+        ids[size] = id;
+        timestamps[size] = timestamp;
+        values[size] = value;
+        size++;
+    }
+
+    public boolean isFull() {
+        return size == ids.length;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public UUID getId(int index) {
+        return ids[index];
+    }
+
+    public long getTimestamp(int index) {
+        return timestamps[index];
+    }
+
+    public double getValue(int index) {
+        return values[index];
+    }
+
+    /**
+     * @return read-only view of the ids currently in the batch , one entry per value
+     */
+    public List<UUID> ids() {
+        return idView;
+    }
+
+
+    private final class IdView extends AbstractList<UUID> implements RandomAccess {
+
+        @Override
+        public UUID get(int index) {
+            if (index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return ids[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.metrics.api.ingest;
+
+/**
+ * Applies the batches read from a bulk ingest stream
+ */
+@FunctionalInterface
+public interface ValueBatchHandler {
+
+    /**
+     * @param batch - values read so far , reused for the next batch once this returns
+     * @return number of values applied
+     */
+    int apply(ValueBatch batch);
+}
@@ -0,0 +1,34 @@
+package com.metrics.api.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Stats merged across a selection of metrics , as if all their values had been posted to one metric
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AggregateStatistics {
+
+    // Name prefix shared by the metrics of the group , or the pattern when not grouped
+    private String group;
+    // Metrics merged
+    private Integer metrics;
+    private Long count;
+    private Double sum;
+    private Double mean;
+    private Double min;
+    private Double max;
+    private Double variance;
+    private Double standardDeviation;
+    // Merged from the sketches of the APPROXIMATE metrics only , keyed like p50 , p99.9
+    private Map<String, Double> percentiles;
+    // Metrics whose values the percentiles cover
+    private Integer quantileMetrics;
+    private Double rankErrorBound;
+
+}
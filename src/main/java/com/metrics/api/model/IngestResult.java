@@ -0,0 +1,23 @@
+package com.metrics.api.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Acknowledgement of a bulk ingest , counts only so the response stays small whatever the size of the request
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class IngestResult {
+
+    // Values read from the request
+    private long received;
+    // Values appended to their metric
+    private long accepted;
+    // Values skipped because their metric does not exist
+    private long rejected;
+    private long batches;
+
+}
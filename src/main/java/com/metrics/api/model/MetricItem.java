@@ -1,9 +1,15 @@
 package com.metrics.api.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.metrics.api.storage.ChunkedDoubleSeries;
+import com.metrics.api.storage.RollupSeries;
+import com.metrics.api.storage.ValueSeries;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
@@ -14,6 +20,24 @@ import java.util.UUID;
 public class MetricItem {
 
 
+    public MetricItem(UUID id, String name, List<Double> values) {
+        this.id = id;
+        this.name = name;
+        this.statsMode = StatsMode.EXACT;
+        setValues(values);
+    }
+
+    public MetricItem(UUID id, String name, ValueSeries series) {
+        this(id, name, series, StatsMode.EXACT);
+    }
+
+    public MetricItem(UUID id, String name, ValueSeries series, StatsMode statsMode) {
+        this.id = id;
+        this.name = name;
+        this.series = series;
+        this.statsMode = statsMode;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -27,9 +51,51 @@ public class MetricItem {
         return Objects.hash(id);
     }
 
+    /**
+     * @return read-only view of the values posted to the metric so far
+     */
+    public List<Double> getValues() {
+        return series == null ? Collections.emptyList() : series.asList();
+    }
+
+    /**
+     * @return rollups of the values compacted out of the series , oldest first , empty without retention
+     */
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    public List<Rollup> getRollups() {
+        return rollupSeries == null ? Collections.emptyList() : rollupSeries.toList();
+    }
+
+    /**
+     * @return number of values posted so far , including the ones compacted into rollups
+     */
+    @JsonIgnore
+    public long getTotalCount() {
+        return evicted + (series == null ? 0 : series.size());
+    }
+
+    public void setValues(List<Double> values) {
+        ValueSeries copy = new ChunkedDoubleSeries();
+        if (values != null) {
+            long now = System.currentTimeMillis();
+            for (Double value : values) {
+                copy.append(now, value);
+            }
+        }
+        this.series = copy;
+    }
+
     private UUID id;
     private String name;
-    private List<Double> values;
+    // Replaced by the retention compactor , readers holding the previous series keep a valid copy
+    @JsonIgnore
+    private volatile ValueSeries series;
+    private StatsMode statsMode;
+    // Values compacted out of the front of the series so far , written with the series under the metric lock
+    @JsonIgnore
+    private long evicted;
+    @JsonIgnore
+    private RollupSeries rollupSeries;
 
 
 }
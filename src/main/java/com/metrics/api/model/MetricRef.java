@@ -0,0 +1,27 @@
+package com.metrics.api.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * Identity of a metric without its values , returned by name searches
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MetricRef {
+
+    public MetricRef(MetricItem metricItem) {
+        this(metricItem.getId(), metricItem.getName(), metricItem.getStatsMode(), metricItem.getTotalCount());
+    }
+
+    private UUID id;
+    private String name;
+    private StatsMode statsMode;
+    // Number of values posted so far , including compacted ones
+    private long count;
+
+}
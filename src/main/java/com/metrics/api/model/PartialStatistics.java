@@ -0,0 +1,22 @@
+package com.metrics.api.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Summary Statistics of the requested metrics that exist , along with the ids or names that matched no metric
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PartialStatistics {
+
+    // In request order , skipping the missing ones
+    private List<SummaryStatistics> statistics;
+    // Ids or names as requested
+    private List<String> missing;
+
+}
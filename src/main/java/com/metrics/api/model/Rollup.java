@@ -0,0 +1,23 @@
+package com.metrics.api.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Values of a metric compacted into one fixed interval , see metrics.retention
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class Rollup {
+
+    // Epoch milliseconds , the interval covers [start , start + rollup interval)
+    private Long start;
+    private Long count;
+    private Double sum;
+    private Double mean;
+    private Double min;
+    private Double max;
+
+}
@@ -0,0 +1,24 @@
+package com.metrics.api.model;
+
+/**
+ * How the quantiles of a metric are tracked, chosen when the metric is created.
+ */
+public enum StatsMode {
+
+    /**
+     * Exact median kept in a max heap / min heap pair, memory grows with every value
+     */
+    EXACT,
+
+    /**
+     * Any percentile estimated from a KLL sketch, memory stays bounded whatever the ingest volume
+     */
+    APPROXIMATE,
+
+    /**
+     * Any percentile exact , values are only appended on write and selected on the first read after a write. For
+     * metrics written far more often than their stats are read
+     */
+    LAZY_EXACT
+
+}
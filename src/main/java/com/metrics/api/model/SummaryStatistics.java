@@ -1,11 +1,14 @@
 package com.metrics.api.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.metrics.api.statistics.QuantileEstimator;
+import com.metrics.api.statistics.RunningMoments;
+import com.metrics.api.statistics.TimeWindow;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.util.PriorityQueue;
+import java.util.Map;
 
 
 @Data
@@ -17,8 +20,33 @@ public class SummaryStatistics {
     private Double median;
     private Double min;
     private Double max;
+    private Double variance;
+    private Double standardDeviation;
+    private Long count;
     private String id;
+    private StatsMode statsMode;
+    // Requested percentiles keyed like p50 , p99.9
+    private Map<String, Double> percentiles;
+    // Normalized rank error of median and percentiles, 0 when exact
+    private Double rankErrorBound;
+    // Approximate bytes held by the stats of the metric
+    private Long memoryBytes;
+    // Stats over the values timestamped within each configured window , keyed like 1s , 1m , 1h
+    private Map<String, WindowStatistics> windows;
     @JsonIgnore
-    private PriorityQueue<Double> maintainOrder;
+    private QuantileEstimator quantileEstimator;
+    @JsonIgnore
+    private RunningMoments moments;
+    @JsonIgnore
+    private Map<String, TimeWindow> timeWindows;
+    // Bumped by the writer on every change , snapshots carry the version they were taken at
+    @JsonIgnore
+    private volatile long version;
+    // Epoch milliseconds after which a snapshot is stale even without writes , its windows have moved on
+    @JsonIgnore
+    private long validUntil;
+    // Latest published copy with the default percentiles , never modified once published
+    @JsonIgnore
+    private volatile SummaryStatistics snapshot;
 
 }
@@ -0,0 +1,24 @@
+package com.metrics.api.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * Acknowledgement of the values an update appended to one metric , without the values themselves
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UpdateResult {
+
+    private UUID id;
+    private String name;
+    // Values of the request appended to the metric
+    private int appended;
+    // Number of values posted so far , including compacted ones
+    private long count;
+
+}
@@ -0,0 +1,25 @@
+package com.metrics.api.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Stats over the values of a metric timestamped within a sliding window ending now.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class WindowStatistics {
+
+    private Long count;
+    private Double mean;
+    // Estimated from per bucket sketches , see rankErrorBound
+    private Double median;
+    private Double min;
+    private Double max;
+    private Double rankErrorBound;
+    // Approximate bytes held by the buckets of the window
+    private Long memoryBytes;
+
+}
@@ -0,0 +1,71 @@
+package com.metrics.api.monitoring;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Histograms of the number of values each ingest request carries , tagged by endpoint.
+ * <p>
+ * Recording is a no-op until the registry binds the summaries , so controllers can record unconditionally.
+ */
+@Component
+public class IngestMetrics implements MeterBinder {
+
+    public static final String SAVE = "save";
+    public static final String UPDATE = "update";
+    public static final String BULK = "bulk";
+    public static final String FRAMES = "frames";
+
+    private volatile DistributionSummary save;
+    private volatile DistributionSummary update;
+    private volatile DistributionSummary bulk;
+    private volatile DistributionSummary frames;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        save = batchSize(registry, SAVE);
+        update = batchSize(registry, UPDATE);
+        bulk = batchSize(registry, BULK);
+        frames = batchSize(registry, FRAMES);
+    }
+
+    /**
+     * @param endpoint - one of {@link #SAVE} , {@link #UPDATE} , {@link #BULK} or {@link #FRAMES}
+     * @param size     - values carried by the request
+     */
+    public void recordBatch(String endpoint, long size) {
+        DistributionSummary summary;
+        switch (endpoint) {
+            case SAVE:
+                summary = save;
+                break;
+            case UPDATE:
+                summary = update;
+                break;
+            case BULK:
+                summary = bulk;
+                break;
+            case FRAMES:
+                summary = frames;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown ingest endpoint " + endpoint);
+        }
+        if (summary != null) {
+            summary.record(size);
+        }
+    }
+
+    private static DistributionSummary batchSize(MeterRegistry registry, String endpoint) {
+        return DistributionSummary.builder("metricdata.ingest.batch.size")
+                .description("Values carried by each ingest request")
+                .baseUnit("values")
+                .tag("endpoint", endpoint)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(1.0)
+                .maximumExpectedValue(1_000_000.0)
+                .register(registry);
+    }
+}
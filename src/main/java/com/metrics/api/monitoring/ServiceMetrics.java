@@ -0,0 +1,141 @@
+package com.metrics.api.monitoring;
+
+import com.metrics.api.model.MetricItem;
+import com.metrics.api.repository.CustomMetricRepository;
+import com.metrics.api.repository.CustomStatsRepository;
+import com.metrics.api.repository.PipelinedStatsRepository;
+import com.metrics.api.repository.StatsRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Meters over the counters and sizes the repositories already keep , registered with the actuator registry.
+ * <p>
+ * Counters read LongAdders bumped on the hot paths, so the repositories do not depend on Micrometer and recording
+ * costs one uncontended add. The memory gauges walk every metric, the walk is shared by the gauges of one scrape
+ * and reused for {@link #FOOTPRINT_TTL_MILLIS}. Heap bytes per metric are reported as a mean and a max instead of
+ * one series per metric to keep the number of series independent of the number of metrics.
+ */
+@Component
+public class ServiceMetrics implements MeterBinder {
+
+    static final long FOOTPRINT_TTL_MILLIS = 1000;
+
+    private final CustomMetricRepository metricRepository;
+    private final CustomStatsRepository customStatsRepository;
+    private final StatsRepository statsRepository;
+    private volatile Footprint footprint;
+
+    @Autowired
+    public ServiceMetrics(CustomMetricRepository metricRepository, CustomStatsRepository customStatsRepository,
+                          StatsRepository statsRepository) {
+        this.metricRepository = metricRepository;
+        this.customStatsRepository = customStatsRepository;
+        this.statsRepository = statsRepository;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("metricdata.ingest.values", metricRepository, CustomMetricRepository::ingestedValues)
+                .description("Values appended by save , update and bulk requests")
+                .baseUnit("values")
+                .register(registry);
+        FunctionCounter.builder("metricdata.stats.recorded", customStatsRepository,
+                CustomStatsRepository::recordedValues)
+                .description("Appended values recorded into the summary statistics , saves and rebuilds excluded")
+                .baseUnit("values")
+                .register(registry);
+        FunctionCounter.builder("metricdata.stats.reads", customStatsRepository, CustomStatsRepository::statsReads)
+                .description("Summary statistics of a metric read")
+                .register(registry);
+        FunctionCounter.builder("metricdata.stats.snapshot.hits", customStatsRepository,
+                CustomStatsRepository::snapshotHits)
+                .description("Summary statistics reads served from the published snapshot")
+                .register(registry);
+
+        Gauge.builder("metricdata.metrics", metricRepository, CustomMetricRepository::metricCount)
+                .description("Metrics stored")
+                .register(registry);
+        Gauge.builder("metricdata.values.stored", this, metrics -> metrics.footprint().storedValues)
+                .description("Raw values retained across every metric")
+                .baseUnit("values")
+                .register(registry);
+        if (statsRepository instanceof PipelinedStatsRepository) {
+            Gauge.builder("metricdata.stats.queue.depth", (PipelinedStatsRepository) statsRepository,
+                    PipelinedStatsRepository::pendingValues)
+                    .description("Values waiting for the stats shards")
+                    .baseUnit("values")
+                    .register(registry);
+        }
+
+        Gauge.builder("metricdata.memory.estimated", this, metrics -> metrics.footprint().valueBytes)
+                .description("Estimated heap bytes across every metric")
+                .baseUnit("bytes")
+                .tag("kind", "values")
+                .register(registry);
+        Gauge.builder("metricdata.memory.estimated", this, metrics -> metrics.footprint().statsBytes)
+                .description("Estimated heap bytes across every metric")
+                .baseUnit("bytes")
+                .tag("kind", "stats")
+                .register(registry);
+        Gauge.builder("metricdata.memory.per.metric", this, metrics -> metrics.footprint().meanBytes())
+                .description("Estimated heap bytes of a metric , values and stats")
+                .baseUnit("bytes")
+                .tag("statistic", "mean")
+                .register(registry);
+        Gauge.builder("metricdata.memory.per.metric", this, metrics -> metrics.footprint().maxBytes)
+                .description("Estimated heap bytes of a metric , values and stats")
+                .baseUnit("bytes")
+                .tag("statistic", "max")
+                .register(registry);
+    }
+
+    /**
+     * @return sizes of every metric , walked again once the previous walk is older than the ttl
+     */
+    Footprint footprint() {
+        long now = System.currentTimeMillis();
+        Footprint current = footprint;
+        if (current == null || now - current.takenAt >= FOOTPRINT_TTL_MILLIS) {
+            current = new Footprint(now);
+            // Sizes are read without the metric locks , they may lag behind concurrent writes
+            for (MetricItem metricItem : metricRepository.metrics()) {
+                current.add(metricItem.getSeries().size(), metricItem.getSeries().estimatedHeapBytes(),
+                        customStatsRepository.estimatedBytes(metricItem.getId()));
+            }
+            footprint = current;
+        }
+        return current;
+    }
+
+
+    static final class Footprint {
+
+        final long takenAt;
+        long metrics;
+        long storedValues;
+        long valueBytes;
+        long statsBytes;
+        long maxBytes;
+
+        Footprint(long takenAt) {
+            this.takenAt = takenAt;
+        }
+
+        void add(int values, long metricValueBytes, long metricStatsBytes) {
+            metrics++;
+            storedValues += values;
+            valueBytes += metricValueBytes;
+            statsBytes += metricStatsBytes;
+            maxBytes = Math.max(maxBytes, metricValueBytes + metricStatsBytes);
+        }
+
+        double meanBytes() {
+            return metrics == 0 ? 0 : (double) (valueBytes + statsBytes) / metrics;
+        }
+    }
+}
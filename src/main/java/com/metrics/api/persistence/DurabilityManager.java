@@ -0,0 +1,156 @@
+package com.metrics.api.persistence;
+
+import com.metrics.api.model.MetricItem;
+import com.metrics.api.model.StatsMode;
+import com.metrics.api.repository.CustomMetricRepository;
+import com.metrics.api.repository.StatsRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recovers the metrics on startup and takes periodic snapshots so the log stays short.
+ * <p>
+ * Recovery loads the latest snapshot, replays the log segments from the one it is numbered after, then builds the
+ * stats of every metric once. A snapshot rotates the log first and is numbered after the segment that was active
+ * before the rotation : a save or update logged just before the rotation may not have reached memory when its
+ * metric is copied, replaying that segment again is harmless since records already applied are skipped.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "metrics.wal.enabled", havingValue = "true")
+public class DurabilityManager {
+
+    private final CustomMetricRepository repository;
+    private final StatsRepository statsRepository;
+    private final WriteAheadLog writeAheadLog;
+    private final long snapshotIntervalMillis;
+    private ScheduledExecutorService snapshotter;
+    private RecoveryReport recoveryReport;
+
+    @Autowired
+    public DurabilityManager(CustomMetricRepository repository, StatsRepository statsRepository,
+                             WriteAheadLog writeAheadLog,
+                             @Value("${metrics.wal.snapshot-interval-ms:300000}") long snapshotIntervalMillis) {
+        this.repository = repository;
+        this.statsRepository = statsRepository;
+        this.writeAheadLog = writeAheadLog;
+        this.snapshotIntervalMillis = snapshotIntervalMillis;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        recoveryReport = recover();
+        log.info("Recovered {} metrics , {} values from the snapshot and {} log records in {} ms",
+                recoveryReport.getMetrics(), recoveryReport.getSnapshotValues(), recoveryReport.getReplayedRecords(),
+                recoveryReport.getMillis());
+
+        NavigableMap<Long, Path> segments = WriteAheadLog.segments(writeAheadLog.getDirectory());
+        NavigableMap<Long, Path> snapshots = MetricSnapshot.snapshots(writeAheadLog.getDirectory());
+        long next = Math.max(segments.isEmpty() ? 0 : segments.lastKey() + 1,
+                snapshots.isEmpty() ? 0 : snapshots.lastKey());
+        writeAheadLog.start(next);
+
+        if (snapshotIntervalMillis > 0) {
+            snapshotter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "wal-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            snapshotter.scheduleWithFixedDelay(() -> {
+                try {
+                    snapshot();
+                } catch (IOException | RuntimeException e) {
+                    log.error("Failed to snapshot the metrics", e);
+                }
+            }, snapshotIntervalMillis, snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return what the startup recovery restored , null before {@link #start()}
+     */
+    public RecoveryReport getRecoveryReport() {
+        return recoveryReport;
+    }
+
+    /**
+     * Restore the latest snapshot and the log written after it into the repository
+     */
+    private RecoveryReport recover() throws IOException {
+        long started = System.nanoTime();
+        Path directory = writeAheadLog.getDirectory();
+
+        long replayFrom = 0;
+        long snapshotValues = 0;
+        Map.Entry<Long, Path> snapshot = MetricSnapshot.snapshots(directory).lastEntry();
+        if (snapshot != null) {
+            replayFrom = snapshot.getKey();
+            snapshotValues = MetricSnapshot.load(snapshot.getValue(), repository);
+        }
+
+        long records = 0;
+        WriteAheadLog.Replayer replayer = new WriteAheadLog.Replayer() {
+            @Override
+            public void save(UUID metricId, String name, StatsMode statsMode, long timestamp, double value) {
+                repository.restoreMetric(metricId, name, statsMode);
+                repository.restoreValue(metricId, 0, timestamp, value);
+            }
+
+            @Override
+            public void update(UUID metricId, int index, long timestamp, double value) {
+                repository.restoreValue(metricId, index, timestamp, value);
+            }
+        };
+        for (Path segment : WriteAheadLog.segments(directory).tailMap(replayFrom, true).values()) {
+            records += WriteAheadLog.replay(segment, replayer);
+        }
+
+        repository.rebuildStats();
+        List<UUID> metricIds = new ArrayList<>();
+        for (MetricItem metricItem : repository.metrics()) {
+            metricIds.add(metricItem.getId());
+        }
+        statsRepository.awaitWrites(metricIds);
+
+        return new RecoveryReport(metricIds.size(), snapshotValues, records,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    /**
+     * Write a snapshot of every metric and drop the log segments and snapshots it makes obsolete
+     *
+     * @return the snapshot file
+     */
+    public synchronized Path snapshot() throws IOException {
+        long replayFrom = writeAheadLog.rotate();
+        Path directory = writeAheadLog.getDirectory();
+        Path snapshot = MetricSnapshot.write(directory, replayFrom, repository);
+
+        writeAheadLog.deleteSegmentsBefore(replayFrom);
+        for (Path obsolete : MetricSnapshot.snapshots(directory).headMap(replayFrom).values()) {
+            Files.delete(obsolete);
+        }
+        return snapshot;
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (snapshotter != null) {
+            snapshotter.shutdownNow();
+        }
+        writeAheadLog.close();
+    }
+}
@@ -0,0 +1,195 @@
+package com.metrics.api.persistence;
+
+import com.metrics.api.model.MetricItem;
+import com.metrics.api.model.StatsMode;
+import com.metrics.api.repository.CustomMetricRepository;
+import com.metrics.api.repository.RetainedValues;
+import com.metrics.api.statistics.RunningMoments;
+import com.metrics.api.storage.RollupSeries;
+import com.metrics.api.storage.ValueCursor;
+import com.metrics.api.storage.ValueSeries;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Point in time copy of every metric , its name , stats mode , values and timestamps , and the rollups of the
+ * values compacted by retention along with the moments of the rollups dropped past the limit.
+ * <p>
+ * A snapshot is numbered after the first log segment that has to be replayed on top of it. It is written to a
+ * temporary file , fsynced and atomically renamed , so a crash while writing leaves the previous snapshot intact.
+ * Stats are not stored , they are rebuilt from the restored rollups and values in a single pass.
+ */
+public final class MetricSnapshot {
+
+    private static final int MAGIC = 0x4d534e50;
+    private static final int VERSION = 3;
+    // Snapshots written before retention , without compaction counts or rollups
+    private static final int VERSION_WITHOUT_ROLLUPS = 1;
+    // Snapshots written before dropped rollups were kept , their dropped moments are lost
+    private static final int VERSION_WITHOUT_DROPPED = 2;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".bin";
+    private static final int BATCH = 4096;
+
+    private MetricSnapshot() {
+    }
+
+    /**
+     * @param replayFrom - number of the first log segment not fully covered by the snapshot
+     * @return the snapshot file
+     */
+    public static Path write(Path directory, long replayFrom, CustomMetricRepository repository) throws IOException {
+        Path target = directory.resolve(String.format("%s%016d%s", PREFIX, replayFrom, SUFFIX));
+        Path temporary = directory.resolve(target.getFileName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temporary.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 20))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            for (MetricItem metricItem : repository.metrics()) {
+                // Values appended while the snapshot is written are replayed from the log
+                try (RetainedValues retained = repository.retained(metricItem)) {
+                    ValueSeries series = retained.getSeries();
+                    int size = retained.getSize();
+
+                    out.writeBoolean(true);
+                    out.writeLong(metricItem.getId().getMostSignificantBits());
+                    out.writeLong(metricItem.getId().getLeastSignificantBits());
+                    out.writeUTF(metricItem.getName() == null ? "" : metricItem.getName());
+                    out.writeByte(metricItem.getStatsMode() == null ? -1 : metricItem.getStatsMode().ordinal());
+                    writeRollups(out, retained);
+                    out.writeInt(size);
+                    ValueCursor cursor = series.cursor(0, size);
+                    while (cursor.next()) {
+                        out.writeLong(cursor.timestamp());
+                        out.writeDouble(cursor.value());
+                    }
+                }
+            }
+            out.writeBoolean(false);
+            out.flush();
+            file.getChannel().force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return target;
+    }
+
+    /**
+     * Restore every metric of the snapshot into repository
+     *
+     * @return number of values restored
+     */
+    public static long load(Path snapshot, CustomMetricRepository repository) throws IOException {
+        long values = 0;
+        long[] timestamps = new long[BATCH];
+        double[] batch = new double[BATCH];
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot),
+                1 << 20))) {
+            int version = in.readInt() == MAGIC ? in.readInt() : -1;
+            if (version != VERSION && version != VERSION_WITHOUT_ROLLUPS && version != VERSION_WITHOUT_DROPPED) {
+                throw new IOException("Not a metric snapshot " + snapshot);
+            }
+            while (in.readBoolean()) {
+                UUID metricId = new UUID(in.readLong(), in.readLong());
+                String name = in.readUTF();
+                int mode = in.readByte();
+                ValueSeries series = repository.restoreMetric(metricId, name,
+                        mode < 0 ? null : StatsMode.values()[mode]).getSeries();
+                if (version != VERSION_WITHOUT_ROLLUPS) {
+                    readRollups(in, version, metricId, repository);
+                }
+
+                int remaining = in.readInt();
+                while (remaining > 0) {
+                    int count = Math.min(remaining, BATCH);
+                    for (int i = 0; i < count; i++) {
+                        timestamps[i] = in.readLong();
+                        batch[i] = in.readDouble();
+                    }
+                    series.appendAll(timestamps, batch, 0, count);
+                    remaining -= count;
+                    values += count;
+                }
+            }
+        }
+        return values;
+    }
+
+    private static void writeRollups(DataOutputStream out, RetainedValues retained) throws IOException {
+        out.writeLong(retained.getEvicted());
+        RollupSeries rollups = retained.getRollupSeries();
+        if (rollups == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(rollups.size());
+        out.writeLong(rollups.getIntervalMillis());
+        out.writeInt(rollups.getMaxIntervals());
+        IOException[] failure = new IOException[1];
+        rollups.forEach((start, moments) -> {
+            try {
+                out.writeLong(start);
+                writeMoments(out, moments);
+            } catch (IOException e) {
+                failure[0] = e;
+            }
+        });
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        writeMoments(out, rollups.getDropped());
+    }
+
+    private static void writeMoments(DataOutputStream out, RunningMoments moments) throws IOException {
+        out.writeLong(moments.getCount());
+        out.writeDouble(moments.getSum());
+        out.writeDouble(moments.getMean());
+        out.writeDouble(moments.getSquaredDeviations());
+        out.writeDouble(moments.getMin());
+        out.writeDouble(moments.getMax());
+    }
+
+    private static RunningMoments readMoments(DataInputStream in) throws IOException {
+        return RunningMoments.restore(in.readLong(), in.readDouble(), in.readDouble(), in.readDouble(),
+                in.readDouble(), in.readDouble());
+    }
+
+    private static void readRollups(DataInputStream in, int version, UUID metricId,
+                                    CustomMetricRepository repository) throws IOException {
+        long evicted = in.readLong();
+        int count = in.readInt();
+        RollupSeries rollups = null;
+        if (count >= 0) {
+            rollups = new RollupSeries(in.readLong(), in.readInt());
+            for (int i = 0; i < count; i++) {
+                long start = in.readLong();
+                rollups.put(start, readMoments(in));
+            }
+            if (version != VERSION_WITHOUT_DROPPED) {
+                rollups.putDropped(readMoments(in));
+            }
+        }
+        repository.restoreRetention(metricId, evicted, rollups);
+    }
+
+    /**
+     * @return snapshot files of directory keyed by the first log segment to replay on top of them
+     */
+    public static NavigableMap<Long, Path> snapshots(Path directory) throws IOException {
+        NavigableMap<Long, Path> snapshots = new TreeMap<>();
+        if (!Files.isDirectory(directory)) {
+            return snapshots;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                snapshots.put(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())),
+                        file);
+            }
+        }
+        return snapshots;
+    }
+}
@@ -0,0 +1,18 @@
+package com.metrics.api.persistence;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * What startup recovery restored and how long it took
+ */
+@Data
+@AllArgsConstructor
+public class RecoveryReport {
+
+    private long metrics;
+    private long snapshotValues;
+    private long replayedRecords;
+    private long millis;
+
+}
@@ -0,0 +1,402 @@
+package com.metrics.api.persistence;
+
+import com.metrics.api.model.StatsMode;
+import com.metrics.api.repository.MetricJournal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of every save and update, split in numbered segment files.
+ * <p>
+ * Records are encoded into an in-memory buffer under a short lock. A flusher thread writes the buffer out and
+ * fsyncs every fsyncIntervalMillis, and callers of {@link #awaitDurable(long)} wake up once the flush covering
+ * their records is done, so one fsync commits every request that arrived during the interval ( group commit ).
+ * <p>
+ * Each record is [int length][payload][int crc32 of payload]. Replay stops at the first short or corrupt record
+ * of a segment, which is where a crash interrupted the last write.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "metrics.wal.enabled", havingValue = "true")
+public class WriteAheadLog implements MetricJournal, Closeable {
+
+    static final byte SAVE = 1;
+    static final byte UPDATE = 2;
+
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int BUFFER_BYTES = 1 << 20;
+    private static final int MAX_RECORD_BYTES = 64 * 1024;
+
+    private final Path directory;
+    private final long fsyncIntervalMillis;
+
+    // Guarded by this
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+    private final CRC32 crc = new CRC32();
+    private FileChannel channel;
+    private long sequence = -1;
+    private long written;
+
+    // Held while forcing or swapping the channel , never while appending
+    private final Object syncLock = new Object();
+    // A lock rather than a monitor , request threads parked on it release their carrier when they are virtual
+    private final ReentrantLock durableLock = new ReentrantLock();
+    private final Condition durableAdvanced = durableLock.newCondition();
+    private volatile long durable;
+    private volatile boolean closed;
+    private Thread flusher;
+
+    @Autowired
+    public WriteAheadLog(@Value("${metrics.wal.directory:${java.io.tmpdir}/metric-wal}") String directory,
+                         @Value("${metrics.wal.fsync-interval-ms:5}") long fsyncIntervalMillis) {
+        this(Paths.get(directory), fsyncIntervalMillis);
+    }
+
+    public WriteAheadLog(Path directory, long fsyncIntervalMillis) {
+        if (fsyncIntervalMillis < 1) {
+            throw new IllegalArgumentException("fsync interval must be at least 1 ms");
+        }
+        this.directory = directory;
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create log directory " + directory, e);
+        }
+    }
+
+    /**
+     * Open segment number sequence for appends and start flushing , called once recovery is done
+     */
+    public void start(long sequence) {
+        synchronized (this) {
+            openSegment(sequence);
+        }
+        flusher = new Thread(this::flushLoop, "wal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @Override
+    public long logSave(UUID metricId, String name, StatsMode statsMode, long timestamp, double value) {
+        byte[] nameBytes = name == null ? new byte[0] : name.getBytes(StandardCharsets.UTF_8);
+        if (nameBytes.length > MAX_RECORD_BYTES - 64) {
+            throw new IllegalArgumentException("Metric name is too long");
+        }
+        synchronized (this) {
+            int start = beginRecord(1 + 16 + 1 + 8 + 8 + 4 + nameBytes.length);
+            buffer.put(SAVE);
+            buffer.putLong(metricId.getMostSignificantBits());
+            buffer.putLong(metricId.getLeastSignificantBits());
+            buffer.put((byte) (statsMode == null ? -1 : statsMode.ordinal()));
+            buffer.putLong(timestamp);
+            buffer.putDouble(value);
+            buffer.putInt(nameBytes.length);
+            buffer.put(nameBytes);
+            return endRecord(start);
+        }
+    }
+
+    @Override
+    public long logUpdate(UUID metricId, int index, long timestamp, double value) {
+        synchronized (this) {
+            int start = beginRecord(1 + 16 + 4 + 8 + 8);
+            buffer.put(UPDATE);
+            buffer.putLong(metricId.getMostSignificantBits());
+            buffer.putLong(metricId.getLeastSignificantBits());
+            buffer.putInt(index);
+            buffer.putLong(timestamp);
+            buffer.putDouble(value);
+            return endRecord(start);
+        }
+    }
+
+    @Override
+    public void awaitDurable(long position) {
+        if (durable >= position) {
+            return;
+        }
+        durableLock.lock();
+        try {
+            while (durable < position) {
+                if (closed) {
+                    throw new IllegalStateException("Write ahead log is closed");
+                }
+                try {
+                    durableAdvanced.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted waiting for the write ahead log", e);
+                }
+            }
+        } finally {
+            durableLock.unlock();
+        }
+    }
+
+    /**
+     * Flush and fsync everything logged so far
+     */
+    public void sync() {
+        synchronized (syncLock) {
+            long target;
+            FileChannel current;
+            synchronized (this) {
+                drainBuffer();
+                target = written;
+                current = channel;
+            }
+            if (current != null && target > durable) {
+                force(current);
+                markDurable(target);
+            }
+        }
+    }
+
+    /**
+     * Close the active segment and continue in the next one
+     *
+     * @return number of the segment that was active until now
+     */
+    public long rotate() {
+        synchronized (syncLock) {
+            long previous;
+            long target;
+            synchronized (this) {
+                drainBuffer();
+                force(channel);
+                closeChannel();
+                previous = sequence;
+                target = written;
+                openSegment(previous + 1);
+            }
+            markDurable(target);
+            return previous;
+        }
+    }
+
+    /**
+     * Delete every segment numbered below sequence , they are covered by a snapshot
+     */
+    public void deleteSegmentsBefore(long sequence) throws IOException {
+        for (Path segment : segments(directory).headMap(sequence).values()) {
+            Files.delete(segment);
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public void close() {
+        if (flusher != null) {
+            flusher.interrupt();
+        }
+        synchronized (syncLock) {
+            synchronized (this) {
+                if (channel != null) {
+                    drainBuffer();
+                    force(channel);
+                    markDurable(written);
+                    closeChannel();
+                }
+            }
+        }
+        closed = true;
+        signalDurable();
+    }
+
+    /**
+     * @return segment files of directory keyed by their number
+     */
+    public static NavigableMap<Long, Path> segments(Path directory) throws IOException {
+        NavigableMap<Long, Path> segments = new TreeMap<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                segments.put(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                        name.length() - SEGMENT_SUFFIX.length())), file);
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Feed the intact records of a segment to replayer
+     *
+     * @return number of records replayed
+     */
+    public static long replay(Path segment, Replayer replayer) throws IOException {
+        long records = 0;
+        byte[] payload = new byte[MAX_RECORD_BYTES];
+        CRC32 checksum = new CRC32();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment),
+                1 << 16))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                    if (length <= 0 || length > MAX_RECORD_BYTES) {
+                        log.warn("Ignoring corrupt tail of {} after {} records", segment, records);
+                        return records;
+                    }
+                    in.readFully(payload, 0, length);
+                    checksum.reset();
+                    checksum.update(payload, 0, length);
+                    if ((int) checksum.getValue() != in.readInt()) {
+                        log.warn("Ignoring corrupt tail of {} after {} records", segment, records);
+                        return records;
+                    }
+                } catch (EOFException e) {
+                    return records;
+                }
+
+                ByteBuffer record = ByteBuffer.wrap(payload, 0, length);
+                byte type = record.get();
+                UUID metricId = new UUID(record.getLong(), record.getLong());
+                if (type == SAVE) {
+                    int mode = record.get();
+                    long timestamp = record.getLong();
+                    double value = record.getDouble();
+                    byte[] name = new byte[record.getInt()];
+                    record.get(name);
+                    replayer.save(metricId, new String(name, StandardCharsets.UTF_8),
+                            mode < 0 ? null : StatsMode.values()[mode], timestamp, value);
+                } else if (type == UPDATE) {
+                    replayer.update(metricId, record.getInt(), record.getLong(), record.getDouble());
+                }
+                records++;
+            }
+        }
+    }
+
+    private int beginRecord(int payloadLength) {
+        if (channel == null) {
+            throw new IllegalStateException("Write ahead log is not started");
+        }
+        if (buffer.remaining() < payloadLength + 8) {
+            drainBuffer();
+        }
+        buffer.putInt(payloadLength);
+        return buffer.position();
+    }
+
+    private long endRecord(int start) {
+        crc.reset();
+        crc.update(buffer.array(), start, buffer.position() - start);
+        buffer.putInt((int) crc.getValue());
+        written += buffer.position() - start + 4;
+        return written;
+    }
+
+    private void drainBuffer() {
+        if (channel == null) {
+            return;
+        }
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write to the write ahead log", e);
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    private void openSegment(long number) {
+        Path file = directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            // Make the new file itself durable
+            force(channel);
+            sequence = number;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open log segment " + file, e);
+        }
+    }
+
+    private void closeChannel() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not close log segment", e);
+        } finally {
+            channel = null;
+        }
+    }
+
+    private static void force(FileChannel channel) {
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not fsync the write ahead log", e);
+        }
+    }
+
+    private void markDurable(long position) {
+        if (position > durable) {
+            durable = position;
+            signalDurable();
+        }
+    }
+
+    private void signalDurable() {
+        durableLock.lock();
+        try {
+            durableAdvanced.signalAll();
+        } finally {
+            durableLock.unlock();
+        }
+    }
+
+    private void flushLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(fsyncIntervalMillis);
+                sync();
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                log.error("Failed to flush the write ahead log", e);
+            }
+        }
+    }
+
+
+    /**
+     * Receives the records of a segment in the order they were logged
+     */
+    public interface Replayer {
+
+        void save(UUID metricId, String name, StatsMode statsMode, long timestamp, double value);
+
+        void update(UUID metricId, int index, long timestamp, double value);
+    }
+}
@@ -0,0 +1,118 @@
+package com.metrics.api.query;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.metrics.api.model.MetricItem;
+import com.metrics.api.model.Rollup;
+import com.metrics.api.repository.RetainedValues;
+import com.metrics.api.storage.ValueCursor;
+import com.metrics.api.storage.ValueSeries;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Streams a page of the values of a metric as JSON straight from its {@link ValueSeries}.
+ * <p>
+ * Values are addressed by their index among every value ever posted to the metric , so an offset stays valid when
+ * older values are compacted by retention. A page scans the retained values from offset ( or the last N ) and writes
+ * those timestamped within [from , to) until limit values are written , nextOffset is where the following page
+ * starts and is absent once the scan reached the end. Without any paging parameter the body has the same shape as
+ * the {@link MetricItem} it replaces. The retained values are closed once written.
+ */
+public class MetricValuesBody implements StreamingResponseBody {
+
+    private final JsonFactory jsonFactory;
+    private final MetricItem metricItem;
+    private final RetainedValues retained;
+    private final ValueQuery query;
+
+    public MetricValuesBody(JsonFactory jsonFactory, MetricItem metricItem, RetainedValues retained,
+                            ValueQuery query) {
+        this.jsonFactory = jsonFactory;
+        this.metricItem = metricItem;
+        this.retained = retained;
+        this.query = query;
+    }
+
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+        ValueSeries series = retained.getSeries();
+        int size = retained.getSize();
+        long evicted = retained.getEvicted();
+
+        // Positions in the retained series
+        int start;
+        if (query.getLast() != null) {
+            start = Math.max(0, size - query.getLast());
+        } else {
+            start = (int) Math.min(size, Math.max(0, query.getOffset() - evicted));
+        }
+        long limit = query.getLimit() == null ? Long.MAX_VALUE : query.getLimit();
+
+        try (RetainedValues held = retained;
+             JsonGenerator json = jsonFactory.createGenerator(outputStream, JsonEncoding.UTF8)) {
+            json.writeStartObject();
+            json.writeStringField("id", metricItem.getId().toString());
+            json.writeStringField("name", metricItem.getName());
+            json.writeStringField("statsMode", metricItem.getStatsMode() == null ? null
+                    : metricItem.getStatsMode().name());
+            if (query.isPaged()) {
+                json.writeNumberField("offset", evicted + start);
+            }
+
+            json.writeArrayFieldStart("values");
+            ValueCursor cursor = series.cursor(start, size);
+            int end = start;
+            long written = 0;
+            while (written < limit && cursor.next()) {
+                if (query.includes(cursor.timestamp())) {
+                    json.writeNumber(cursor.value());
+                    written++;
+                }
+                end++;
+            }
+            json.writeEndArray();
+
+            if (query.isTimestamps()) {
+                json.writeArrayFieldStart("timestamps");
+                cursor = series.cursor(start, end);
+                while (cursor.next()) {
+                    long timestamp = cursor.timestamp();
+                    if (query.includes(timestamp)) {
+                        json.writeNumber(timestamp);
+                    }
+                }
+                json.writeEndArray();
+            }
+            if (query.isPaged() && end < size) {
+                json.writeNumberField("nextOffset", evicted + end);
+            }
+
+            // Rollups of the same view as the values , with the first page only and not with a time range
+            List<Rollup> rollups = retained.getRollupSeries() == null ? Collections.emptyList()
+                    : retained.getRollupSeries().toList();
+            if (!rollups.isEmpty() && query.getLast() == null && query.getOffset() == 0 && query.getFrom() == null
+                    && query.getTo() == null) {
+                json.writeFieldName("rollups");
+                json.writeStartArray();
+                for (Rollup rollup : rollups) {
+                    json.writeStartObject();
+                    json.writeNumberField("start", rollup.getStart());
+                    json.writeNumberField("count", rollup.getCount());
+                    json.writeNumberField("sum", rollup.getSum());
+                    json.writeNumberField("mean", rollup.getMean());
+                    json.writeNumberField("min", rollup.getMin());
+                    json.writeNumberField("max", rollup.getMax());
+                    json.writeEndObject();
+                }
+                json.writeEndArray();
+            }
+            json.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.metrics.api.query;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Page of values requested from GET /metrics/{id} , every field is optional
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ValueQuery {
+
+    // Index of the first value , among every value ever posted to the metric
+    private long offset;
+    // Maximum number of values returned
+    private Integer limit;
+    // Only the last N values , instead of offset
+    private Integer last;
+    // Epoch milliseconds , inclusive
+    private Long from;
+    // Epoch milliseconds , exclusive
+    private Long to;
+    // Also return the timestamp of each value
+    private boolean timestamps;
+
+    /**
+     * @throws IllegalArgumentException when a parameter is out of range
+     */
+    public void validate() {
+        if (offset < 0 || (last != null && last < 0)) {
+            throw new IllegalArgumentException("offset and last must not be negative");
+        }
+        // An empty page would point at itself as the next one
+        if (limit != null && limit < 1) {
+            throw new IllegalArgumentException("limit must be at least 1");
+        }
+        if (last != null && offset > 0) {
+            throw new IllegalArgumentException("last and offset are exclusive");
+        }
+        if (from != null && to != null && from > to) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+    }
+
+    /**
+     * @return true when any parameter narrows the values , the response then carries its offsets
+     */
+    public boolean isPaged() {
+        return offset > 0 || limit != null || last != null || from != null || to != null;
+    }
+
+    public boolean includes(long timestamp) {
+        return (from == null || timestamp >= from) && (to == null || timestamp < to);
+    }
+}
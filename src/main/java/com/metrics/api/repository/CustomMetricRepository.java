@@ -4,43 +4,129 @@ package com.metrics.api.repository;
 import com.metrics.api.constants.ErrorCodes;
 import com.metrics.api.datatransferobjects.SaveItemDTO;
 import com.metrics.api.datatransferobjects.UpdateItemDTO;
+import com.metrics.api.ingest.ValueBatch;
 import com.metrics.api.model.MetricItem;
+import com.metrics.api.model.StatsMode;
 import com.metrics.api.model.SummaryStatistics;
+import com.metrics.api.model.UpdateResult;
+import com.metrics.api.retention.RetentionPolicy;
+import com.metrics.api.storage.ChunkedDoubleSeries;
+import com.metrics.api.storage.RollupSeries;
+import com.metrics.api.storage.ValueSeries;
+import com.metrics.api.storage.ValueCursor;
+import com.metrics.api.storage.ValueSeriesFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
 import java.util.stream.Collectors;
 
 
 @Service
+@ConditionalOnProperty(name = "metrics.storage", havingValue = "heap", matchIfMissing = true)
 public class CustomMetricRepository implements MetricRepository {
 
 
+    // Values copied per batch when compaction rebuilds a series
+    private static final int COPY_BATCH = 4096;
+
     private final ConcurrentHashMap<UUID, MetricItem> store = new ConcurrentHashMap<>();
 
+    // Ids posted with metrics whose save is in progress
+    private final Set<UUID> claimedIds = ConcurrentHashMap.newKeySet();
+
+    private final ValueSeriesFactory valueSeriesFactory;
+
+    private final StatsRepository statsRepository;
+
+    private final MetricLocks metricLocks;
+
+    private final MetricJournal journal;
+
+    private final MetricNameIndex nameIndex;
+
+    // Values accepted by save , update and ingest , summed when scraped
+    private final LongAdder ingestedValues = new LongAdder();
+
+    public CustomMetricRepository() {
+        this(ChunkedDoubleSeries::new, new MetricLocks());
+    }
+
+    private CustomMetricRepository(ValueSeriesFactory valueSeriesFactory, MetricLocks metricLocks) {
+        this(valueSeriesFactory, new CustomStatsRepository(metricLocks), metricLocks);
+    }
+
+    public CustomMetricRepository(ValueSeriesFactory valueSeriesFactory, StatsRepository statsRepository,
+                                  MetricLocks metricLocks) {
+        this(valueSeriesFactory, statsRepository, metricLocks, MetricJournal.NONE);
+    }
+
+    public CustomMetricRepository(ValueSeriesFactory valueSeriesFactory, StatsRepository statsRepository,
+                                  MetricLocks metricLocks, MetricJournal journal) {
+        this(valueSeriesFactory, statsRepository, metricLocks, journal, new MetricNameIndex(false));
+    }
+
+    @Autowired
+    public CustomMetricRepository(ValueSeriesFactory valueSeriesFactory, StatsRepository statsRepository,
+                                  MetricLocks metricLocks, MetricJournal journal, MetricNameIndex nameIndex) {
+        this.valueSeriesFactory = valueSeriesFactory;
+        this.statsRepository = statsRepository;
+        this.metricLocks = metricLocks;
+        this.journal = journal;
+        this.nameIndex = nameIndex;
+    }
+
     /**
-     * API to save Metric Item
+     * API to save Metric Item, its stats exist before the metric becomes visible although the stats pipeline may
+     * apply its first value to them later. When names are unique every name of the batch is reserved first , so a
+     * taken name rejects the whole batch untouched. Metrics posted with an id keep it , an id already in use rejects
+     * the whole batch the same way , as does an id posted twice in the batch or by a save in progress.
      *
      * @param postedMetrics - MetricItem Data Object
      * @return metricItem - Newly Saved Metric Item
      */
     @Override
-    public List<MetricItem> save(List<SaveItemDTO> postedMetrics) {
+    public List<MetricItem> save(List<SaveItemDTO> postedMetrics) throws MetricAlreadyExistsException {
 
         List<MetricItem> savedMetrics = new ArrayList<>();
+        UUID[] metricIds = new UUID[postedMetrics.size()];
+        List<UUID> postedIds = claimIds(postedMetrics, metricIds);
+        try {
+            if (nameIndex.isUnique()) {
+                reserveNames(postedMetrics, metricIds);
+            }
 
+            long logged = 0;
+            for (int i = 0; i < postedMetrics.size(); i++) {
+                SaveItemDTO saveItemDTO = postedMetrics.get(i);
+                long timestamp = timestampOf(saveItemDTO.getTimestamp());
+                UUID metricId = metricIds[i];
+                StatsMode statsMode = saveItemDTO.getStatsMode() == null ? StatsMode.EXACT
+                        : saveItemDTO.getStatsMode();
+                logged = journal.logSave(metricId, saveItemDTO.getName(), statsMode, timestamp,
+                        saveItemDTO.getValue());
 
-        for (int i = 0; i < postedMetrics.size(); i++) {
-            SaveItemDTO saveItemDTO = postedMetrics.get(i);
-            List<Double> values = new ArrayList<>(Arrays.asList(Double.valueOf(saveItemDTO.getValue())));
-            UUID metricId = UUID.randomUUID();
-            MetricItem metricItem = new MetricItem(metricId, saveItemDTO.getName(), values);
-            store.put(metricId, metricItem);
-            savedMetrics.add(metricItem);
+                ValueSeries values = valueSeriesFactory.create();
+                values.append(timestamp, saveItemDTO.getValue());
+                MetricItem metricItem = new MetricItem(metricId, saveItemDTO.getName(), values, statsMode);
+                statsRepository.calculateStatsForMetrics(Collections.singletonList(metricItem));
+                if (store.putIfAbsent(metricId, metricItem) != null) {
+                    // Claimed ids cannot be taken in between , only a random id colliding could get here
+                    throw new IllegalStateException("Metric id " + metricId + " was taken while saving");
+                }
+                nameIndex.add(saveItemDTO.getName(), metricId);
+                ingestedValues.increment();
+                savedMetrics.add(metricItem);
+            }
+            journal.awaitDurable(logged);
+        } finally {
+            claimedIds.removeAll(postedIds);
         }
 
-
         return savedMetrics;
 
     }
@@ -67,37 +153,376 @@ public class CustomMetricRepository implements MetricRepository {
     }
 
 
+    /**
+     * API to find a Metric by name in constant time
+     *
+     * @param name - exact name of the metric
+     * @return MetricItem - the only metric with that name
+     */
+    @Override
+    public MetricItem findByName(String name) throws MetricDoestNotExistException {
+        List<UUID> metricIds = nameIndex.lookup(name);
+        if (metricIds.size() > 1) {
+            throw new IllegalArgumentException("Metric name " + name + " is ambiguous, " + metricIds.size()
+                    + " metrics share it");
+        }
+        MetricItem item = metricIds.isEmpty() ? null : store.get(metricIds.get(0));
+        if (item == null) {
+            throw new MetricDoestNotExistException("Metric does not exist");
+        }
+        return item;
+    }
+
+
+    /**
+     * API to search Metrics by name prefix or glob
+     *
+     * @param pattern - name prefix , or glob with * and ? wildcards
+     * @param limit   - maximum number of metrics returned
+     * @return matching metrics ordered by name
+     */
+    @Override
+    public List<MetricItem> search(String pattern, int limit) {
+        List<MetricItem> found = new ArrayList<>();
+        for (String name : nameIndex.search(pattern, limit)) {
+            for (UUID metricId : nameIndex.lookup(name)) {
+                MetricItem item = store.get(metricId);
+                if (item != null && found.size() < limit) {
+                    found.add(item);
+                }
+            }
+        }
+        return found;
+    }
+
+
 
 
     /**
-     * API to update metric with new value
+     * API to update metric with new values. Values are grouped by metric first , each metric is looked up once and
+     * gets its values appended and handed to the stats in one go while holding its write lock, so concurrent
+     * updates are never lost. Without the stats pipeline readers never see values without stats , with it the stats
+     * catch up asynchronously and reads wait for them unless they opt out. Values of a metric keep their order.
+     * Values posted with a name instead of an id are resolved to the id of the metric with that name.
      *
      * @param postedMetrics - posted metrics to be updated
-     * @return updatedMetrics - Newly updated metrics
+     * @return one result per updated metric , in the order each metric first appears in the batch
      */
     @Override
-    public List<MetricItem> update(List<UpdateItemDTO> postedMetrics) throws MetricDoestNotExistException {
-        List<MetricItem> updatedMetrics = new ArrayList<>();
+    public List<UpdateResult> update(List<UpdateItemDTO> postedMetrics) throws MetricDoestNotExistException {
+        // Metrics are never removed, so validating first means a bad id rejects the whole batch untouched
+        Map<UUID, PendingValues> grouped = new LinkedHashMap<>();
         for (int i = 0; i < postedMetrics.size(); i++) {
-            UUID metricId = postedMetrics.get(i).getId();
-            if (store.get(metricId) != null) {
-                List<Double> values = store.get(metricId).getValues();
-                values.add(Double.valueOf(postedMetrics.get(i).getValue()));
-                updatedMetrics.add(new MetricItem(metricId, store.get(metricId).getName(), values));
+            UpdateItemDTO posted = postedMetrics.get(i);
+            // Resolved here only , the posted values are left as they came
+            UUID metricId = posted.getId() == null ? findByName(posted.getName()).getId() : posted.getId();
+            PendingValues pending = grouped.get(metricId);
+            if (pending == null) {
+                MetricItem metricItem = store.get(metricId);
+                if (metricItem == null) {
+                    throw new MetricDoestNotExistException("Metric Does not  Exist");
+                }
+                pending = new PendingValues(metricItem);
+                grouped.put(metricId, pending);
+            }
+            pending.add(timestampOf(posted.getTimestamp()), posted.getValue());
+        }
+
+        List<UpdateResult> updatedMetrics = new ArrayList<>(grouped.size());
+        long logged = 0;
+        for (PendingValues pending : grouped.values()) {
+            MetricItem metricItem = pending.metricItem;
+            logged = append(metricItem, pending.timestamps, pending.values, 0, pending.size);
+            updatedMetrics.add(new UpdateResult(metricItem.getId(), metricItem.getName(), pending.size,
+                    metricItem.getTotalCount()));
+        }
+        // Group commit , waits outside the metric locks for the flush covering the whole batch
+        journal.awaitDurable(logged);
+        return updatedMetrics;
+    }
 
-                // UPDATE AVERAGE , MIN , MAX
 
+    /**
+     * API to append a batch of values , each value is applied like in {@link #update(List)} but metrics that do not
+     * exist are skipped instead of failing the batch , since earlier batches of the same stream are already applied.
+     * Consecutive values of the same metric are appended together.
+     *
+     * @param batch - values to append in order
+     * @return number of values appended
+     */
+    @Override
+    public int ingest(ValueBatch batch) {
+        long[] timestamps = new long[batch.size()];
+        double[] appended = new double[batch.size()];
+        long logged = 0;
+        int accepted = 0;
+        int i = 0;
+        while (i < batch.size()) {
+            UUID metricId = batch.getId(i);
+            int run = 0;
+            do {
+                timestamps[run] = batch.getTimestamp(i);
+                appended[run] = batch.getValue(i);
+                run++;
+                i++;
+            } while (i < batch.size() && batch.getId(i).equals(metricId));
 
-            } else {
-                throw new MetricDoestNotExistException("Metric Does not  Exist");
+            MetricItem metricItem = store.get(metricId);
+            if (metricItem != null) {
+                logged = append(metricItem, timestamps, appended, 0, run);
+                accepted += run;
             }
         }
-        return updatedMetrics;
+        journal.awaitDurable(logged);
+        return accepted;
     }
 
 
+    /**
+     * @return values accepted since startup
+     */
+    public long ingestedValues() {
+        return ingestedValues.sum();
+    }
+
+    public int metricCount() {
+        return store.size();
+    }
+
     public void clear() {
         store.clear();
+        nameIndex.clear();
+    }
+
+    /**
+     * @return live view of every metric , values may keep growing while it is read
+     */
+    public Collection<MetricItem> metrics() {
+        return Collections.unmodifiableCollection(store.values());
+    }
+
+    /**
+     * RECOVERY API , register a metric without logging it or building its stats. Does nothing if it exists.
+     *
+     * @return the registered metric
+     */
+    public MetricItem restoreMetric(UUID metricId, String name, StatsMode statsMode) {
+        return store.computeIfAbsent(metricId, id -> {
+            nameIndex.add(name, id);
+            return new MetricItem(id, name, valueSeriesFactory.create(), statsMode);
+        });
+    }
+
+    /**
+     * RECOVERY API , append a value at index without logging it or recording stats. Indexes count every value ever
+     * posted to the metric , compacted ones included , so they do not move when values are compacted.
+     *
+     * @return false when the metric is unknown or index is not the next position of its series
+     */
+    public boolean restoreValue(UUID metricId, int index, long timestamp, double value) {
+        MetricItem metricItem = store.get(metricId);
+        if (metricItem == null || index != metricItem.getTotalCount()) {
+            return false;
+        }
+        metricItem.getSeries().append(timestamp, value);
+        return true;
+    }
+
+    /**
+     * RECOVERY API , restore how many values were compacted and their rollups , before the values are restored
+     */
+    public void restoreRetention(UUID metricId, long evicted, RollupSeries rollupSeries) {
+        MetricItem metricItem = store.get(metricId);
+        if (metricItem != null) {
+            metricItem.setEvicted(evicted);
+            metricItem.setRollupSeries(rollupSeries);
+        }
+    }
+
+    /**
+     * Consistent view of the retained values of a metric for snapshots and paging , taken under its read lock. The
+     * caller closes it once done reading.
+     */
+    @Override
+    public RetainedValues retained(MetricItem metricItem) {
+        Lock lock = metricLocks.forMetric(metricItem.getId()).readLock();
+        lock.lock();
+        try {
+            RollupSeries rollups = metricItem.getRollupSeries();
+            ValueSeries series = metricItem.getSeries();
+            series.retain();
+            return new RetainedValues(series, series.size(), metricItem.getEvicted(),
+                    rollups == null ? null : rollups.copy());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Compact the oldest raw values of a metric into rollups according to policy. Nothing happens until at least a
+     * quarter of the values left would be compacted , so the retained values are copied O(1) times per value
+     * compacted and raw values exceed their limits by at most 25% between compactions.
+     * <p>
+     * The stats are then rebuilt from the rollups and the retained values , so the moments keep covering every value
+     * while the median and percentiles , exact ones included , only hold the retained values like after a restart.
+     * The replaced series is released , giving its storage back once no reader holds it any more.
+     *
+     * @param now - epoch milliseconds
+     * @return number of values compacted
+     */
+    public int compact(MetricItem metricItem, RetentionPolicy policy, long now) {
+        long cutoff = policy.cutoff(now);
+        Lock lock = metricLocks.forMetric(metricItem.getId()).writeLock();
+        lock.lock();
+        try {
+            ValueSeries series = metricItem.getSeries();
+            int size = series.size();
+            int overLimit = policy.getMaxRawValues() > 0 ? size - policy.getMaxRawValues() : 0;
+            int compacted = 0;
+            ValueCursor scan = series.cursor(0, size);
+            while (scan.next() && (compacted < overLimit || scan.timestamp() < cutoff)) {
+                compacted++;
+            }
+            if (compacted == 0 || compacted * 4L < size - compacted) {
+                return 0;
+            }
+
+            RollupSeries rollups = metricItem.getRollupSeries();
+            if (rollups == null) {
+                rollups = new RollupSeries(policy.getRollupInterval().toMillis(), policy.getMaxRollups());
+                metricItem.setRollupSeries(rollups);
+            }
+            ValueCursor cursor = series.cursor(0, size);
+            for (int i = 0; i < compacted && cursor.next(); i++) {
+                rollups.add(cursor.timestamp(), cursor.value());
+            }
+
+            ValueSeries retained = valueSeriesFactory.create();
+            long[] timestamps = new long[COPY_BATCH];
+            double[] values = new double[COPY_BATCH];
+            for (int from = compacted; from < size; from += COPY_BATCH) {
+                int count = Math.min(COPY_BATCH, size - from);
+                for (int i = 0; i < count && cursor.next(); i++) {
+                    timestamps[i] = cursor.timestamp();
+                    values[i] = cursor.value();
+                }
+                retained.appendAll(timestamps, values, 0, count);
+            }
+            // Published through the volatile series , after the count it goes with
+            metricItem.setEvicted(metricItem.getEvicted() + compacted);
+            metricItem.setSeries(retained);
+            statsRepository.calculateStatsForMetrics(Collections.singletonList(metricItem));
+            series.release();
+            return compacted;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * RECOVERY API , build the stats of every metric from its restored values
+     */
+    public void rebuildStats() {
+        statsRepository.calculateStatsForMetrics(new ArrayList<>(store.values()));
+    }
+
+    /**
+     * Claim the ids posted with the metrics until they are stored , so concurrent saves of the same id cannot both
+     * pass the check. The other metrics get a random id.
+     *
+     * @return ids claimed , to release once the batch is stored or rejected
+     */
+    private List<UUID> claimIds(List<SaveItemDTO> postedMetrics, UUID[] metricIds) {
+        List<UUID> claimed = new ArrayList<>();
+        for (int i = 0; i < metricIds.length; i++) {
+            UUID postedId = postedMetrics.get(i).getId();
+            if (postedId == null) {
+                metricIds[i] = UUID.randomUUID();
+                continue;
+            }
+            // Taken by another metric of this batch , by a save in progress or by a stored metric
+            boolean claiming = claimedIds.add(postedId);
+            if (!claiming || store.containsKey(postedId)) {
+                if (claiming) {
+                    claimedIds.remove(postedId);
+                }
+                claimedIds.removeAll(claimed);
+                throw new MetricAlreadyExistsException(ErrorCodes.METRIC_ALREADY_EXIST + ": " + postedId);
+            }
+            claimed.add(postedId);
+            metricIds[i] = postedId;
+        }
+        return claimed;
+    }
+
+    private void reserveNames(List<SaveItemDTO> postedMetrics, UUID[] metricIds) {
+        for (int i = 0; i < metricIds.length; i++) {
+            String name = postedMetrics.get(i).getName();
+            if (!nameIndex.add(name, metricIds[i])) {
+                for (int j = 0; j < i; j++) {
+                    nameIndex.remove(postedMetrics.get(j).getName(), metricIds[j]);
+                }
+                throw new MetricAlreadyExistsException(ErrorCodes.METRIC_ALREADY_EXIST + ": " + name);
+            }
+        }
+    }
+
+    /**
+     * Append values and record them in the stats under the write lock of the metric , each value is logged on its
+     * own so the journal format does not depend on how values were batched
+     *
+     * @return position of the last journal record
+     */
+    private long append(MetricItem metricItem, long[] timestamps, double[] appended, int offset, int length) {
+        UUID metricId = metricItem.getId();
+        Lock lock = metricLocks.forMetric(metricId).writeLock();
+        lock.lock();
+        try {
+            long logged = 0;
+            int index = (int) metricItem.getTotalCount();
+            for (int i = offset; i < offset + length; i++) {
+                logged = journal.logUpdate(metricId, index++, timestamps[i], appended[i]);
+            }
+            metricItem.getSeries().appendAll(timestamps, appended, offset, length);
+            statsRepository.recordValues(metricId, timestamps, appended, offset, length);
+            ingestedValues.add(length);
+            return logged;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Values posted without a timestamp are stamped with the time they were received
+     */
+    private static long timestampOf(Long postedTimestamp) {
+        return postedTimestamp == null ? System.currentTimeMillis() : postedTimestamp;
+    }
+
+
+    /**
+     * Values of one metric collected from an update batch
+     */
+    private static final class PendingValues {
+
+        private final MetricItem metricItem;
+        private long[] timestamps = new long[4];
+        private double[] values = new double[4];
+        private int size;
+
+        private PendingValues(MetricItem metricItem) {
+            this.metricItem = metricItem;
+        }
+
+        private void add(long timestamp, double value) {
+            if (size == values.length) {
+                timestamps = Arrays.copyOf(timestamps, size << 1);
+                values = Arrays.copyOf(values, size << 1);
+            }
+            timestamps[size] = timestamp;
+            values[size] = value;
+            size++;
+        }
     }
 
 
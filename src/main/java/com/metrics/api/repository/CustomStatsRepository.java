@@ -1,32 +1,143 @@
 package com.metrics.api.repository;
 
+import com.metrics.api.model.AggregateStatistics;
 import com.metrics.api.model.MetricItem;
+import com.metrics.api.model.StatsMode;
 import com.metrics.api.model.SummaryStatistics;
-import org.springframework.scheduling.annotation.Async;
+import com.metrics.api.model.WindowStatistics;
+import com.metrics.api.statistics.KllSketch;
+import com.metrics.api.statistics.QuantileEstimator;
+import com.metrics.api.statistics.RunningMoments;
+import com.metrics.api.statistics.SelectionQuantiles;
+import com.metrics.api.statistics.StreamingMedian;
+import com.metrics.api.statistics.TimeWindow;
+import com.metrics.api.storage.ValueCursor;
+import com.metrics.api.storage.ValueSeries;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
 
 @Service
 public class CustomStatsRepository implements StatsRepository {
 
+    // Fixed size of the running accumulators and the stats object itself
+    private static final long MOMENTS_BYTES = 128;
+
+    // Metrics merged by one fork join leaf before splitting pays off
+    private static final int AGGREGATE_THRESHOLD = 32;
+    private static final int DEFAULT_PARALLEL_THRESHOLD = 256;
+
     private final ConcurrentHashMap<UUID, SummaryStatistics> store = new ConcurrentHashMap<>();
 
-    @Async
+    private static final String DEFAULT_WINDOWS = "1s,1m,1h";
+
+    private final MetricLocks metricLocks;
+
+    // Window lengths keyed by the label they were configured with , in configuration order
+    private final Map<String, Duration> windows;
+
+    private final Clock clock;
+
+    // Requests for more metrics than this are read in chunks of at most this many on the common fork join pool
+    private final int parallelThreshold;
+
+    // Hot path counters , summed when scraped
+    private final LongAdder recordedValues = new LongAdder();
+    private final LongAdder statsReads = new LongAdder();
+    private final LongAdder snapshotHits = new LongAdder();
+
+    public CustomStatsRepository() {
+        this(new MetricLocks());
+    }
+
+    public CustomStatsRepository(MetricLocks metricLocks) {
+        this(metricLocks, DEFAULT_WINDOWS, Clock.systemUTC());
+    }
+
+    @Autowired
+    public CustomStatsRepository(MetricLocks metricLocks,
+                                 @Value("${metrics.stats.windows:" + DEFAULT_WINDOWS + "}") String windows,
+                                 @Value("${metrics.stats.parallel-threshold:" + DEFAULT_PARALLEL_THRESHOLD + "}")
+                                         int parallelThreshold) {
+        this(metricLocks, windows, Clock.systemUTC(), parallelThreshold);
+    }
+
+    public CustomStatsRepository(MetricLocks metricLocks, String windows, Clock clock) {
+        this(metricLocks, windows, clock, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * @param windows           - comma separated window lengths such as 1s,1m,1h , empty to disable windowed stats
+     * @param clock             - source of the time windows end at
+     * @param parallelThreshold - number of metrics above which a stats request is split across the fork join pool
+     */
+    public CustomStatsRepository(MetricLocks metricLocks, String windows, Clock clock, int parallelThreshold) {
+        if (parallelThreshold < 1) {
+            throw new IllegalArgumentException("Stats parallel threshold must be positive");
+        }
+        this.metricLocks = metricLocks;
+        this.windows = parseWindows(windows);
+        this.clock = clock;
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * API to (re)build Summary Statistics from every value currently stored for each metric
+     *
+     * @param savedMetrics - metrics whose stats should be rebuilt
+     */
     @Override
     public void calculateStatsForMetrics(List<MetricItem> savedMetrics) {
 
         for (int i = 0; i < savedMetrics.size(); i++) {
             MetricItem metricItem = savedMetrics.get(i);
-            if (metricItem.getValues().size() > 1) {
-                // Do Update
-                updateStats(metricItem);
+            Lock lock = metricLocks.forMetric(metricItem.getId()).writeLock();
+            lock.lock();
+            try {
+                initializeStats(metricItem, metricItem.getSeries().size());
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
 
-            } else {
-                initializeStats(metricItem);
+    /**
+     * API to record values appended to a metric
+     *
+     * @param metricId   - UUID of Metric
+     * @param timestamps - epoch milliseconds of each appended value
+     * @param values     - appended values
+     * @param offset     - index of the first appended value
+     * @param length     - number of appended values
+     */
+    @Override
+    public void recordValues(UUID metricId, long[] timestamps, double[] values, int offset, int length) {
+        Lock lock = metricLocks.forMetric(metricId).writeLock();
+        lock.lock();
+        try {
+            SummaryStatistics stats = store.get(metricId);
+            if (stats == null) {
+                throw new MetricDoestNotExistException("Metric does not exist");
             }
+            for (int i = offset; i < offset + length; i++) {
+                updateStats(stats, timestamps[i], values[i]);
+            }
+            recordedValues.add(length);
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -34,90 +145,445 @@ public class CustomStatsRepository implements StatsRepository {
     /**
      * API to retrieve Summary Statistics
      *
-     * @param uuids List of UUIds to view Summaries
-     * @return Summary Statistics of Metric including mean , median , minimum value , and maximum value
+     * @param uuids       List of UUIds to view Summaries
+     * @param percentiles percentiles between 0 and 100 to report , skipped for metrics whose mode cannot answer them
+     * @return Summary Statistics of Metric including mean , median , minimum value , maximum value , variance ,
+     * standard deviation and percentiles
      * @throws MetricDoestNotExistException
      */
     @Override
-    public List<SummaryStatistics> findStatsForMetric(List<UUID> uuids) throws MetricDoestNotExistException {
-        List<SummaryStatistics> summaryStatistics = new ArrayList<>();
-        for (int i = 0; i < uuids.size(); i++) {
-            UUID uuid = uuids.get(i);
-            if (store.get(uuid) == null) {
+    public List<SummaryStatistics> findStatsForMetric(List<UUID> uuids, List<Double> percentiles)
+            throws MetricDoestNotExistException {
+        List<SummaryStatistics> summaryStatistics = findAvailableStats(uuids, percentiles);
+        for (SummaryStatistics stat : summaryStatistics) {
+            if (stat == null) {
                 throw new MetricDoestNotExistException("Metric does not exist");
             }
+        }
+        return summaryStatistics;
+    }
 
-            SummaryStatistics stat = store.get(uuid);
-            PriorityQueue<Double> priorityQueue = stat.getMaintainOrder();
+    /**
+     * API to retrieve the Summary Statistics of metrics some of which may not exist. Requests for more metrics than
+     * the parallel threshold are split in chunks read in parallel on the common fork join pool.
+     *
+     * @param uuids       List of UUIds to view Summaries
+     * @param percentiles percentiles between 0 and 100 to report
+     * @return Summary Statistics in the order of uuids , null where a metric does not exist
+     */
+    @Override
+    public List<SummaryStatistics> findAvailableStats(List<UUID> uuids, List<Double> percentiles) {
+        checkPercentiles(percentiles);
+
+        UUID[] metricIds = uuids.toArray(new UUID[0]);
+        SummaryStatistics[] summaryStatistics = new SummaryStatistics[metricIds.length];
+        long now = clock.millis();
+        if (metricIds.length > parallelThreshold) {
+            ForkJoinPool.commonPool().invoke(
+                    new StatsTask(metricIds, summaryStatistics, percentiles, now, 0, metricIds.length));
+        } else {
+            readStats(metricIds, summaryStatistics, percentiles, now, 0, metricIds.length);
+        }
 
-            List<Double> sortedValues = new ArrayList<>();
-            while (!priorityQueue.isEmpty()) {
-                Double metric = priorityQueue.poll();
-                sortedValues.add(metric);
+        statsReads.add(metricIds.length);
+        return Arrays.asList(summaryStatistics);
+    }
+
+    /**
+     * API to merge the Summary Statistics of many metrics , count , sum , mean , variance , min and max merge exactly
+     * while percentiles merge the sketches of the APPROXIMATE metrics. Metrics are split in chunks merged in
+     * parallel on the common fork join pool , each metric is only read locked while it is folded in.
+     *
+     * @param uuids       - metrics to merge , unknown ones are skipped
+     * @param percentiles - percentiles between 0 and 100 to report
+     * @return merged stats , percentiles are empty when no APPROXIMATE metric was selected
+     */
+    @Override
+    public AggregateStatistics aggregateStats(List<UUID> uuids, List<Double> percentiles) {
+        checkPercentiles(percentiles);
+
+        UUID[] metricIds = uuids.toArray(new UUID[0]);
+        Aggregate merged = ForkJoinPool.commonPool().invoke(new AggregateTask(metricIds, 0, metricIds.length));
+
+        RunningMoments moments = merged.moments;
+        AggregateStatistics aggregate = new AggregateStatistics();
+        aggregate.setMetrics(merged.metrics);
+        aggregate.setCount(moments.getCount());
+        if (moments.getCount() > 0) {
+            aggregate.setSum(moments.getSum());
+            aggregate.setMean(moments.getMean());
+            aggregate.setMin(moments.getMin());
+            aggregate.setMax(moments.getMax());
+            aggregate.setVariance(moments.getVariance());
+            aggregate.setStandardDeviation(moments.getStandardDeviation());
+        }
+
+        Map<String, Double> values = new LinkedHashMap<>();
+        if (merged.sketch.getCount() > 0) {
+            for (Double percentile : percentiles) {
+                values.put(percentileKey(percentile), merged.sketch.quantile(percentile / 100));
             }
+            aggregate.setRankErrorBound(merged.sketch.rankErrorBound());
+        }
+        aggregate.setPercentiles(values);
+        aggregate.setQuantileMetrics(merged.quantileMetrics);
+        return aggregate;
+    }
+
+    /**
+     * @param metricId - UUID of Metric
+     * @return version of the stats of the metric , it changes whenever a value is recorded or the stats are rebuilt
+     */
+    @Override
+    public long statsVersion(UUID metricId) {
+        SummaryStatistics stats = store.get(metricId);
+        return stats == null ? -1 : stats.getVersion();
+    }
 
-            Double median = getMedian(sortedValues);
-            stat.setMedian(median);
-            stat.setMaintainOrder(new PriorityQueue<>(sortedValues));
+    /**
+     * Rebuild the stats of a metric from the first length values of series only, values appended after those
+     * are expected to be recorded separately. Nothing happens when retention replaced series in the meantime , the
+     * compaction rebuilt the stats from the new series itself.
+     */
+    void calculateStatsForPrefix(MetricItem metricItem, ValueSeries series, int length) {
+        Lock lock = metricLocks.forMetric(metricItem.getId()).writeLock();
+        lock.lock();
+        try {
+            if (metricItem.getSeries() == series) {
+                initializeStats(metricItem, length);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
 
-            summaryStatistics.add(stat);
+    /**
+     * Give a metric empty stats unless it already has some , its values are expected to be applied afterwards
+     */
+    void initializeEmptyStats(MetricItem metricItem) {
+        Lock lock = metricLocks.forMetric(metricItem.getId()).writeLock();
+        lock.lock();
+        try {
+            if (!store.containsKey(metricItem.getId())) {
+                initializeStats(metricItem, 0);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
 
+    /**
+     * @return approximate bytes held by the stats of the metric , 0 when it has none
+     */
+    public long estimatedBytes(UUID metricId) {
+        SummaryStatistics stats = store.get(metricId);
+        if (stats == null) {
+            return 0;
         }
+        // Read without the metric lock , sizes may lag behind a concurrent write
+        long bytes = MOMENTS_BYTES + stats.getQuantileEstimator().estimatedBytes();
+        for (TimeWindow window : stats.getTimeWindows().values()) {
+            bytes += window.estimatedBytes();
+        }
+        return bytes;
+    }
 
-        return summaryStatistics;
+    /**
+     * @return values appended since startup and recorded , values of saves and rebuilds are not counted
+     */
+    public long recordedValues() {
+        return recordedValues.sum();
+    }
+
+    /**
+     * @return stats of a metric read since startup
+     */
+    public long statsReads() {
+        return statsReads.sum();
     }
 
-    private void updateStats(MetricItem item) {
-        SummaryStatistics previousStats = store.get(item.getId());
-        PriorityQueue<Double> maintainOrder = previousStats.getMaintainOrder();
-        int count = item.getValues().size();
-        double insertedItem = item.getValues().get(count - 1);
-        maintainOrder.add(insertedItem);
+    /**
+     * @return stats reads served from the published snapshot without locking
+     */
+    public long snapshotHits() {
+        return snapshotHits.sum();
+    }
+
+    public void clear() {
+        store.clear();
+    }
 
-        // Calculate Average
-        double sum = item.getValues().stream().mapToDouble(d -> d).sum();
+    private void updateStats(SummaryStatistics previousStats, long timestamp, double insertedItem) {
+        QuantileEstimator quantileEstimator = previousStats.getQuantileEstimator();
+        quantileEstimator.add(insertedItem);
 
-        double average = sum / count;
-        previousStats.setMean(average);
+        // Running accumulators, every value is only ever visited once
+        RunningMoments moments = previousStats.getMoments();
+        moments.add(insertedItem);
+        applyMoments(previousStats, moments);
 
-        // Calculate Min
-        if (insertedItem < previousStats.getMin()) {
-            previousStats.setMin(insertedItem);
+        for (TimeWindow window : previousStats.getTimeWindows().values()) {
+            window.add(timestamp, insertedItem);
         }
+        // Single writer under the write lock , published after the values it covers
+        previousStats.setVersion(previousStats.getVersion() + 1);
+    }
 
-        // Calculate Max
-        if (insertedItem > previousStats.getMax()) {
-            previousStats.setMax(insertedItem);
+    private void initializeStats(MetricItem item, int length) {
+        SummaryStatistics summaryStatistics = new SummaryStatistics();
+        summaryStatistics.setId(item.getId().toString());
+        summaryStatistics.setStatsMode(item.getStatsMode());
+        summaryStatistics.setQuantileEstimator(quantileEstimator(item.getStatsMode()));
+        RunningMoments moments = new RunningMoments();
+        // Values compacted by retention only survive in their rollups , which merge into the moments exactly
+        if (item.getRollupSeries() != null) {
+            item.getRollupSeries().mergeInto(moments);
+        }
+        applyMoments(summaryStatistics, moments);
+        summaryStatistics.setMoments(moments);
+        Map<String, TimeWindow> timeWindows = new LinkedHashMap<>();
+        for (Map.Entry<String, Duration> window : windows.entrySet()) {
+            timeWindows.put(window.getKey(), new TimeWindow(window.getValue()));
         }
+        summaryStatistics.setTimeWindows(timeWindows);
+
+        // Versions keep increasing across rebuilds so snapshots of the previous stats are never served again
+        SummaryStatistics previous = store.get(item.getId());
+        summaryStatistics.setVersion(previous == null ? 0 : previous.getVersion() + 1);
 
+        ValueSeries values = item.getSeries();
+        if (length == values.size()) {
+            values.forEachTimestamped((timestamp, value) -> updateStats(summaryStatistics, timestamp, value));
+        } else {
+            ValueCursor cursor = values.cursor(0, length);
+            while (cursor.next()) {
+                updateStats(summaryStatistics, cursor.timestamp(), cursor.value());
+            }
+        }
+        store.put(item.getId(), summaryStatistics);
 
     }
 
-    private void initializeStats(MetricItem item) {
-        Double initialMetric = item.getValues().get(0);
-        SummaryStatistics summaryStatistics = new SummaryStatistics(initialMetric, initialMetric, initialMetric,
-                initialMetric, item.getId().toString(), new PriorityQueue<Double>());
-        store.put(item.getId(), summaryStatistics);
+    /**
+     * Copy the stats of metricIds[from , to) into the same positions of summaryStatistics
+     */
+    private void readStats(UUID[] metricIds, SummaryStatistics[] summaryStatistics, List<Double> percentiles,
+                           long now, int from, int to) {
+        boolean defaults = DEFAULT_PERCENTILES.equals(percentiles);
+        for (int i = from; i < to; i++) {
+            SummaryStatistics stat = store.get(metricIds[i]);
+            if (stat == null) {
+                continue;
+            }
+
+            // The published snapshot is served without locking as long as no value was recorded since
+            SummaryStatistics snapshot = stat.getSnapshot();
+            if (defaults && snapshot != null && snapshot.getVersion() == stat.getVersion()
+                    && now < snapshot.getValidUntil()) {
+                summaryStatistics[i] = snapshot;
+                snapshotHits.increment();
+                continue;
+            }
+
+            Lock lock = metricLocks.forMetric(metricIds[i]).readLock();
+            lock.lock();
+            try {
+                // Copy so writers can keep going while the response is serialized
+                SummaryStatistics copy = copyOf(stat, percentiles, now);
+                if (defaults) {
+                    stat.setSnapshot(copy);
+                }
+                summaryStatistics[i] = copy;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
 
-        PriorityQueue<Double> maintainOrder = summaryStatistics.getMaintainOrder();
-        maintainOrder.add(initialMetric);
+    private static QuantileEstimator quantileEstimator(StatsMode statsMode) {
+        if (statsMode == StatsMode.APPROXIMATE) {
+            return new KllSketch();
+        }
+        if (statsMode == StatsMode.LAZY_EXACT) {
+            return new SelectionQuantiles();
+        }
+        return new StreamingMedian();
+    }
 
+    private void applyMoments(SummaryStatistics stats, RunningMoments moments) {
+        stats.setCount(moments.getCount());
+        stats.setMean(moments.getMean());
+        stats.setMin(moments.getMin());
+        stats.setMax(moments.getMax());
+        stats.setVariance(moments.getVariance());
+        stats.setStandardDeviation(moments.getStandardDeviation());
+    }
+
+    private SummaryStatistics copyOf(SummaryStatistics stats, List<Double> percentiles, long now) {
+        QuantileEstimator quantileEstimator = stats.getQuantileEstimator();
+
+        SummaryStatistics copy = new SummaryStatistics();
+        copy.setId(stats.getId());
+        copy.setStatsMode(stats.getStatsMode());
+        copy.setCount(stats.getCount());
+        copy.setMean(stats.getMean());
+        copy.setMedian(quantileEstimator.quantile(0.5));
+        copy.setMin(stats.getMin());
+        copy.setMax(stats.getMax());
+        copy.setVariance(stats.getVariance());
+        copy.setStandardDeviation(stats.getStandardDeviation());
+        copy.setRankErrorBound(quantileEstimator.rankErrorBound());
+        copy.setMemoryBytes(MOMENTS_BYTES + quantileEstimator.estimatedBytes());
+
+        long validUntil = Long.MAX_VALUE;
+        Map<String, WindowStatistics> windowStatistics = new LinkedHashMap<>();
+        for (Map.Entry<String, TimeWindow> window : stats.getTimeWindows().entrySet()) {
+            windowStatistics.put(window.getKey(), window.getValue().summarize(now));
+            validUntil = Math.min(validUntil, window.getValue().nextSlide(now));
+        }
+        copy.setWindows(Collections.unmodifiableMap(windowStatistics));
+        copy.setVersion(stats.getVersion());
+        copy.setValidUntil(validUntil);
+
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (Double percentile : percentiles) {
+            double quantile = percentile / 100;
+            if (quantileEstimator.supportsQuantile(quantile)) {
+                values.put(percentileKey(percentile), quantileEstimator.quantile(quantile));
+            }
+        }
+        copy.setPercentiles(Collections.unmodifiableMap(values));
+        return copy;
+    }
+
+    private static void checkPercentiles(List<Double> percentiles) {
+        for (Double percentile : percentiles) {
+            if (percentile == null || percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("Percentiles must be between 0 and 100");
+            }
+        }
+    }
+
+    private static Map<String, Duration> parseWindows(String windows) {
+        Map<String, Duration> parsed = new LinkedHashMap<>();
+        for (String window : windows.split(",")) {
+            String label = window.trim();
+            if (label.isEmpty()) {
+                continue;
+            }
+            Duration duration = DurationStyle.detectAndParse(label);
+            if (duration.isNegative() || duration.isZero()) {
+                throw new IllegalArgumentException("Stats windows must be positive: " + label);
+            }
+            parsed.put(label, duration);
+        }
+        return parsed;
+    }
+
+    private static String percentileKey(double percentile) {
+        return "p" + BigDecimal.valueOf(percentile).stripTrailingZeros().toPlainString();
     }
 
 
     /**
-     * Helper Method to retrieve Median depending on size of values
-     *
-     * @param sortedDouble
-     * @return Median Value
+     * Partial merge of the stats of a chunk of metrics
      */
-    private Double getMedian(List<Double> sortedDouble) {
-        Double median;
-        if (sortedDouble.size() % 2 != 0) {
-            median = sortedDouble.get(sortedDouble.size() / 2);
-        } else {
-            median = (sortedDouble.get((sortedDouble.size() - 1) / 2) + sortedDouble.get((sortedDouble.size() / 2)));
+    private static final class Aggregate {
+
+        private final RunningMoments moments = new RunningMoments();
+        private final KllSketch sketch = new KllSketch();
+        private int metrics;
+        private int quantileMetrics;
+
+        private void add(SummaryStatistics stats) {
+            moments.merge(stats.getMoments());
+            if (stats.getQuantileEstimator() instanceof KllSketch) {
+                sketch.merge((KllSketch) stats.getQuantileEstimator());
+                quantileMetrics++;
+            }
+            metrics++;
+        }
+
+        private Aggregate merge(Aggregate other) {
+            moments.merge(other.moments);
+            sketch.merge(other.sketch);
+            metrics += other.metrics;
+            quantileMetrics += other.quantileMetrics;
+            return this;
+        }
+    }
+
+
+    private final class StatsTask extends RecursiveAction {
+
+        private final UUID[] metricIds;
+        private final SummaryStatistics[] summaryStatistics;
+        private final List<Double> percentiles;
+        private final long now;
+        private final int from;
+        private final int to;
+
+        private StatsTask(UUID[] metricIds, SummaryStatistics[] summaryStatistics, List<Double> percentiles,
+                          long now, int from, int to) {
+            this.metricIds = metricIds;
+            this.summaryStatistics = summaryStatistics;
+            this.percentiles = percentiles;
+            this.now = now;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > parallelThreshold) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new StatsTask(metricIds, summaryStatistics, percentiles, now, from, middle),
+                        new StatsTask(metricIds, summaryStatistics, percentiles, now, middle, to));
+                return;
+            }
+            readStats(metricIds, summaryStatistics, percentiles, now, from, to);
         }
-        return median;
     }
+
+
+    private final class AggregateTask extends RecursiveTask<Aggregate> {
+
+        private final UUID[] metricIds;
+        private final int from;
+        private final int to;
+
+        private AggregateTask(UUID[] metricIds, int from, int to) {
+            this.metricIds = metricIds;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Aggregate compute() {
+            if (to - from > AGGREGATE_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                AggregateTask left = new AggregateTask(metricIds, from, middle);
+                left.fork();
+                Aggregate right = new AggregateTask(metricIds, middle, to).compute();
+                return left.join().merge(right);
+            }
+
+            Aggregate aggregate = new Aggregate();
+            for (int i = from; i < to; i++) {
+                SummaryStatistics stats = store.get(metricIds[i]);
+                if (stats == null) {
+                    continue;
+                }
+                Lock lock = metricLocks.forMetric(metricIds[i]).readLock();
+                lock.lock();
+                try {
+                    aggregate.add(stats);
+                } finally {
+                    lock.unlock();
+                }
+            }
+            return aggregate;
+        }
+    }
+
 }
@@ -0,0 +1,63 @@
+package com.metrics.api.repository;
+
+import com.metrics.api.storage.MappedValueSeries;
+import com.metrics.api.storage.SegmentArena;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.nio.file.Paths;
+
+/**
+ * {@link MetricRepository} keeping metric values off the Java heap in memory-mapped segment files.
+ * <p>
+ * The heap only holds the UUID index, names and the block addresses of each series, values are appended to and
+ * read straight from the mappings. Selected with metrics.storage=mapped ( or the mapped profile ).
+ */
+@Service
+@ConditionalOnProperty(name = "metrics.storage", havingValue = "mapped")
+public class MappedMetricRepository extends CustomMetricRepository {
+
+    private final SegmentArena arena;
+
+    public MappedMetricRepository(SegmentArena arena) {
+        this(arena, new MetricLocks());
+    }
+
+    private MappedMetricRepository(SegmentArena arena, MetricLocks metricLocks) {
+        this(arena, new CustomStatsRepository(metricLocks), metricLocks);
+    }
+
+    public MappedMetricRepository(SegmentArena arena, StatsRepository statsRepository, MetricLocks metricLocks) {
+        this(arena, statsRepository, metricLocks, MetricJournal.NONE);
+    }
+
+    public MappedMetricRepository(SegmentArena arena, StatsRepository statsRepository, MetricLocks metricLocks,
+                                  MetricJournal journal) {
+        this(arena, statsRepository, metricLocks, journal, new MetricNameIndex(false));
+    }
+
+    public MappedMetricRepository(SegmentArena arena, StatsRepository statsRepository, MetricLocks metricLocks,
+                                  MetricJournal journal, MetricNameIndex nameIndex) {
+        super(() -> new MappedValueSeries(arena), statsRepository, metricLocks, journal, nameIndex);
+        this.arena = arena;
+    }
+
+    @Autowired
+    public MappedMetricRepository(@Value("${metrics.storage.mapped.directory:${java.io.tmpdir}/metric-segments}")
+                                          String directory,
+                                  @Value("${metrics.storage.mapped.segment-bytes:67108864}") int segmentBytes,
+                                  StatsRepository statsRepository, MetricLocks metricLocks, MetricJournal journal,
+                                  MetricNameIndex nameIndex) {
+        this(new SegmentArena(Paths.get(directory), segmentBytes), statsRepository, metricLocks, journal,
+                nameIndex);
+    }
+
+    @PreDestroy
+    public void close() {
+        arena.close();
+    }
+
+}
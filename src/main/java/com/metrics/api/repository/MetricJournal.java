@@ -0,0 +1,39 @@
+package com.metrics.api.repository;
+
+import com.metrics.api.model.StatsMode;
+
+import java.util.UUID;
+
+/**
+ * Receives every save and update before it is applied in memory, so a durable implementation can replay them.
+ * <p>
+ * Records are logged while the metric write lock is held, each update carries the index its value is appended at
+ * which makes replaying an already applied record a no-op.
+ */
+public interface MetricJournal {
+
+    MetricJournal NONE = new MetricJournal() {
+    };
+
+    /**
+     * @return position of the record , passed to {@link #awaitDurable(long)}
+     */
+    default long logSave(UUID metricId, String name, StatsMode statsMode, long timestamp, double value) {
+        return 0;
+    }
+
+    /**
+     * @param index - position the value is appended at in the series of the metric
+     * @return position of the record , passed to {@link #awaitDurable(long)}
+     */
+    default long logUpdate(UUID metricId, int index, long timestamp, double value) {
+        return 0;
+    }
+
+    /**
+     * Block until every record up to position has been flushed to stable storage
+     */
+    default void awaitDurable(long position) {
+    }
+
+}
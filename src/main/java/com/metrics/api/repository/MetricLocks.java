@@ -0,0 +1,48 @@
+package com.metrics.api.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Striped read/write locks shared by the metric and stats repositories.
+ * <p>
+ * A metric always maps to the same stripe, so holding its write lock while appending values and recording stats
+ * makes the update atomic for anyone reading under the read lock. Metrics hashing to different stripes never
+ * contend with each other.
+ */
+@Component
+public class MetricLocks {
+
+    public static final int DEFAULT_STRIPES = 256;
+
+    private final ReadWriteLock[] stripes;
+    private final int mask;
+
+    public MetricLocks() {
+        this(DEFAULT_STRIPES);
+    }
+
+    @Autowired
+    public MetricLocks(@Value("${metrics.lock.stripes:" + DEFAULT_STRIPES + "}") int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.stripes = new ReadWriteLock[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new ReentrantReadWriteLock();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * @param metricId - UUID of Metric
+     * @return lock guarding the values and stats of the metric
+     */
+    public ReadWriteLock forMetric(UUID metricId) {
+        int hash = metricId.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & mask];
+    }
+}
@@ -0,0 +1,150 @@
+package com.metrics.api.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.regex.Pattern;
+
+/**
+ * Secondary index from metric names to ids.
+ * <p>
+ * Exact lookups go through a hash map of name to the ids carrying it ( oldest first ), prefix and glob searches
+ * walk a sorted set of the names from the longest literal prefix of the pattern, so they only visit names that can
+ * match. When unique is set a name can only be reserved by one metric.
+ */
+@Component
+public class MetricNameIndex {
+
+    private final boolean unique;
+    // Lists are replaced , never mutated , so readers can iterate them without locking
+    private final ConcurrentHashMap<String, List<UUID>> ids = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<String> names = new ConcurrentSkipListSet<>();
+
+    @Autowired
+    public MetricNameIndex(@Value("${metrics.names.unique:false}") boolean unique) {
+        this.unique = unique;
+    }
+
+    public boolean isUnique() {
+        return unique;
+    }
+
+    /**
+     * Index metricId under name
+     *
+     * @return false when names are unique and another metric already holds name , nothing is indexed then
+     */
+    public boolean add(String name, UUID metricId) {
+        if (name == null) {
+            return true;
+        }
+        boolean[] added = {true};
+        ids.compute(name, (key, current) -> {
+            if (current == null) {
+                return Collections.singletonList(metricId);
+            }
+            if (current.contains(metricId)) {
+                return current;
+            }
+            if (unique) {
+                added[0] = false;
+                return current;
+            }
+            List<UUID> grown = new ArrayList<>(current.size() + 1);
+            grown.addAll(current);
+            grown.add(metricId);
+            return Collections.unmodifiableList(grown);
+        });
+        if (added[0]) {
+            names.add(name);
+        }
+        return added[0];
+    }
+
+    public void remove(String name, UUID metricId) {
+        if (name == null) {
+            return;
+        }
+        List<UUID> left = ids.computeIfPresent(name, (key, current) -> {
+            List<UUID> shrunk = new ArrayList<>(current);
+            shrunk.remove(metricId);
+            return shrunk.isEmpty() ? null : Collections.unmodifiableList(shrunk);
+        });
+        if (left == null) {
+            names.remove(name);
+            // A concurrent add may have indexed the name again in between
+            if (ids.containsKey(name)) {
+                names.add(name);
+            }
+        }
+    }
+
+    /**
+     * @return ids of the metrics named name , oldest first , empty when there are none
+     */
+    public List<UUID> lookup(String name) {
+        List<UUID> found = name == null ? null : ids.get(name);
+        return found == null ? Collections.emptyList() : found;
+    }
+
+    /**
+     * @param pattern - glob where * matches any run of characters and ? a single character , a pattern without
+     *                wildcards is a prefix search
+     * @param limit   - maximum number of names returned
+     * @return matching names in lexicographic order
+     */
+    public List<String> search(String pattern, int limit) {
+        int wildcard = firstWildcard(pattern);
+        String prefix = wildcard < 0 ? pattern : pattern.substring(0, wildcard);
+        Pattern glob = wildcard < 0 ? null : compileGlob(pattern);
+
+        List<String> matches = new ArrayList<>();
+        for (String name : names.tailSet(prefix)) {
+            if (matches.size() >= limit || !name.startsWith(prefix)) {
+                break;
+            }
+            if (glob == null || glob.matcher(name).matches()) {
+                matches.add(name);
+            }
+        }
+        return matches;
+    }
+
+    public void clear() {
+        ids.clear();
+        names.clear();
+    }
+
+    private static int firstWildcard(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '*' || c == '?') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static Pattern compileGlob(String glob) {
+        StringBuilder regex = new StringBuilder();
+        int literal = 0;
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '*' || c == '?') {
+                if (literal < i) {
+                    regex.append(Pattern.quote(glob.substring(literal, i)));
+                }
+                regex.append(c == '*' ? ".*" : ".");
+                literal = i + 1;
+            }
+        }
+        if (literal < glob.length()) {
+            regex.append(Pattern.quote(glob.substring(literal)));
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+}
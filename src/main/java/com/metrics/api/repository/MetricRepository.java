@@ -3,8 +3,10 @@ package com.metrics.api.repository;
 
 import com.metrics.api.datatransferobjects.SaveItemDTO;
 import com.metrics.api.datatransferobjects.UpdateItemDTO;
+import com.metrics.api.ingest.ValueBatch;
 import com.metrics.api.model.MetricItem;
 import com.metrics.api.model.SummaryStatistics;
+import com.metrics.api.model.UpdateResult;
 
 import java.util.List;
 
@@ -15,6 +17,34 @@ public interface MetricRepository {
 
     MetricItem find(String id) throws MetricDoestNotExistException;
 
-
-    List<MetricItem> update( List<UpdateItemDTO> metricItems) throws MetricDoestNotExistException;
+    /**
+     * @return consistent view of the values of metricItem as of the call , values appended later are not part of it
+     */
+    RetainedValues retained(MetricItem metricItem);
+
+    /**
+     * @return the metric named name
+     * @throws MetricDoestNotExistException when no metric has that name
+     * @throws IllegalArgumentException     when several metrics share the name
+     */
+    MetricItem findByName(String name) throws MetricDoestNotExistException;
+
+    /**
+     * @param pattern - name prefix , or glob with * and ? wildcards
+     * @param limit   - maximum number of metrics returned
+     * @return metrics whose name matches , ordered by name
+     */
+    List<MetricItem> search(String pattern, int limit);
+
+    /**
+     * @return one result per metric , in the order each metric first appears in metricItems
+     */
+    List<UpdateResult> update(List<UpdateItemDTO> metricItems) throws MetricDoestNotExistException;
+
+    /**
+     * Append a batch of values without building a response per metric
+     *
+     * @return number of values applied , values of unknown metrics are skipped
+     */
+    int ingest(ValueBatch batch);
 }
@@ -0,0 +1,306 @@
+package com.metrics.api.repository;
+
+import com.metrics.api.model.AggregateStatistics;
+import com.metrics.api.model.MetricItem;
+import com.metrics.api.model.SummaryStatistics;
+import com.metrics.api.storage.ValueSeries;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Records stats asynchronously on a fixed set of shard threads in front of {@link CustomStatsRepository}.
+ * <p>
+ * Metrics are partitioned by UUID hash, so each metric has a single writer applying its values in the order they
+ * were appended. Each shard holds at most queueCapacity pending values: {@link #admit(List)} blocks (BLOCK) or
+ * throws {@link StatsBackpressureException} (REJECT) before a batch is written when its shards are full. The bound
+ * is checked on admission, so concurrent batches admitted together may overshoot it by their own size.
+ * <p>
+ * {@link #awaitWrites(List)} waits until the shards owning the metrics have applied everything submitted before the
+ * call, which gives reads their own writes.
+ */
+@Slf4j
+@Primary
+@Service
+@ConditionalOnProperty(name = "metrics.stats.pipeline.enabled", havingValue = "true", matchIfMissing = true)
+public class PipelinedStatsRepository implements StatsRepository {
+
+    public enum Backpressure {
+        BLOCK,
+        REJECT
+    }
+
+    private final CustomStatsRepository delegate;
+    private final Backpressure backpressure;
+    private final long blockTimeoutMillis;
+    private final long queueCapacity;
+    private final Shard[] shards;
+
+    @Autowired
+    public PipelinedStatsRepository(CustomStatsRepository delegate,
+                                    @Value("${metrics.stats.pipeline.shards:4}") int shardCount,
+                                    @Value("${metrics.stats.pipeline.queue-capacity:100000}") long queueCapacity,
+                                    @Value("${metrics.stats.pipeline.backpressure:BLOCK}") Backpressure backpressure,
+                                    @Value("${metrics.stats.pipeline.block-timeout-ms:5000}") long blockTimeoutMillis) {
+        this.delegate = delegate;
+        this.backpressure = backpressure;
+        this.blockTimeoutMillis = blockTimeoutMillis;
+        this.queueCapacity = queueCapacity;
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i);
+            shards[i].worker.start();
+        }
+    }
+
+    /**
+     * API to initialize or rebuild stats, applied on the shard of each metric ahead of any later values. A metric
+     * without stats gets empty ones right away, so reads that do not wait for the shard already find it.
+     */
+    @Override
+    public void calculateStatsForMetrics(List<MetricItem> savedMetrics) {
+        for (int i = 0; i < savedMetrics.size(); i++) {
+            MetricItem metricItem = savedMetrics.get(i);
+            delegate.initializeEmptyStats(metricItem);
+            // Only the values present now are replayed , later ones reach the shard through recordValues
+            ValueSeries series = metricItem.getSeries();
+            shardFor(metricItem.getId()).submit(new StatsTask(metricItem.getId(), null, null, metricItem, series,
+                    series.size()), 1);
+        }
+    }
+
+    /**
+     * API to record appended values, the values are copied so callers may reuse their array
+     */
+    @Override
+    public void recordValues(UUID metricId, long[] timestamps, double[] values, int offset, int length) {
+        long[] timestampCopy = Arrays.copyOfRange(timestamps, offset, offset + length);
+        double[] copy = Arrays.copyOfRange(values, offset, offset + length);
+        shardFor(metricId).submit(new StatsTask(metricId, timestampCopy, copy, null, null, 0), length);
+    }
+
+    @Override
+    public List<SummaryStatistics> findStatsForMetric(List<UUID> metricSummary, List<Double> percentiles)
+            throws MetricDoestNotExistException {
+        return delegate.findStatsForMetric(metricSummary, percentiles);
+    }
+
+    @Override
+    public List<SummaryStatistics> findAvailableStats(List<UUID> metricIds, List<Double> percentiles) {
+        return delegate.findAvailableStats(metricIds, percentiles);
+    }
+
+    @Override
+    public AggregateStatistics aggregateStats(List<UUID> metricIds, List<Double> percentiles) {
+        return delegate.aggregateStats(metricIds, percentiles);
+    }
+
+    @Override
+    public long statsVersion(UUID metricId) {
+        return delegate.statsVersion(metricId);
+    }
+
+    @Override
+    public void admit(List<UUID> metricIds) throws StatsBackpressureException {
+        long[] incoming = new long[shards.length];
+        for (int i = 0; i < metricIds.size(); i++) {
+            incoming[shardIndex(metricIds.get(i))]++;
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(blockTimeoutMillis);
+        for (int i = 0; i < shards.length; i++) {
+            if (incoming[i] > 0) {
+                shards[i].awaitCapacity(incoming[i], deadline);
+            }
+        }
+    }
+
+    @Override
+    public void awaitWrites(List<UUID> metricIds) {
+        boolean[] seen = new boolean[shards.length];
+        long[] targets = new long[shards.length];
+        for (int i = 0; i < metricIds.size(); i++) {
+            int index = shardIndex(metricIds.get(i));
+            if (!seen[index]) {
+                seen[index] = true;
+                targets[index] = shards[index].submitted.get();
+            }
+        }
+        for (int i = 0; i < shards.length; i++) {
+            if (seen[i]) {
+                shards[i].awaitCompleted(targets[i]);
+            }
+        }
+    }
+
+    /**
+     * @return values submitted to the shards but not applied yet
+     */
+    public long pendingValues() {
+        long pending = 0;
+        for (Shard shard : shards) {
+            pending += shard.pending.get();
+        }
+        return pending;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Shard shard : shards) {
+            shard.worker.interrupt();
+        }
+    }
+
+    private Shard shardFor(UUID metricId) {
+        return shards[shardIndex(metricId)];
+    }
+
+    private int shardIndex(UUID metricId) {
+        int hash = metricId.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), shards.length);
+    }
+
+
+    private static final class StatsTask {
+
+        private final UUID metricId;
+        private final long[] timestamps;
+        private final double[] values;
+        private final MetricItem rebuild;
+        private final ValueSeries rebuildSeries;
+        private final int rebuildLength;
+
+        private StatsTask(UUID metricId, long[] timestamps, double[] values, MetricItem rebuild,
+                          ValueSeries rebuildSeries, int rebuildLength) {
+            this.metricId = metricId;
+            this.timestamps = timestamps;
+            this.values = values;
+            this.rebuild = rebuild;
+            this.rebuildSeries = rebuildSeries;
+            this.rebuildLength = rebuildLength;
+        }
+    }
+
+
+    /**
+     * Single writer applying the stats of every metric hashing to it, in submission order
+     */
+    private final class Shard implements Runnable {
+
+        private final LinkedBlockingQueue<StatsTask> queue = new LinkedBlockingQueue<>();
+        private final AtomicLong pending = new AtomicLong();
+        private final AtomicLong submitted = new AtomicLong();
+        private volatile long completed;
+        private volatile int waiters;
+        // A lock rather than a monitor , request threads parked on it release their carrier when they are virtual
+        private final ReentrantLock progress = new ReentrantLock();
+        private final Condition advanced = progress.newCondition();
+        private final Thread worker;
+
+        private Shard(int index) {
+            worker = new Thread(this, "stats-shard-" + index);
+            worker.setDaemon(true);
+        }
+
+        private void submit(StatsTask task, long values) {
+            // Counted before the enqueue, the queue is FIFO so completing that many tasks covers every task
+            // already queued when awaitWrites took its target
+            pending.addAndGet(values);
+            submitted.incrementAndGet();
+            queue.add(task);
+        }
+
+        @Override
+        public void run() {
+            while (!Thread.currentThread().isInterrupted()) {
+                StatsTask task;
+                try {
+                    task = queue.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                try {
+                    if (task.rebuild != null) {
+                        delegate.calculateStatsForPrefix(task.rebuild, task.rebuildSeries, task.rebuildLength);
+                    } else {
+                        delegate.recordValues(task.metricId, task.timestamps, task.values, 0, task.values.length);
+                    }
+                } catch (RuntimeException e) {
+                    log.error("Failed to record stats for metric {}", task.metricId, e);
+                } finally {
+                    pending.addAndGet(task.rebuild != null ? -1 : -task.values.length);
+                    completed++;
+                    if (waiters > 0) {
+                        progress.lock();
+                        try {
+                            advanced.signalAll();
+                        } finally {
+                            progress.unlock();
+                        }
+                    }
+                }
+            }
+        }
+
+        private void awaitCapacity(long values, long deadline) {
+            // A batch larger than the whole queue is let through once the shard has drained
+            long limit = Math.max(0, queueCapacity - values);
+            if (pending.get() <= limit) {
+                return;
+            }
+            if (backpressure == Backpressure.REJECT) {
+                throw new StatsBackpressureException("Stats pipeline is full");
+            }
+            progress.lock();
+            try {
+                waiters++;
+                while (pending.get() > limit) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        throw new StatsBackpressureException("Timed out waiting for the stats pipeline");
+                    }
+                    waitOnProgress(remaining);
+                }
+            } finally {
+                waiters--;
+                progress.unlock();
+            }
+        }
+
+        private void awaitCompleted(long target) {
+            if (completed >= target) {
+                return;
+            }
+            progress.lock();
+            try {
+                waiters++;
+                while (completed < target) {
+                    waitOnProgress(Long.MAX_VALUE);
+                }
+            } finally {
+                waiters--;
+                progress.unlock();
+            }
+        }
+
+        private void waitOnProgress(long nanos) {
+            try {
+                advanced.awaitNanos(nanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted waiting for the stats pipeline", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.metrics.api.repository;
+
+import com.metrics.api.storage.RollupSeries;
+import com.metrics.api.storage.ValueSeries;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * The raw values of a metric as of one point in time , along with what was compacted before them. The view holds
+ * the series until it is closed , so compaction cannot give its storage away while it is read.
+ */
+@Data
+@AllArgsConstructor
+public class RetainedValues implements AutoCloseable {
+
+    // Append-only , only the first size values belong to this view
+    private final ValueSeries series;
+    private final int size;
+    // Values compacted out before the first value of series
+    private final long evicted;
+    // Copy of the rollups of the compacted values , null when nothing was compacted
+    private final RollupSeries rollupSeries;
+
+    @Override
+    public void close() {
+        series.release();
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.metrics.api.repository;
+
+public class StatsBackpressureException extends RuntimeException {
+
+    public StatsBackpressureException(String message) {
+        super(message);
+    }
+
+}
@@ -1,15 +1,58 @@
 package com.metrics.api.repository;
 
+import com.metrics.api.model.AggregateStatistics;
 import com.metrics.api.model.MetricItem;
 import com.metrics.api.model.SummaryStatistics;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 
 public interface StatsRepository {
 
+     List<Double> DEFAULT_PERCENTILES = Collections.unmodifiableList(Arrays.asList(50.0, 90.0, 99.0, 99.9));
+
      void calculateStatsForMetrics(List<MetricItem> savedMetrics);
 
-     List<SummaryStatistics> findStatsForMetric(List<UUID> metricSummary) throws MetricDoestNotExistException;
+     void recordValues(UUID metricId, long[] timestamps, double[] values, int offset, int length);
+
+     List<SummaryStatistics> findStatsForMetric(List<UUID> metricSummary, List<Double> percentiles)
+             throws MetricDoestNotExistException;
+
+     default List<SummaryStatistics> findStatsForMetric(List<UUID> metricSummary) throws MetricDoestNotExistException {
+          return findStatsForMetric(metricSummary, DEFAULT_PERCENTILES);
+     }
+
+     /**
+      * Stats of metricIds in request order , null where a metric has no stats instead of failing the whole list
+      */
+     List<SummaryStatistics> findAvailableStats(List<UUID> metricIds, List<Double> percentiles);
+
+     /**
+      * Merge the stats of metricIds into one , metrics without stats are skipped
+      */
+     AggregateStatistics aggregateStats(List<UUID> metricIds, List<Double> percentiles);
+
+     /**
+      * Called before a batch of values is written, one entry per value. Implementations recording stats
+      * asynchronously block or throw here, before anything has been applied.
+      */
+     default void admit(List<UUID> metricIds) throws StatsBackpressureException {
+     }
+
+     /**
+      * @return counter that changes whenever the stats of the metric change , -1 when it is not tracked in which
+      * case responses built from these stats must not be cached
+      */
+     default long statsVersion(UUID metricId) {
+          return -1;
+     }
+
+     /**
+      * Wait until every value recorded for these metrics before the call is visible to reads
+      */
+     default void awaitWrites(List<UUID> metricIds) {
+     }
 
 }
@@ -0,0 +1,113 @@
+package com.metrics.api.retention;
+
+import com.metrics.api.model.MetricItem;
+import com.metrics.api.repository.CustomMetricRepository;
+import com.metrics.api.repository.StatsRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background thread applying the {@link RetentionPolicy} to every metric every intervalMillis.
+ * <p>
+ * Compaction rewrites the raw values and rollups of a metric and rebuilds its stats , the moments keep covering
+ * every value ever posted through the rollups while quantiles only hold the retained values.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "metrics.retention.enabled", havingValue = "true")
+public class RetentionCompactor {
+
+    private final CustomMetricRepository repository;
+    private final StatsRepository statsRepository;
+    private final RetentionPolicy policy;
+    private final long intervalMillis;
+    private final Clock clock;
+    private ScheduledExecutorService compactor;
+
+    @Autowired
+    public RetentionCompactor(CustomMetricRepository repository, StatsRepository statsRepository,
+                              @Value("${metrics.retention.raw-age:1h}") String rawAge,
+                              @Value("${metrics.retention.max-raw-values:100000}") int maxRawValues,
+                              @Value("${metrics.retention.rollup-interval:1m}") String rollupInterval,
+                              @Value("${metrics.retention.max-rollups:10080}") int maxRollups,
+                              @Value("${metrics.retention.interval-ms:10000}") long intervalMillis) {
+        this(repository, statsRepository, new RetentionPolicy(
+                        rawAge.trim().isEmpty() ? null : DurationStyle.detectAndParse(rawAge.trim()), maxRawValues,
+                        DurationStyle.detectAndParse(rollupInterval.trim()), maxRollups),
+                intervalMillis, Clock.systemUTC());
+    }
+
+    public RetentionCompactor(CustomMetricRepository repository, StatsRepository statsRepository,
+                              RetentionPolicy policy, long intervalMillis, Clock clock) {
+        if (intervalMillis < 1) {
+            throw new IllegalArgumentException("Compaction interval must be at least 1 ms");
+        }
+        this.repository = repository;
+        this.statsRepository = statsRepository;
+        this.policy = policy;
+        this.intervalMillis = intervalMillis;
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    public void start() {
+        compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "retention-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactor.scheduleWithFixedDelay(() -> {
+            try {
+                long compacted = compactAll();
+                if (compacted > 0) {
+                    log.debug("Compacted {} values into rollups", compacted);
+                }
+            } catch (RuntimeException e) {
+                log.error("Failed to compact metrics", e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * One compaction pass over every metric
+     *
+     * @return number of values compacted
+     */
+    public long compactAll() {
+        List<MetricItem> metrics = new ArrayList<>(repository.metrics());
+        List<UUID> metricIds = new ArrayList<>(metrics.size());
+        for (MetricItem metricItem : metrics) {
+            metricIds.add(metricItem.getId());
+        }
+        // Stats rebuilds still queued for these metrics would be skipped and redone once their series is replaced
+        statsRepository.awaitWrites(metricIds);
+
+        long now = clock.millis();
+        long compacted = 0;
+        for (MetricItem metricItem : metrics) {
+            compacted += repository.compact(metricItem, policy, now);
+        }
+        return compacted;
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (compactor != null) {
+            compactor.shutdownNow();
+        }
+    }
+}
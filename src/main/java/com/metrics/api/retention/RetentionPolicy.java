@@ -0,0 +1,59 @@
+package com.metrics.api.retention;
+
+import java.time.Duration;
+
+/**
+ * How long raw values are kept before being compacted into rollups.
+ * <p>
+ * Raw values older than rawAge , and the oldest values beyond maxRawValues , are compacted into rollups of
+ * rollupInterval , of which at most maxRollups are kept per metric.
+ */
+public class RetentionPolicy {
+
+    private final Duration rawAge;
+    private final int maxRawValues;
+    private final Duration rollupInterval;
+    private final int maxRollups;
+
+    /**
+     * @param rawAge         - age after which raw values are compacted , null to only apply maxRawValues
+     * @param maxRawValues   - raw values kept per metric , 0 for no limit
+     * @param rollupInterval - length of each rollup
+     * @param maxRollups     - rollups kept per metric , 0 for no limit
+     */
+    public RetentionPolicy(Duration rawAge, int maxRawValues, Duration rollupInterval, int maxRollups) {
+        if (rawAge != null && (rawAge.isNegative() || rawAge.isZero())) {
+            throw new IllegalArgumentException("Raw retention must be positive");
+        }
+        if (maxRawValues < 0 || maxRollups < 0) {
+            throw new IllegalArgumentException("Retention limits must not be negative");
+        }
+        if (rollupInterval.isNegative() || rollupInterval.isZero()) {
+            throw new IllegalArgumentException("Rollup interval must be positive");
+        }
+        this.rawAge = rawAge;
+        this.maxRawValues = maxRawValues;
+        this.rollupInterval = rollupInterval;
+        this.maxRollups = maxRollups;
+    }
+
+    /**
+     * @param now - epoch milliseconds
+     * @return values timestamped before this are compacted
+     */
+    public long cutoff(long now) {
+        return rawAge == null ? Long.MIN_VALUE : now - rawAge.toMillis();
+    }
+
+    public int getMaxRawValues() {
+        return maxRawValues;
+    }
+
+    public Duration getRollupInterval() {
+        return rollupInterval;
+    }
+
+    public int getMaxRollups() {
+        return maxRollups;
+    }
+}
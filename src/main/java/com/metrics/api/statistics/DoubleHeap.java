@@ -0,0 +1,98 @@
+package com.metrics.api.statistics;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Binary heap of primitive doubles, avoids the boxing of {@link java.util.PriorityQueue}.
+ * Ordered as a max heap or a min heap depending on how it was created.
+ */
+public class DoubleHeap {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final boolean maxHeap;
+    private double[] heap = new double[INITIAL_CAPACITY];
+    private int size;
+
+    private DoubleHeap(boolean maxHeap) {
+        this.maxHeap = maxHeap;
+    }
+
+    public static DoubleHeap maxHeap() {
+        return new DoubleHeap(true);
+    }
+
+    public static DoubleHeap minHeap() {
+        return new DoubleHeap(false);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return value at the root of the heap without removing it
+     */
+    public double peek() {
+        if (size == 0) {
+            throw new NoSuchElementException("Heap is empty");
+        }
+        return heap[0];
+    }
+
+    public void add(double value) {
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, size << 1);
+        }
+        int index = size++;
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!before(value, heap[parent])) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = value;
+    }
+
+    /**
+     * Remove and return the value at the root of the heap
+     */
+    public double poll() {
+        double root = peek();
+        double last = heap[--size];
+        int index = 0;
+        int half = size >>> 1;
+        while (index < half) {
+            int child = (index << 1) + 1;
+            int right = child + 1;
+            if (right < size && before(heap[right], heap[child])) {
+                child = right;
+            }
+            if (!before(heap[child], last)) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = last;
+        return root;
+    }
+
+    /**
+     * @return approximate bytes retained by the heap storage
+     */
+    public long estimatedBytes() {
+        return 16L + 8L * heap.length;
+    }
+
+    private boolean before(double a, double b) {
+        return maxHeap ? Double.compare(a, b) > 0 : Double.compare(a, b) < 0;
+    }
+}
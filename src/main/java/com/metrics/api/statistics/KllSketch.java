@@ -0,0 +1,232 @@
+package com.metrics.api.statistics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Mergeable KLL quantile sketch (Karnin, Lang and Liberty) with bounded memory.
+ * <p>
+ * Values enter level 0. When the sketch is full the lowest over capacity level is sorted and every other value,
+ * starting at a random offset, is promoted to the next level with twice the weight. Level capacities shrink
+ * geometrically by 2/3 going down from the top level, so the sketch holds about 3k values plus a couple per level
+ * regardless of how many values were added.
+ * <p>
+ * With k = 200 the normalized rank error is about 1.33% with 99% confidence: the value returned for quantile q has
+ * a true rank within q +/- 0.0133 of the recorded values. See {@link #rankErrorBound()} for other values of k.
+ */
+public class KllSketch implements QuantileEstimator {
+
+    public static final int DEFAULT_K = 200;
+
+    private static final double CAPACITY_DECAY = 2.0 / 3.0;
+    private static final int MIN_CAPACITY = 8;
+
+    private final int k;
+    private final SplittableRandom random;
+    private final List<double[]> levels = new ArrayList<>();
+    private int[] sizes = new int[0];
+    private int[] capacities = new int[0];
+    private int retained;
+    private int totalCapacity;
+
+    private long count;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+
+    public KllSketch() {
+        this(DEFAULT_K);
+    }
+
+    public KllSketch(int k) {
+        this(k, new SplittableRandom());
+    }
+
+    /**
+     * @param k      - capacity of the top level, higher k trades memory for accuracy
+     * @param random - source of the compaction coin flips, seeded for reproducible sketches
+     */
+    public KllSketch(int k, SplittableRandom random) {
+        if (k < MIN_CAPACITY) {
+            throw new IllegalArgumentException("k must be at least " + MIN_CAPACITY);
+        }
+        this.k = k;
+        this.random = random;
+        addLevel();
+    }
+
+    @Override
+    public void add(double value) {
+        if (count == 0 || value < min) {
+            min = value;
+        }
+        if (count == 0 || value > max) {
+            max = value;
+        }
+        count++;
+
+        append(0, value);
+        compressWhileFull();
+    }
+
+    /**
+     * Fold another sketch into this one, the result answers quantiles over both streams
+     *
+     * @param other - sketch built with the same k
+     */
+    public void merge(KllSketch other) {
+        if (other.count == 0) {
+            return;
+        }
+        while (levels.size() < other.levels.size()) {
+            addLevel();
+        }
+        for (int level = 0; level < other.levels.size(); level++) {
+            double[] items = other.levels.get(level);
+            for (int i = 0; i < other.sizes[level]; i++) {
+                append(level, items[i]);
+            }
+        }
+        min = count == 0 ? other.min : Math.min(min, other.min);
+        max = count == 0 ? other.max : Math.max(max, other.max);
+        count += other.count;
+        compressWhileFull();
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public Double quantile(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1");
+        }
+        if (count == 0) {
+            return null;
+        }
+        if (quantile == 0) {
+            return min;
+        }
+        if (quantile == 1) {
+            return max;
+        }
+
+        // Sort each level then merge them in value order, walking the cumulative weight
+        int levelCount = levels.size();
+        double[][] sorted = new double[levelCount][];
+        int[] heads = new int[levelCount];
+        long totalWeight = 0;
+        for (int level = 0; level < levelCount; level++) {
+            sorted[level] = Arrays.copyOf(levels.get(level), sizes[level]);
+            Arrays.sort(sorted[level]);
+            totalWeight += (long) sizes[level] << level;
+        }
+
+        double target = quantile * totalWeight;
+        long cumulative = 0;
+        while (true) {
+            int next = -1;
+            for (int level = 0; level < levelCount; level++) {
+                if (heads[level] < sorted[level].length
+                        && (next < 0 || sorted[level][heads[level]] < sorted[next][heads[next]])) {
+                    next = level;
+                }
+            }
+            if (next < 0) {
+                return max;
+            }
+            double value = sorted[next][heads[next]++];
+            cumulative += 1L << next;
+            if (cumulative >= target) {
+                return value;
+            }
+        }
+    }
+
+    @Override
+    public boolean supportsQuantile(double quantile) {
+        return quantile >= 0 && quantile <= 1;
+    }
+
+    @Override
+    public double rankErrorBound() {
+        // Empirical 99% confidence bound for single quantile queries, 1.33% at k = 200
+        return 2.296 / Math.pow(k, 0.9723);
+    }
+
+    @Override
+    public long estimatedBytes() {
+        long bytes = 64L + 4L * sizes.length;
+        for (double[] items : levels) {
+            bytes += 16L + 8L * items.length;
+        }
+        return bytes;
+    }
+
+    private void addLevel() {
+        levels.add(new double[MIN_CAPACITY]);
+        sizes = Arrays.copyOf(sizes, levels.size());
+
+        // Capacities depend on the depth below the top level, so they all shift when a level is added
+        capacities = new int[levels.size()];
+        totalCapacity = 0;
+        for (int level = 0; level < capacities.length; level++) {
+            int depth = capacities.length - level - 1;
+            capacities[level] = Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(CAPACITY_DECAY, depth)));
+            totalCapacity += capacities[level];
+        }
+    }
+
+    private void append(int level, double value) {
+        double[] items = levels.get(level);
+        if (sizes[level] == items.length) {
+            items = Arrays.copyOf(items, items.length << 1);
+            levels.set(level, items);
+        }
+        items[sizes[level]++] = value;
+        retained++;
+    }
+
+    private void compressWhileFull() {
+        while (retained >= totalCapacity) {
+            compactLowestFullLevel();
+        }
+    }
+
+    /**
+     * Sort the lowest level at or above capacity and promote every other value to the level above
+     */
+    private void compactLowestFullLevel() {
+        int level = 0;
+        while (level < levels.size() && sizes[level] < capacities[level]) {
+            level++;
+        }
+        if (level == levels.size()) {
+            level = levels.size() - 1;
+        }
+        if (level == levels.size() - 1) {
+            addLevel();
+        }
+
+        double[] items = levels.get(level);
+        int size = sizes[level];
+        Arrays.sort(items, 0, size);
+
+        // An odd value out stays behind so the promoted values carry exactly twice the weight
+        int kept = size & 1;
+        int offset = random.nextBoolean() ? 1 : 0;
+        for (int i = kept + offset; i < size; i += 2) {
+            append(level + 1, items[i]);
+        }
+        retained -= size - kept;
+        sizes[level] = kept;
+
+        // Levels sized back when they were the top level give the memory back once their capacity has shrunk
+        int target = Math.max(MIN_CAPACITY, Integer.highestOneBit(capacities[level]) << 1);
+        if (levels.get(level).length > target << 1) {
+            levels.set(level, Arrays.copyOf(levels.get(level), target));
+        }
+    }
+}
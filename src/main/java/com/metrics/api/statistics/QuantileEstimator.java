@@ -0,0 +1,31 @@
+package com.metrics.api.statistics;
+
+/**
+ * Per-metric structure answering quantile queries over the values recorded so far.
+ */
+public interface QuantileEstimator {
+
+    void add(double value);
+
+    /**
+     * @param quantile - requested quantile between 0 and 1
+     * @return value at the quantile, null when nothing was recorded
+     */
+    Double quantile(double quantile);
+
+    /**
+     * @param quantile - requested quantile between 0 and 1
+     * @return true when {@link #quantile(double)} can answer for that quantile
+     */
+    boolean supportsQuantile(double quantile);
+
+    /**
+     * @return bound on the normalized rank error of answers, 0 for exact estimators
+     */
+    double rankErrorBound();
+
+    /**
+     * @return approximate bytes retained by the estimator
+     */
+    long estimatedBytes();
+}
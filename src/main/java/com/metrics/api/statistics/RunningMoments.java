@@ -0,0 +1,134 @@
+package com.metrics.api.statistics;
+
+/**
+ * Constant time accumulator for count, sum, mean, variance, min and max of a stream of values.
+ * <p>
+ * The sum uses Neumaier compensated summation so long streams of values with very different magnitudes do not
+ * lose precision, and the variance is accumulated with Welford's online algorithm.
+ */
+public class RunningMoments {
+
+    public static final long ESTIMATED_BYTES = 72;
+
+    private long count;
+    private double sum;
+    private double compensation;
+    private double mean;
+    private double squaredDeviations;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Rebuild an accumulator from the state exported by its getters , the compensation is folded into the sum
+     */
+    public static RunningMoments restore(long count, double sum, double mean, double squaredDeviations, double min,
+                                         double max) {
+        RunningMoments moments = new RunningMoments();
+        moments.count = count;
+        moments.sum = sum;
+        moments.mean = mean;
+        moments.squaredDeviations = squaredDeviations;
+        moments.min = min;
+        moments.max = max;
+        return moments;
+    }
+
+    public void add(double value) {
+        count++;
+
+        // Neumaier summation, keeps the low order bits lost by each addition
+        double total = sum + value;
+        if (Math.abs(sum) >= Math.abs(value)) {
+            compensation += (sum - total) + value;
+        } else {
+            compensation += (value - total) + sum;
+        }
+        sum = total;
+
+        // Welford update of the mean and sum of squared deviations
+        double delta = value - mean;
+        mean += delta / count;
+        squaredDeviations += delta * (value - mean);
+
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    /**
+     * Fold the values accumulated by another instance into this one (Chan et al. pairwise update)
+     *
+     * @param other - accumulator over a disjoint set of values
+     */
+    public void merge(RunningMoments other) {
+        if (other.count == 0) {
+            return;
+        }
+        if (count == 0) {
+            count = other.count;
+            sum = other.sum;
+            compensation = other.compensation;
+            mean = other.mean;
+            squaredDeviations = other.squaredDeviations;
+            min = other.min;
+            max = other.max;
+            return;
+        }
+
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        squaredDeviations += other.squaredDeviations + delta * delta * ((double) count * other.count / total);
+        mean += delta * other.count / total;
+        count = total;
+
+        double merged = sum + other.sum;
+        if (Math.abs(sum) >= Math.abs(other.sum)) {
+            compensation += (sum - merged) + other.sum;
+        } else {
+            compensation += (other.sum - merged) + sum;
+        }
+        compensation += other.compensation;
+        sum = merged;
+
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getSum() {
+        return sum + compensation;
+    }
+
+    public double getMean() {
+        return count == 0 ? Double.NaN : getSum() / count;
+    }
+
+    /**
+     * @return population variance of the values added so far
+     */
+    public double getVariance() {
+        return count == 0 ? Double.NaN : squaredDeviations / count;
+    }
+
+    public double getSquaredDeviations() {
+        return squaredDeviations;
+    }
+
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+}
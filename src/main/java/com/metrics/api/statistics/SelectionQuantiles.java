@@ -0,0 +1,155 @@
+package com.metrics.api.statistics;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Exact quantiles computed on read : values are only appended to a primitive array , a quantile is selected with an
+ * introselect over a copy of it. Adding costs O(1) and the first read after a write O(n) , later reads reuse the
+ * partially ordered copy and the answers until the next write.
+ * <p>
+ * Quantiles interpolate linearly between the two closest ranks , so 0.5 is the same median as
+ * {@link StreamingMedian}. Reads come from several threads sharing the read lock of the metric , hence the
+ * synchronized methods.
+ */
+public class SelectionQuantiles implements QuantileEstimator {
+
+    private static final int INITIAL_CAPACITY = 8;
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private double[] values = new double[INITIAL_CAPACITY];
+    private int size;
+
+    // Copy reordered by the selections since the last write , null once a value was added
+    private double[] selected;
+    private final Map<Double, Double> answers = new HashMap<>();
+
+    @Override
+    public synchronized void add(double value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size << 1);
+        }
+        values[size++] = value;
+        selected = null;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized Double quantile(double quantile) {
+        if (!supportsQuantile(quantile)) {
+            throw new IllegalArgumentException("Quantiles must be between 0 and 1");
+        }
+        if (size == 0) {
+            return null;
+        }
+        if (selected == null) {
+            selected = Arrays.copyOf(values, size);
+            answers.clear();
+        }
+        Double answer = answers.get(quantile);
+        if (answer == null) {
+            answer = interpolate(selected, quantile);
+            answers.put(quantile, answer);
+        }
+        return answer;
+    }
+
+    @Override
+    public boolean supportsQuantile(double quantile) {
+        return quantile >= 0 && quantile <= 1;
+    }
+
+    @Override
+    public double rankErrorBound() {
+        return 0;
+    }
+
+    @Override
+    public synchronized long estimatedBytes() {
+        return 8L * values.length + (selected == null ? 0 : 8L * selected.length);
+    }
+
+    private static double interpolate(double[] values, double quantile) {
+        double rank = (values.length - 1) * quantile;
+        int lower = (int) Math.floor(rank);
+        double low = select(values, lower);
+        if (lower == rank) {
+            return low;
+        }
+        // Every value after lower is at least low once it is selected , the next rank is their minimum
+        double high = values[lower + 1];
+        for (int i = lower + 2; i < values.length; i++) {
+            high = Math.min(high, values[i]);
+        }
+        return low + (rank - lower) * (high - low);
+    }
+
+    /**
+     * Introselect : quickselect with a median of three pivot and three way partitions , falling back to sorting the
+     * remaining range when partitions keep being unbalanced.
+     *
+     * @return the value of rank k , moved to index k with smaller values before it and larger ones after it
+     */
+    static double select(double[] values, int k) {
+        int from = 0;
+        int to = values.length;
+        int depthLimit = 2 * (32 - Integer.numberOfLeadingZeros(values.length));
+        while (to - from > INSERTION_SORT_THRESHOLD) {
+            if (depthLimit-- == 0) {
+                Arrays.sort(values, from, to);
+                return values[k];
+            }
+            double pivot = medianOfThree(values[from], values[(from + to) >>> 1], values[to - 1]);
+
+            // [from , less) < pivot , [less , i) == pivot , (greater , to) > pivot
+            int less = from;
+            int greater = to - 1;
+            int i = from;
+            while (i <= greater) {
+                double value = values[i];
+                if (value < pivot) {
+                    swap(values, less++, i++);
+                } else if (value > pivot) {
+                    swap(values, i, greater--);
+                } else {
+                    i++;
+                }
+            }
+            if (k < less) {
+                to = less;
+            } else if (k > greater) {
+                from = greater + 1;
+            } else {
+                return pivot;
+            }
+        }
+        insertionSort(values, from, to);
+        return values[k];
+    }
+
+    private static double medianOfThree(double a, double b, double c) {
+        return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+    }
+
+    private static void insertionSort(double[] values, int from, int to) {
+        for (int i = from + 1; i < to; i++) {
+            double value = values[i];
+            int j = i - 1;
+            while (j >= from && values[j] > value) {
+                values[j + 1] = values[j];
+                j--;
+            }
+            values[j + 1] = value;
+        }
+    }
+
+    private static void swap(double[] values, int i, int j) {
+        double value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+}
@@ -0,0 +1,69 @@
+package com.metrics.api.statistics;
+
+/**
+ * Exact running median maintained with a max heap holding the lower half of the values and a min heap holding the
+ * upper half. Inserting costs O(log n) and reading the median is O(1).
+ * <p>
+ * The lower half always holds as many values as the upper half or exactly one more.
+ */
+public class StreamingMedian implements QuantileEstimator {
+
+    private final DoubleHeap lower = DoubleHeap.maxHeap();
+    private final DoubleHeap upper = DoubleHeap.minHeap();
+
+    @Override
+    public void add(double value) {
+        if (lower.isEmpty() || value <= lower.peek()) {
+            lower.add(value);
+        } else {
+            upper.add(value);
+        }
+
+        // Rebalance so the halves differ by at most one value
+        if (lower.size() > upper.size() + 1) {
+            upper.add(lower.poll());
+        } else if (upper.size() > lower.size()) {
+            lower.add(upper.poll());
+        }
+    }
+
+    public int size() {
+        return lower.size() + upper.size();
+    }
+
+    /**
+     * @return median of the values added so far, mean of the two middle values for an even count, null when empty
+     */
+    public Double getMedian() {
+        if (lower.isEmpty()) {
+            return null;
+        }
+        if (lower.size() == upper.size()) {
+            return (lower.peek() + upper.peek()) / 2;
+        }
+        return lower.peek();
+    }
+
+    @Override
+    public Double quantile(double quantile) {
+        if (!supportsQuantile(quantile)) {
+            throw new IllegalArgumentException("Exact stats only track the median");
+        }
+        return getMedian();
+    }
+
+    @Override
+    public boolean supportsQuantile(double quantile) {
+        return quantile == 0.5;
+    }
+
+    @Override
+    public double rankErrorBound() {
+        return 0;
+    }
+
+    @Override
+    public long estimatedBytes() {
+        return lower.estimatedBytes() + upper.estimatedBytes();
+    }
+}
@@ -0,0 +1,114 @@
+package com.metrics.api.statistics;
+
+import com.metrics.api.model.WindowStatistics;
+
+import java.time.Duration;
+
+/**
+ * Sliding window of a metric split into a ring of {@link #SLOTS} time buckets, a 1m window uses 5s buckets.
+ * <p>
+ * Each bucket keeps running moments and a small KLL sketch of its values. A bucket is evicted as soon as time moves
+ * past the window, so memory stays bounded by the number of slots whatever the ingest volume. Reads merge the
+ * buckets still inside the window, which slides with the granularity of one bucket.
+ */
+public class TimeWindow {
+
+    public static final int SLOTS = 12;
+
+    static final int BUCKET_K = 32;
+
+    private final long bucketMillis;
+    private final Bucket[] buckets = new Bucket[SLOTS];
+    private long latestIndex = Long.MIN_VALUE;
+
+    public TimeWindow(Duration window) {
+        this.bucketMillis = Math.max(1, window.toMillis() / SLOTS);
+    }
+
+    /**
+     * @param timestamp - epoch milliseconds of the value
+     * @param value     - value posted to the metric
+     */
+    public void add(long timestamp, double value) {
+        long index = Math.floorDiv(timestamp, bucketMillis);
+        if (index > latestIndex) {
+            evictBefore(index - SLOTS + 1);
+            latestIndex = index;
+        } else if (index <= latestIndex - SLOTS) {
+            // Older than anything the window can still report
+            return;
+        }
+
+        int slot = (int) Math.floorMod(index, (long) SLOTS);
+        Bucket bucket = buckets[slot];
+        if (bucket == null || bucket.index != index) {
+            bucket = new Bucket(index);
+            buckets[slot] = bucket;
+        }
+        bucket.moments.add(value);
+        bucket.sketch.add(value);
+    }
+
+    /**
+     * @param now - epoch milliseconds the window ends at
+     * @return stats over the buckets inside the window, count 0 when the window is empty
+     */
+    public WindowStatistics summarize(long now) {
+        long newest = Math.floorDiv(now, bucketMillis);
+        long oldest = newest - SLOTS + 1;
+
+        RunningMoments moments = new RunningMoments();
+        KllSketch sketch = new KllSketch(BUCKET_K);
+        for (Bucket bucket : buckets) {
+            if (bucket != null && bucket.index >= oldest && bucket.index <= newest) {
+                moments.merge(bucket.moments);
+                sketch.merge(bucket.sketch);
+            }
+        }
+
+        if (moments.getCount() == 0) {
+            return new WindowStatistics(0L, null, null, null, null, sketch.rankErrorBound(), estimatedBytes());
+        }
+        return new WindowStatistics(moments.getCount(), moments.getMean(), sketch.quantile(0.5), moments.getMin(),
+                moments.getMax(), sketch.rankErrorBound(), estimatedBytes());
+    }
+
+    /**
+     * @param now - epoch milliseconds
+     * @return first epoch millisecond after now at which the window slides , its summary cannot change before
+     * unless values are added
+     */
+    public long nextSlide(long now) {
+        return (Math.floorDiv(now, bucketMillis) + 1) * bucketMillis;
+    }
+
+    public long estimatedBytes() {
+        long bytes = 16L + 8L * SLOTS;
+        for (Bucket bucket : buckets) {
+            if (bucket != null) {
+                bytes += 32L + RunningMoments.ESTIMATED_BYTES + bucket.sketch.estimatedBytes();
+            }
+        }
+        return bytes;
+    }
+
+    private void evictBefore(long oldestKept) {
+        for (int slot = 0; slot < SLOTS; slot++) {
+            if (buckets[slot] != null && buckets[slot].index < oldestKept) {
+                buckets[slot] = null;
+            }
+        }
+    }
+
+
+    private static final class Bucket {
+
+        private final long index;
+        private final RunningMoments moments = new RunningMoments();
+        private final KllSketch sketch = new KllSketch(BUCKET_K);
+
+        private Bucket(long index) {
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.metrics.api.storage;
+
+import java.util.Arrays;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Default {@link ValueSeries} holding values and their timestamps in fixed size primitive chunks.
+ * <p>
+ * Full chunks are never copied again, only the tail chunk grows (doubling up to {@link #CHUNK_SIZE}) so small
+ * metrics stay small and large metrics never pay for a full array copy. Writes are published through the
+ * volatile size, which lets readers iterate safely while a single writer keeps appending.
+ */
+public class ChunkedDoubleSeries implements ValueSeries {
+
+    static final int CHUNK_SHIFT = 12;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private static final int INITIAL_TAIL_CAPACITY = 8;
+
+    private double[][] chunks = new double[1][];
+    private long[][] timestampChunks = new long[1][];
+    private volatile int size;
+
+    @Override
+    public void append(long timestamp, double value) {
+        int index = size;
+        int chunkIndex = index >>> CHUNK_SHIFT;
+        int offset = index & CHUNK_MASK;
+
+        ensureCapacity(chunkIndex, offset);
+        chunks[chunkIndex][offset] = value;
+        timestampChunks[chunkIndex][offset] = timestamp;
+        size = index + 1;
+    }
+
+    @Override
+    public void appendAll(long[] timestamps, double[] values, int offset, int length) {
+        int index = size;
+        int remaining = length;
+        int from = offset;
+        while (remaining > 0) {
+            int chunkIndex = index >>> CHUNK_SHIFT;
+            int chunkOffset = index & CHUNK_MASK;
+            int count = Math.min(remaining, CHUNK_SIZE - chunkOffset);
+
+            ensureCapacity(chunkIndex, chunkOffset + count - 1);
+            System.arraycopy(values, from, chunks[chunkIndex], chunkOffset, count);
+            System.arraycopy(timestamps, from, timestampChunks[chunkIndex], chunkOffset, count);
+
+            index += count;
+            from += count;
+            remaining -= count;
+        }
+        size = index;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public double get(int index) {
+        checkIndex(index);
+        return chunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    @Override
+    public long getTimestamp(int index) {
+        checkIndex(index);
+        return timestampChunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    @Override
+    public void forEach(DoubleConsumer consumer) {
+        int remaining = size;
+        double[][] snapshot = chunks;
+        for (int c = 0; remaining > 0; c++) {
+            double[] chunk = snapshot[c];
+            int count = Math.min(remaining, CHUNK_SIZE);
+            for (int i = 0; i < count; i++) {
+                consumer.accept(chunk[i]);
+            }
+            remaining -= count;
+        }
+    }
+
+    @Override
+    public void forEachTimestamped(TimestampedValueConsumer consumer) {
+        int remaining = size;
+        double[][] snapshot = chunks;
+        long[][] timestampSnapshot = timestampChunks;
+        for (int c = 0; remaining > 0; c++) {
+            double[] chunk = snapshot[c];
+            long[] timestampChunk = timestampSnapshot[c];
+            int count = Math.min(remaining, CHUNK_SIZE);
+            for (int i = 0; i < count; i++) {
+                consumer.accept(timestampChunk[i], chunk[i]);
+            }
+            remaining -= count;
+        }
+    }
+
+    @Override
+    public double[] toArray() {
+        int remaining = size;
+        double[][] snapshot = chunks;
+        double[] copy = new double[remaining];
+        for (int c = 0, position = 0; remaining > 0; c++) {
+            int count = Math.min(remaining, CHUNK_SIZE);
+            System.arraycopy(snapshot[c], 0, copy, position, count);
+            position += count;
+            remaining -= count;
+        }
+        return copy;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    /**
+     * Make sure the chunk at chunkIndex exists and can hold a value at lastOffset.
+     */
+    private void ensureCapacity(int chunkIndex, int lastOffset) {
+        if (chunkIndex >= chunks.length) {
+            int length = Math.max(chunkIndex + 1, chunks.length << 1);
+            chunks = Arrays.copyOf(chunks, length);
+            timestampChunks = Arrays.copyOf(timestampChunks, length);
+        }
+        double[] chunk = chunks[chunkIndex];
+        if (chunk == null) {
+            int capacity = chunkIndex == 0 ? Math.max(INITIAL_TAIL_CAPACITY, lastOffset + 1) : CHUNK_SIZE;
+            timestampChunks[chunkIndex] = new long[capacity];
+            chunks[chunkIndex] = new double[capacity];
+        } else if (lastOffset >= chunk.length) {
+            int capacity = chunk.length;
+            while (capacity <= lastOffset) {
+                capacity <<= 1;
+            }
+            capacity = Math.min(capacity, CHUNK_SIZE);
+            timestampChunks[chunkIndex] = Arrays.copyOf(timestampChunks[chunkIndex], capacity);
+            chunks[chunkIndex] = Arrays.copyOf(chunk, capacity);
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package com.metrics.api.storage;
+
+import java.util.Arrays;
+import java.util.function.DoubleConsumer;
+
+/**
+ * {@link ValueSeries} sealing every {@link #BLOCK_SIZE} entries into a block compressed by {@link XorBlockCodec} ,
+ * only the open tail block is held as raw primitive arrays.
+ * <p>
+ * Series that repeat or slowly move their values at a steady rate shrink from 16 bytes per entry to a few. Scans go
+ * through {@link #cursor(int, int)} which decodes one block at a time , {@link #get(int)} decodes the block holding
+ * the index and keeps the last decoded block so reading positions in order stays cheap.
+ * <p>
+ * Like {@link ChunkedDoubleSeries} writes are published through the volatile size. The tail is replaced rather than
+ * reused when it grows or gets sealed , so a reader holding it keeps reading a valid prefix.
+ */
+public class CompressedValueSeries implements ValueSeries {
+
+    static final int BLOCK_SHIFT = 10;
+    static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+    static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+    private static final int INITIAL_TAIL_CAPACITY = 8;
+
+    // Sealed blocks , written before the tail moves past them
+    private long[][] blocks = new long[4][];
+    private long sealedBytes;
+    private volatile Tail tail = new Tail(0, INITIAL_TAIL_CAPACITY);
+    private volatile DecodedBlock lastDecoded;
+    private volatile int size;
+
+    @Override
+    public void append(long timestamp, double value) {
+        int index = size;
+        int offset = index & BLOCK_MASK;
+        Tail current = tail;
+        if (offset == current.values.length) {
+            current = grow(current, offset + 1);
+        }
+        current.timestamps[offset] = timestamp;
+        current.values[offset] = value;
+        if (offset == BLOCK_MASK) {
+            seal(current);
+        }
+        size = index + 1;
+    }
+
+    @Override
+    public void appendAll(long[] timestamps, double[] values, int offset, int length) {
+        int index = size;
+        int remaining = length;
+        int from = offset;
+        while (remaining > 0) {
+            int blockOffset = index & BLOCK_MASK;
+            int count = Math.min(remaining, BLOCK_SIZE - blockOffset);
+
+            Tail current = tail;
+            if (blockOffset + count > current.values.length) {
+                current = grow(current, blockOffset + count);
+            }
+            System.arraycopy(values, from, current.values, blockOffset, count);
+            System.arraycopy(timestamps, from, current.timestamps, blockOffset, count);
+            if (blockOffset + count == BLOCK_SIZE) {
+                seal(current);
+            }
+
+            index += count;
+            from += count;
+            remaining -= count;
+        }
+        size = index;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public double get(int index) {
+        checkIndex(index);
+        Tail current = tail;
+        if (current.block == index >>> BLOCK_SHIFT) {
+            return current.values[index & BLOCK_MASK];
+        }
+        return decoded(index >>> BLOCK_SHIFT).values[index & BLOCK_MASK];
+    }
+
+    @Override
+    public long getTimestamp(int index) {
+        checkIndex(index);
+        Tail current = tail;
+        if (current.block == index >>> BLOCK_SHIFT) {
+            return current.timestamps[index & BLOCK_MASK];
+        }
+        return decoded(index >>> BLOCK_SHIFT).timestamps[index & BLOCK_MASK];
+    }
+
+    @Override
+    public ValueCursor cursor(int from, int to) {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("Range: [" + from + ", " + to + "), Size: " + size);
+        }
+        return new BlockCursor(from, to);
+    }
+
+    @Override
+    public void forEach(DoubleConsumer consumer) {
+        ValueCursor cursor = cursor(0, size);
+        while (cursor.next()) {
+            consumer.accept(cursor.value());
+        }
+    }
+
+    @Override
+    public void forEachTimestamped(TimestampedValueConsumer consumer) {
+        ValueCursor cursor = cursor(0, size);
+        while (cursor.next()) {
+            consumer.accept(cursor.timestamp(), cursor.value());
+        }
+    }
+
+    @Override
+    public double[] toArray() {
+        int count = size;
+        ValueCursor cursor = cursor(0, count);
+        double[] copy = new double[count];
+        for (int i = 0; cursor.next(); i++) {
+            copy[i] = cursor.value();
+        }
+        return copy;
+    }
+
+    /**
+     * @return bytes of the sealed blocks plus the raw tail
+     */
+    @Override
+    public long estimatedHeapBytes() {
+        return 64L + 8L * blocks.length + sealedBytes + 16L * tail.values.length;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    /**
+     * Replace the tail by a copy holding at least capacity entries , writer only
+     */
+    private Tail grow(Tail current, int capacity) {
+        int length = current.values.length;
+        while (length < capacity) {
+            length <<= 1;
+        }
+        Tail grown = new Tail(current.block, Math.min(length, BLOCK_SIZE));
+        System.arraycopy(current.timestamps, 0, grown.timestamps, 0, current.values.length);
+        System.arraycopy(current.values, 0, grown.values, 0, current.values.length);
+        tail = grown;
+        return grown;
+    }
+
+    /**
+     * Compress a full tail and open the next one , writer only
+     */
+    private void seal(Tail full) {
+        if (full.block == blocks.length) {
+            blocks = Arrays.copyOf(blocks, blocks.length << 1);
+        }
+        long[] block = XorBlockCodec.encode(full.timestamps, full.values, BLOCK_SIZE);
+        blocks[full.block] = block;
+        sealedBytes += 16L + 8L * block.length;
+        // Only the first tail grows , a metric that filled one block is likely to fill the next
+        tail = new Tail(full.block + 1, BLOCK_SIZE);
+    }
+
+    private DecodedBlock decoded(int block) {
+        DecodedBlock last = lastDecoded;
+        if (last != null && last.block == block) {
+            return last;
+        }
+        DecodedBlock decoded = new DecodedBlock(block);
+        XorBlockCodec.decode(blocks[block], BLOCK_SIZE, decoded.timestamps, decoded.values);
+        lastDecoded = decoded;
+        return decoded;
+    }
+
+
+    private static final class Tail {
+
+        private final int block;
+        private final long[] timestamps;
+        private final double[] values;
+
+        private Tail(int block, int capacity) {
+            this.block = block;
+            this.timestamps = new long[capacity];
+            this.values = new double[capacity];
+        }
+    }
+
+
+    private static final class DecodedBlock {
+
+        private final int block;
+        private final long[] timestamps = new long[BLOCK_SIZE];
+        private final double[] values = new double[BLOCK_SIZE];
+
+        private DecodedBlock(int block) {
+            this.block = block;
+        }
+    }
+
+
+    /**
+     * Decodes each sealed block it reaches into its own buffers , the tail is read in place
+     */
+    private final class BlockCursor implements ValueCursor {
+
+        private final int to;
+        private int position;
+        private int loadedBlock = -1;
+        private long[] timestamps;
+        private double[] values;
+        private long[] decodedTimestamps;
+        private double[] decodedValues;
+
+        private BlockCursor(int from, int to) {
+            this.to = to;
+            this.position = from - 1;
+        }
+
+        @Override
+        public boolean next() {
+            if (++position >= to) {
+                return false;
+            }
+            int block = position >>> BLOCK_SHIFT;
+            if (block != loadedBlock) {
+                load(block);
+            }
+            return true;
+        }
+
+        @Override
+        public long timestamp() {
+            return timestamps[position & BLOCK_MASK];
+        }
+
+        @Override
+        public double value() {
+            return values[position & BLOCK_MASK];
+        }
+
+        private void load(int block) {
+            Tail current = tail;
+            if (current.block == block) {
+                timestamps = current.timestamps;
+                values = current.values;
+            } else {
+                if (decodedValues == null) {
+                    decodedTimestamps = new long[BLOCK_SIZE];
+                    decodedValues = new double[BLOCK_SIZE];
+                }
+                XorBlockCodec.decode(blocks[block], BLOCK_SIZE, decodedTimestamps, decodedValues);
+                timestamps = decodedTimestamps;
+                values = decodedValues;
+            }
+            loadedBlock = block;
+        }
+    }
+}
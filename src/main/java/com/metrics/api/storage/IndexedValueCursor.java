@@ -0,0 +1,32 @@
+package com.metrics.api.storage;
+
+/**
+ * {@link ValueCursor} reading a series position by position through {@link ValueSeries#get(int)}
+ */
+class IndexedValueCursor implements ValueCursor {
+
+    private final ValueSeries series;
+    private final int to;
+    private int position;
+
+    IndexedValueCursor(ValueSeries series, int from, int to) {
+        this.series = series;
+        this.to = to;
+        this.position = from - 1;
+    }
+
+    @Override
+    public boolean next() {
+        return ++position < to;
+    }
+
+    @Override
+    public long timestamp() {
+        return series.getTimestamp(position);
+    }
+
+    @Override
+    public double value() {
+        return series.get(position);
+    }
+}
@@ -0,0 +1,140 @@
+package com.metrics.api.storage;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleConsumer;
+
+/**
+ * {@link ValueSeries} whose values and timestamps live in blocks of a {@link SegmentArena}, off the Java heap.
+ * <p>
+ * Blocks double from {@link #FIRST_BLOCK_ENTRIES} up to {@link #MAX_BLOCK_ENTRIES} entries of 16 bytes
+ * ( timestamp then value ), so the heap only holds the block addresses and the size. Writes are published through
+ * the volatile size, which lets readers read straight from the mapping while a single writer keeps appending.
+ * <p>
+ * The blocks go back to the arena once the metric released the series and so did every reader that retained it.
+ */
+public class MappedValueSeries implements ValueSeries {
+
+    static final int ENTRY_BYTES = 16;
+    static final int FIRST_BLOCK_ENTRIES = 8;
+    static final int MAX_BLOCK_ENTRIES = 4096;
+    static final int MAX_BLOCK_BYTES = MAX_BLOCK_ENTRIES * ENTRY_BYTES;
+
+    // Block b holds FIRST_BLOCK_ENTRIES << b entries until MAX_BLOCK_ENTRIES , every later block holds the maximum
+    private static final int GROWING_BLOCKS = Integer.numberOfTrailingZeros(MAX_BLOCK_ENTRIES / FIRST_BLOCK_ENTRIES);
+    private static final int GROWING_ENTRIES = FIRST_BLOCK_ENTRIES * ((1 << GROWING_BLOCKS) - 1);
+
+    private final SegmentArena arena;
+    private long[] blocks = new long[4];
+    private int blockCount;
+    private volatile int size;
+    // The hold of the metric plus one per reader retaining the series
+    private final AtomicInteger holds = new AtomicInteger(1);
+
+    public MappedValueSeries(SegmentArena arena) {
+        this.arena = arena;
+    }
+
+    @Override
+    public void append(long timestamp, double value) {
+        int index = size;
+        long address = entryAddress(index, true);
+        arena.putLong(address, timestamp);
+        arena.putDouble(address + 8, value);
+        size = index + 1;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public double get(int index) {
+        checkIndex(index);
+        return arena.getDouble(entryAddress(index, false) + 8);
+    }
+
+    @Override
+    public long getTimestamp(int index) {
+        checkIndex(index);
+        return arena.getLong(entryAddress(index, false));
+    }
+
+    @Override
+    public void forEach(DoubleConsumer consumer) {
+        int count = size;
+        for (int i = 0; i < count; i++) {
+            consumer.accept(arena.getDouble(entryAddress(i, false) + 8));
+        }
+    }
+
+    @Override
+    public void forEachTimestamped(TimestampedValueConsumer consumer) {
+        int count = size;
+        for (int i = 0; i < count; i++) {
+            long address = entryAddress(i, false);
+            consumer.accept(arena.getLong(address), arena.getDouble(address + 8));
+        }
+    }
+
+    @Override
+    public void retain() {
+        if (holds.getAndIncrement() <= 0) {
+            throw new IllegalStateException("Series was already released");
+        }
+    }
+
+    /**
+     * The last release gives every block back to the arena
+     */
+    @Override
+    public void release() {
+        if (holds.decrementAndGet() != 0) {
+            return;
+        }
+        for (int block = 0; block < blockCount; block++) {
+            int entries = block < GROWING_BLOCKS ? FIRST_BLOCK_ENTRIES << block : MAX_BLOCK_ENTRIES;
+            arena.free(blocks[block], entries * ENTRY_BYTES);
+        }
+        blockCount = 0;
+    }
+
+    /**
+     * @return heap bytes of the block addresses only , the entries live in the mapped segments
+     */
+    @Override
+    public long estimatedHeapBytes() {
+        return 32L + 8L * blocks.length;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    /**
+     * @param allocate - map the block holding index when it does not exist yet , writer only
+     */
+    private long entryAddress(int index, boolean allocate) {
+        int block;
+        int offset;
+        if (index < GROWING_ENTRIES) {
+            block = 31 - Integer.numberOfLeadingZeros(index / FIRST_BLOCK_ENTRIES + 1);
+            offset = index - FIRST_BLOCK_ENTRIES * ((1 << block) - 1);
+        } else {
+            block = GROWING_BLOCKS + (index - GROWING_ENTRIES) / MAX_BLOCK_ENTRIES;
+            offset = (index - GROWING_ENTRIES) % MAX_BLOCK_ENTRIES;
+        }
+
+        if (allocate && block == blockCount) {
+            if (blockCount == blocks.length) {
+                blocks = Arrays.copyOf(blocks, blockCount << 1);
+            }
+            int entries = block < GROWING_BLOCKS ? FIRST_BLOCK_ENTRIES << block : MAX_BLOCK_ENTRIES;
+            blocks[blockCount++] = arena.allocate(entries * ENTRY_BYTES);
+        }
+        return blocks[block] + (long) offset * ENTRY_BYTES;
+    }
+}
@@ -0,0 +1,127 @@
+package com.metrics.api.storage;
+
+import com.metrics.api.model.Rollup;
+import com.metrics.api.statistics.RunningMoments;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Fixed interval rollups of the values compacted out of a {@link ValueSeries}.
+ * <p>
+ * Each interval keeps the running moments of its values ( count , sum , mean , variance , min and max ) so rollups
+ * merge exactly into the stats of the metric. Values can be rolled up out of timestamp order , the oldest intervals
+ * are dropped once more than maxIntervals are held. Dropped intervals are folded into one accumulator first , so the
+ * moments merged into the stats still cover every compacted value. Methods are synchronized since reads come from
+ * request threads while the compactor writes.
+ */
+public class RollupSeries {
+
+    private final long intervalMillis;
+    private final int maxIntervals;
+    private final TreeMap<Long, RunningMoments> intervals = new TreeMap<>();
+    // Moments of the intervals dropped past maxIntervals
+    private final RunningMoments dropped = new RunningMoments();
+
+    /**
+     * @param intervalMillis - length of each rollup
+     * @param maxIntervals   - rollups kept , 0 for no limit
+     */
+    public RollupSeries(long intervalMillis, int maxIntervals) {
+        if (intervalMillis < 1) {
+            throw new IllegalArgumentException("Rollup interval must be at least 1 ms");
+        }
+        this.intervalMillis = intervalMillis;
+        this.maxIntervals = maxIntervals;
+    }
+
+    public synchronized void add(long timestamp, double value) {
+        long start = Math.floorDiv(timestamp, intervalMillis) * intervalMillis;
+        intervals.computeIfAbsent(start, key -> new RunningMoments()).add(value);
+        if (maxIntervals > 0 && intervals.size() > maxIntervals) {
+            dropped.merge(intervals.pollFirstEntry().getValue());
+        }
+    }
+
+    /**
+     * Restore one interval , used when loading a snapshot
+     */
+    public synchronized void put(long start, RunningMoments moments) {
+        intervals.put(start, moments);
+    }
+
+    /**
+     * Restore the moments of the dropped intervals , used when loading a snapshot
+     */
+    public synchronized void putDropped(RunningMoments moments) {
+        dropped.merge(moments);
+    }
+
+    /**
+     * @return copy of the moments of every interval dropped so far
+     */
+    public synchronized RunningMoments getDropped() {
+        RunningMoments copy = new RunningMoments();
+        copy.merge(dropped);
+        return copy;
+    }
+
+    /**
+     * @return independent copy of every interval
+     */
+    public synchronized RollupSeries copy() {
+        RollupSeries copy = new RollupSeries(intervalMillis, maxIntervals);
+        for (Map.Entry<Long, RunningMoments> interval : intervals.entrySet()) {
+            RunningMoments moments = new RunningMoments();
+            moments.merge(interval.getValue());
+            copy.intervals.put(interval.getKey(), moments);
+        }
+        copy.dropped.merge(dropped);
+        return copy;
+    }
+
+    /**
+     * Merge the moments of every interval , dropped ones included , into moments
+     */
+    public synchronized void mergeInto(RunningMoments moments) {
+        moments.merge(dropped);
+        for (RunningMoments interval : intervals.values()) {
+            moments.merge(interval);
+        }
+    }
+
+    /**
+     * Visit every interval start and its moments , oldest first
+     */
+    public synchronized void forEach(BiConsumer<Long, RunningMoments> consumer) {
+        intervals.forEach(consumer);
+    }
+
+    public synchronized int size() {
+        return intervals.size();
+    }
+
+    /**
+     * @return copy of the rollups , oldest first
+     */
+    public synchronized List<Rollup> toList() {
+        List<Rollup> rollups = new ArrayList<>(intervals.size());
+        for (Map.Entry<Long, RunningMoments> interval : intervals.entrySet()) {
+            RunningMoments moments = interval.getValue();
+            rollups.add(new Rollup(interval.getKey(), moments.getCount(), moments.getSum(), moments.getMean(),
+                    moments.getMin(), moments.getMax()));
+        }
+        return rollups;
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    public int getMaxIntervals() {
+        return maxIntervals;
+    }
+}
@@ -0,0 +1,167 @@
+package com.metrics.api.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only memory-mapped segment files that {@link MappedValueSeries} carve their blocks out of.
+ * <p>
+ * Space is handed out by bumping the write position of the newest segment, a new segment file is mapped once a
+ * block no longer fits. An address packs the segment number in the high 32 bits and the byte offset in the low 32
+ * bits, so the heap only ever holds longs pointing into the mappings. Blocks given back through {@link #free} are
+ * handed out again to the next allocation of the same size before any new space , series only use a handful of
+ * block sizes so space freed by compaction is reused instead of growing the files. Segments left in the directory
+ * by a previous run are deleted on open.
+ */
+public class SegmentArena implements Closeable {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final List<FileChannel> channels = new ArrayList<>();
+    // Grown under the arena lock, readers only ever look up segments already handed out in an address
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    private int position;
+    // Freed block addresses keyed by block size
+    private final Map<Integer, ArrayDeque<Long>> freeBlocks = new HashMap<>();
+    private long freeBytes;
+
+    /**
+     * @param directory    - directory holding the segment files , created when missing
+     * @param segmentBytes - size of each segment file , must fit the largest block
+     */
+    public SegmentArena(Path directory, int segmentBytes) {
+        if (segmentBytes < MappedValueSeries.MAX_BLOCK_BYTES) {
+            throw new IllegalArgumentException("Segments must hold at least " + MappedValueSeries.MAX_BLOCK_BYTES
+                    + " bytes");
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> stale = Files.newDirectoryStream(directory,
+                    SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+                for (Path segment : stale) {
+                    Files.delete(segment);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open segment directory " + directory, e);
+        }
+    }
+
+    /**
+     * @param bytes - size of the block , at most the segment size
+     * @return address of a block of that size , zeroed when new while a reused block keeps its previous bytes
+     */
+    public synchronized long allocate(int bytes) {
+        ArrayDeque<Long> free = freeBlocks.get(bytes);
+        if (free != null && !free.isEmpty()) {
+            freeBytes -= bytes;
+            return free.pop();
+        }
+        if (segments.length == 0 || position + bytes > segmentBytes) {
+            mapSegment();
+        }
+        long address = ((long) (segments.length - 1) << 32) | position;
+        position += bytes;
+        return address;
+    }
+
+    /**
+     * Give back a block nothing reads or writes any more
+     *
+     * @param bytes - size the block was allocated with
+     */
+    public synchronized void free(long address, int bytes) {
+        freeBlocks.computeIfAbsent(bytes, size -> new ArrayDeque<>()).push(address);
+        freeBytes += bytes;
+    }
+
+    public long getLong(long address) {
+        return segment(address).getLong(offset(address));
+    }
+
+    public double getDouble(long address) {
+        return segment(address).getDouble(offset(address));
+    }
+
+    public void putLong(long address, long value) {
+        segment(address).putLong(offset(address), value);
+    }
+
+    public void putDouble(long address, double value) {
+        segment(address).putDouble(offset(address), value);
+    }
+
+    /**
+     * @return bytes mapped across every segment file
+     */
+    public synchronized long mappedBytes() {
+        return (long) segments.length * segmentBytes;
+    }
+
+    /**
+     * @return bytes of the freed blocks waiting to be reused
+     */
+    public synchronized long freeBytes() {
+        return freeBytes;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Close the segment files , the mappings themselves are released once they are garbage collected
+     */
+    @Override
+    public synchronized void close() {
+        for (FileChannel channel : channels) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Nothing left to flush , mapped pages are written back by the OS
+            }
+        }
+        channels.clear();
+    }
+
+    private MappedByteBuffer segment(long address) {
+        return segments[(int) (address >>> 32)];
+    }
+
+    private static int offset(long address) {
+        return (int) address;
+    }
+
+    private void mapSegment() {
+        Path file = directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, segments.length, SEGMENT_SUFFIX));
+        try {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            channels.add(channel);
+            MappedByteBuffer[] grown = new MappedByteBuffer[segments.length + 1];
+            System.arraycopy(segments, 0, grown, 0, segments.length);
+            grown[segments.length] = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+            segments = grown;
+            position = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not map segment " + file, e);
+        }
+    }
+}
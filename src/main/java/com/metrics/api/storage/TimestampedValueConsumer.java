@@ -0,0 +1,15 @@
+package com.metrics.api.storage;
+
+/**
+ * Receives the values of a {@link ValueSeries} together with their timestamps, without boxing.
+ */
+@FunctionalInterface
+public interface TimestampedValueConsumer {
+
+    /**
+     * @param timestamp - epoch milliseconds the value was recorded at
+     * @param value     - value posted to the metric
+     */
+    void accept(long timestamp, double value);
+
+}
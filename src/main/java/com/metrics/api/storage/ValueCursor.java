@@ -0,0 +1,28 @@
+package com.metrics.api.storage;
+
+/**
+ * Forward only cursor over a range of a {@link ValueSeries} , it starts before the first value of the range.
+ * <p>
+ * Series whose values are not directly addressable decode them a block at a time as the cursor moves , so a scan
+ * costs the same whatever the encoding while {@link ValueSeries#get(int)} may not.
+ */
+public interface ValueCursor {
+
+    /**
+     * Move to the next value of the range
+     *
+     * @return false once the cursor moved past the last value of the range
+     */
+    boolean next();
+
+    /**
+     * @return epoch milliseconds the current value was recorded at
+     */
+    long timestamp();
+
+    /**
+     * @return current value
+     */
+    double value();
+
+}
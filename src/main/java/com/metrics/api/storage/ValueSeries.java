@@ -0,0 +1,121 @@
+package com.metrics.api.storage;
+
+import java.util.List;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Append-only series of primitive double values backing a single metric.
+ * <p>
+ * Implementations expect a single writer at a time. Readers may run concurrently with that writer and
+ * always observe a prefix of the series.
+ */
+public interface ValueSeries {
+
+    /**
+     * Append a value to the end of the series
+     *
+     * @param timestamp - epoch milliseconds the value was recorded at
+     * @param value     - value posted to the metric
+     */
+    void append(long timestamp, double value);
+
+    /**
+     * Append a run of values to the end of the series
+     *
+     * @param timestamps - epoch milliseconds of each value
+     * @param values     - source array
+     * @param offset     - index of the first value to append
+     * @param length     - number of values to append
+     */
+    default void appendAll(long[] timestamps, double[] values, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            append(timestamps[i], values[i]);
+        }
+    }
+
+    /**
+     * @return number of values currently stored
+     */
+    int size();
+
+    /**
+     * @param index - position of the value, must be lower than {@link #size()}
+     * @return value stored at index
+     */
+    double get(int index);
+
+    /**
+     * @param index - position of the value, must be lower than {@link #size()}
+     * @return epoch milliseconds the value at index was recorded at
+     */
+    long getTimestamp(int index);
+
+    /**
+     * Iterate the values stored at the time of the call without boxing
+     *
+     * @param consumer - receives each value in insertion order
+     */
+    void forEach(DoubleConsumer consumer);
+
+    /**
+     * Iterate the values stored at the time of the call together with their timestamps
+     *
+     * @param consumer - receives each timestamp and value in insertion order
+     */
+    void forEachTimestamped(TimestampedValueConsumer consumer);
+
+    /**
+     * Scan a range of the series , the way to read many values whatever the encoding
+     *
+     * @param from - position of the first value , at least 0
+     * @param to   - position after the last value , at most {@link #size()}
+     * @return cursor positioned before the value at from
+     */
+    default ValueCursor cursor(int from, int to) {
+        if (from < 0 || to > size() || from > to) {
+            throw new IndexOutOfBoundsException("Range: [" + from + ", " + to + "), Size: " + size());
+        }
+        return new IndexedValueCursor(this, from, to);
+    }
+
+    /**
+     * @return copy of the values stored at the time of the call
+     */
+    default double[] toArray() {
+        int size = size();
+        double[] copy = new double[size];
+        for (int i = 0; i < size; i++) {
+            copy[i] = get(i);
+        }
+        return copy;
+    }
+
+    /**
+     * @return approximate Java heap bytes held by the series , a timestamp and a value per entry by default
+     */
+    default long estimatedHeapBytes() {
+        return 16L * size();
+    }
+
+    /**
+     * Keep the storage of the series valid for a reader that goes on reading it outside the metric lock , paired
+     * with a {@link #release()}. Must be called while the metric still holds the series.
+     */
+    default void retain() {
+    }
+
+    /**
+     * Drop a hold on the series , taken by {@link #retain()} or by the metric itself which releases the series once
+     * it replaced it. Series backed by storage other than the Java heap give it back after the last release.
+     */
+    default void release() {
+    }
+
+    /**
+     * @return read-only list view of the values stored at the time of the call
+     */
+    default List<Double> asList() {
+        return new ValueSeriesListView(this, size());
+    }
+
+}
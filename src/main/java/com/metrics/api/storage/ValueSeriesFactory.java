@@ -0,0 +1,11 @@
+package com.metrics.api.storage;
+
+/**
+ * Creates the {@link ValueSeries} used to hold the values of a newly registered metric.
+ */
+@FunctionalInterface
+public interface ValueSeriesFactory {
+
+    ValueSeries create();
+
+}
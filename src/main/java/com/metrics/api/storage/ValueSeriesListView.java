@@ -0,0 +1,32 @@
+package com.metrics.api.storage;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Read-only {@link java.util.List} over the first {@code size} values of a {@link ValueSeries}.
+ * Values appended after the view was created are not visible through it.
+ */
+class ValueSeriesListView extends AbstractList<Double> implements RandomAccess {
+
+    private final ValueSeries series;
+    private final int size;
+
+    ValueSeriesListView(ValueSeries series, int size) {
+        this.series = series;
+        this.size = size;
+    }
+
+    @Override
+    public Double get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return series.get(index);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,194 @@
+package com.metrics.api.storage;
+
+import java.util.Arrays;
+
+/**
+ * Gorilla style encoding of a block of timestamps and values into a bit stream.
+ * <p>
+ * The first entry is written raw. Every later timestamp is written as the difference between its delta and the
+ * previous delta : a single 0 bit when values come at a steady rate , 7 , 9 or 12 bits for small jitter and 64 bits
+ * otherwise. Every later value is written as its XOR with the previous value : a single 0 bit when it did not
+ * change , otherwise only its meaningful bits , reusing the leading / trailing zero window of the previous XOR when
+ * they fit in it. Close or repeated values then take a few bits instead of 64.
+ */
+final class XorBlockCodec {
+
+    // Delta of delta buckets , prefix bits then the width of the two's complement payload
+    private static final int[] DOD_PREFIXES = {0b10, 0b110, 0b1110};
+    private static final int[] DOD_PREFIX_BITS = {2, 3, 4};
+    private static final int[] DOD_BITS = {7, 9, 12};
+
+    private static final int MAX_LEADING_ZEROS = 31;
+
+    private XorBlockCodec() {
+    }
+
+    /**
+     * @param count - entries to encode , at least 1
+     * @return bit stream of the entries , trimmed to the words used
+     */
+    static long[] encode(long[] timestamps, double[] values, int count) {
+        BitWriter out = new BitWriter(count);
+        long previousTimestamp = timestamps[0];
+        long previousBits = Double.doubleToRawLongBits(values[0]);
+        out.write(previousTimestamp, 64);
+        out.write(previousBits, 64);
+
+        long previousDelta = 0;
+        int previousLeading = -1;
+        int previousTrailing = 0;
+        for (int i = 1; i < count; i++) {
+            long delta = timestamps[i] - previousTimestamp;
+            writeDeltaOfDelta(out, delta - previousDelta);
+            previousTimestamp = timestamps[i];
+            previousDelta = delta;
+
+            long bits = Double.doubleToRawLongBits(values[i]);
+            long xor = bits ^ previousBits;
+            previousBits = bits;
+            if (xor == 0) {
+                out.write(0, 1);
+                continue;
+            }
+            int leading = Math.min(Long.numberOfLeadingZeros(xor), MAX_LEADING_ZEROS);
+            int trailing = Long.numberOfTrailingZeros(xor);
+            if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+                out.write(0b10, 2);
+                out.write(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+            } else {
+                int meaningful = 64 - leading - trailing;
+                out.write(0b11, 2);
+                out.write(leading, 5);
+                // 64 meaningful bits do not fit in 6 bits , written as 0 since 0 never happens
+                out.write(meaningful & 63, 6);
+                out.write(xor >>> trailing, meaningful);
+                previousLeading = leading;
+                previousTrailing = trailing;
+            }
+        }
+        return out.toArray();
+    }
+
+    /**
+     * Decode the first count entries of a block into timestamps and values
+     */
+    static void decode(long[] block, int count, long[] timestamps, double[] values) {
+        BitReader in = new BitReader(block);
+        long timestamp = in.read(64);
+        long bits = in.read(64);
+        timestamps[0] = timestamp;
+        values[0] = Double.longBitsToDouble(bits);
+
+        long delta = 0;
+        int leading = 0;
+        int trailing = 0;
+        for (int i = 1; i < count; i++) {
+            delta += readDeltaOfDelta(in);
+            timestamp += delta;
+            timestamps[i] = timestamp;
+
+            if (in.read(1) != 0) {
+                if (in.read(1) != 0) {
+                    leading = (int) in.read(5);
+                    int meaningful = (int) in.read(6);
+                    if (meaningful == 0) {
+                        meaningful = 64;
+                    }
+                    trailing = 64 - leading - meaningful;
+                }
+                bits ^= in.read(64 - leading - trailing) << trailing;
+            }
+            values[i] = Double.longBitsToDouble(bits);
+        }
+    }
+
+    private static void writeDeltaOfDelta(BitWriter out, long deltaOfDelta) {
+        if (deltaOfDelta == 0) {
+            out.write(0, 1);
+            return;
+        }
+        for (int bucket = 0; bucket < DOD_BITS.length; bucket++) {
+            long bound = 1L << (DOD_BITS[bucket] - 1);
+            if (deltaOfDelta >= -bound && deltaOfDelta < bound) {
+                out.write(DOD_PREFIXES[bucket], DOD_PREFIX_BITS[bucket]);
+                out.write(deltaOfDelta, DOD_BITS[bucket]);
+                return;
+            }
+        }
+        out.write(0b1111, 4);
+        out.write(deltaOfDelta, 64);
+    }
+
+    private static long readDeltaOfDelta(BitReader in) {
+        int bucket = 0;
+        while (bucket <= DOD_BITS.length && in.read(1) != 0) {
+            bucket++;
+        }
+        if (bucket == 0) {
+            return 0;
+        }
+        if (bucket > DOD_BITS.length) {
+            return in.read(64);
+        }
+        int width = DOD_BITS[bucket - 1];
+        // Sign extend the two's complement payload
+        return in.read(width) << (64 - width) >> (64 - width);
+    }
+
+
+    private static final class BitWriter {
+
+        private long[] words;
+        private int position;
+
+        private BitWriter(int count) {
+            // About 2 bytes per entry for regular series , grown when needed
+            words = new long[Math.max(4, count / 4)];
+        }
+
+        private void write(long value, int bits) {
+            int index = position >>> 6;
+            if (index + 1 >= words.length) {
+                words = Arrays.copyOf(words, words.length << 1);
+            }
+            if (bits < 64) {
+                value &= (1L << bits) - 1;
+            }
+            int free = 64 - (position & 63);
+            if (bits <= free) {
+                words[index] |= value << (free - bits);
+            } else {
+                words[index] |= value >>> (bits - free);
+                words[index + 1] |= value << (64 - (bits - free));
+            }
+            position += bits;
+        }
+
+        private long[] toArray() {
+            return Arrays.copyOf(words, (position + 63) >>> 6);
+        }
+    }
+
+
+    private static final class BitReader {
+
+        private final long[] words;
+        private int position;
+
+        private BitReader(long[] words) {
+            this.words = words;
+        }
+
+        private long read(int bits) {
+            int index = position >>> 6;
+            int used = position & 63;
+            int available = 64 - used;
+            position += bits;
+            if (bits <= available) {
+                return words[index] << used >>> (64 - bits);
+            }
+            int rest = bits - available;
+            return (words[index] & ((1L << available) - 1)) << rest | words[index + 1] >>> (64 - rest);
+        }
+    }
+}
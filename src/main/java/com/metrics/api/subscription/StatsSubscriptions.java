@@ -0,0 +1,312 @@
+package com.metrics.api.subscription;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.metrics.api.model.SummaryStatistics;
+import com.metrics.api.repository.MetricDoestNotExistException;
+import com.metrics.api.repository.StatsRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Pushes the summary statistics of subscribed metrics to server-sent event streams.
+ * <p>
+ * A single publisher thread wakes up every intervalMillis, reads the stats version of every subscribed metric and
+ * only for the ones that moved since the last round computes and serializes the stats once, then drops that event
+ * in the mailbox of each subscriber of the metric. Updates are therefore coalesced to at most one event per metric
+ * per interval whatever the ingest rate, and the ingest path is never touched : recording a value only bumps the
+ * version.
+ * <p>
+ * The publisher never writes to a socket. A mailbox holds the latest unsent event per metric , a newer one replaces
+ * it , and is flushed by a small pool of sender threads , one flush per subscriber at a time. A client that stops
+ * reading only holds up its own flush : once a flush has been running for longer than maxLagMillis the subscriber is
+ * dropped and its stream is closed by the sender thread when the blocked write returns.
+ */
+@Slf4j
+@Component
+public class StatsSubscriptions {
+
+    public static final String EVENT_NAME = "stats";
+
+    private final StatsRepository statsRepository;
+    private final ObjectMapper objectMapper;
+    private final long intervalMillis;
+    private final int maxSubscribers;
+    private final long timeoutMillis;
+    private final long maxLagNanos;
+    private final Executor sender;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    // Last event built per subscribed metric , reused while its stats version does not move. Publisher thread only
+    private Map<UUID, Update> latest = new HashMap<>();
+    private ScheduledExecutorService publisher;
+
+    /**
+     * Flushes mailboxes on the publisher thread itself , for tests
+     */
+    public StatsSubscriptions(StatsRepository statsRepository, ObjectMapper objectMapper, long intervalMillis,
+                              int maxSubscribers, long timeoutMillis) {
+        this(statsRepository, objectMapper, intervalMillis, maxSubscribers, timeoutMillis, Long.MAX_VALUE,
+                Runnable::run);
+    }
+
+    @Autowired
+    public StatsSubscriptions(StatsRepository statsRepository, ObjectMapper objectMapper,
+                              @Value("${metrics.subscriptions.interval-ms:100}") long intervalMillis,
+                              @Value("${metrics.subscriptions.max-subscribers:10000}") int maxSubscribers,
+                              @Value("${metrics.subscriptions.timeout-ms:1800000}") long timeoutMillis,
+                              @Value("${metrics.subscriptions.max-lag-ms:5000}") long maxLagMillis,
+                              @Value("${metrics.subscriptions.sender-threads:4}") int senderThreads) {
+        this(statsRepository, objectMapper, intervalMillis, maxSubscribers, timeoutMillis, maxLagMillis,
+                senderPool(senderThreads));
+    }
+
+    /**
+     * @param maxLagMillis - time a flush may take before its subscriber is dropped
+     * @param sender       - runs the flushes of the mailboxes
+     */
+    public StatsSubscriptions(StatsRepository statsRepository, ObjectMapper objectMapper, long intervalMillis,
+                              int maxSubscribers, long timeoutMillis, long maxLagMillis, Executor sender) {
+        if (intervalMillis < 1) {
+            throw new IllegalArgumentException("Subscription interval must be at least 1 ms");
+        }
+        if (maxLagMillis < 1) {
+            throw new IllegalArgumentException("Subscriber lag must be at least 1 ms");
+        }
+        this.statsRepository = statsRepository;
+        this.objectMapper = objectMapper;
+        this.intervalMillis = intervalMillis;
+        this.maxSubscribers = maxSubscribers;
+        this.timeoutMillis = timeoutMillis;
+        // Saturates at Long.MAX_VALUE , which never drops anyone
+        this.maxLagNanos = TimeUnit.MILLISECONDS.toNanos(maxLagMillis);
+        this.sender = sender;
+    }
+
+    @PostConstruct
+    public void start() {
+        publisher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stats-publisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        publisher.scheduleWithFixedDelay(() -> {
+            try {
+                publish();
+            } catch (RuntimeException e) {
+                log.error("Failed to publish stats to subscribers", e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Register a stream for metricIds , the current stats of each metric are sent on the next round
+     *
+     * @param metricIds - metrics to follow , they must exist
+     * @return emitter to hand back to Spring MVC
+     * @throws TooManySubscribersException once maxSubscribers streams are open
+     */
+    public SseEmitter subscribe(Collection<UUID> metricIds) {
+        return subscribe(metricIds, new SseEmitter(timeoutMillis));
+    }
+
+    public SseEmitter subscribe(Collection<UUID> metricIds, SseEmitter emitter) {
+        if (subscribers.size() >= maxSubscribers) {
+            throw new TooManySubscribersException("Too many stats subscribers");
+        }
+        Subscriber subscriber = new Subscriber(emitter, new LinkedHashSet<>(metricIds));
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        return emitter;
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * One fan-out round , run by the publisher thread every intervalMillis
+     *
+     * @return number of events queued to mailboxes
+     */
+    public int publish() {
+        // Stats of each subscribed metric are read and serialized at most once per round , and only when they moved
+        Map<UUID, Update> updates = new HashMap<>();
+        long now = System.nanoTime();
+        int queued = 0;
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.flushing.get() && now - subscriber.flushStarted > maxLagNanos) {
+                // Never touch the emitter here , its lock is held by the blocked write
+                subscribers.remove(subscriber);
+                subscriber.dropped = true;
+                continue;
+            }
+            boolean mail = false;
+            for (int i = 0; i < subscriber.metricIds.length; i++) {
+                Update update = updates.computeIfAbsent(subscriber.metricIds[i], this::readUpdate);
+                if (update == Update.MISSING || update.version == subscriber.queuedVersions[i]) {
+                    continue;
+                }
+                subscriber.mailbox.set(i, update);
+                subscriber.queuedVersions[i] = update.version;
+                mail = true;
+                queued++;
+            }
+            if (mail) {
+                schedule(subscriber);
+            }
+        }
+        // Metrics nobody follows any more are forgotten
+        latest = updates;
+        return queued;
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (publisher != null) {
+            publisher.shutdownNow();
+        }
+        if (sender instanceof ExecutorService) {
+            ((ExecutorService) sender).shutdownNow();
+        }
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+        subscribers.clear();
+    }
+
+    private void schedule(Subscriber subscriber) {
+        if (!subscriber.flushing.compareAndSet(false, true)) {
+            // The running flush picks the new events up before it finishes
+            return;
+        }
+        subscriber.flushStarted = System.nanoTime();
+        try {
+            sender.execute(() -> flush(subscriber));
+        } catch (RejectedExecutionException e) {
+            subscriber.flushing.set(false);
+        }
+    }
+
+    /**
+     * Send every event of the mailbox , run by a sender thread
+     */
+    private void flush(Subscriber subscriber) {
+        try {
+            while (true) {
+                for (int i = 0; i < subscriber.metricIds.length && !subscriber.dropped; i++) {
+                    Update update = subscriber.mailbox.getAndSet(i, null);
+                    if (update != null) {
+                        subscriber.emitter.send(SseEmitter.event()
+                                .id(subscriber.metricIds[i].toString())
+                                .name(EVENT_NAME)
+                                .data(update.json, MediaType.APPLICATION_JSON));
+                    }
+                }
+                if (subscriber.dropped) {
+                    subscriber.emitter.completeWithError(new IOException("Subscriber fell behind"));
+                    return;
+                }
+                subscriber.flushing.set(false);
+                // Events queued after the scan above but before the flag was cleared were not scheduled
+                if (!subscriber.hasMail() || !subscriber.flushing.compareAndSet(false, true)) {
+                    return;
+                }
+                subscriber.flushStarted = System.nanoTime();
+            }
+        } catch (IOException | IllegalStateException e) {
+            // Client went away , the emitter callbacks may not fire until the container notices
+            subscribers.remove(subscriber);
+            subscriber.dropped = true;
+            subscriber.emitter.completeWithError(e);
+        }
+    }
+
+    private static ExecutorService senderPool(int threads) {
+        AtomicInteger created = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "stats-sender-" + created.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private Update readUpdate(UUID metricId) {
+        long version = statsRepository.statsVersion(metricId);
+        if (version < 0) {
+            return Update.MISSING;
+        }
+        Update previous = latest.get(metricId);
+        if (previous != null && previous.version == version) {
+            return previous;
+        }
+        try {
+            SummaryStatistics stats = statsRepository.findStatsForMetric(Collections.singletonList(metricId)).get(0);
+            return new Update(stats.getVersion(), objectMapper.writeValueAsString(stats));
+        } catch (MetricDoestNotExistException e) {
+            return Update.MISSING;
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize the stats of " + metricId, e);
+        }
+    }
+
+
+    private static final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final UUID[] metricIds;
+        // Stats version last queued per metric , only touched by the publisher thread
+        private final long[] queuedVersions;
+        // Latest unsent event per metric
+        private final AtomicReferenceArray<Update> mailbox;
+        // Set while a flush is scheduled or running
+        private final AtomicBoolean flushing = new AtomicBoolean();
+        private volatile long flushStarted;
+        private volatile boolean dropped;
+
+        private Subscriber(SseEmitter emitter, Set<UUID> metricIds) {
+            this.emitter = emitter;
+            this.metricIds = metricIds.toArray(new UUID[0]);
+            this.queuedVersions = new long[this.metricIds.length];
+            Arrays.fill(queuedVersions, Long.MIN_VALUE);
+            this.mailbox = new AtomicReferenceArray<>(this.metricIds.length);
+        }
+
+        private boolean hasMail() {
+            for (int i = 0; i < mailbox.length(); i++) {
+                if (mailbox.get(i) != null) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+
+    private static final class Update {
+
+        private static final Update MISSING = new Update(Long.MIN_VALUE, null);
+
+        private final long version;
+        private final String json;
+
+        private Update(long version, String json) {
+            this.version = version;
+            this.json = json;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.metrics.api.subscription;
+
+public class TooManySubscribersException extends RuntimeException {
+
+    public TooManySubscribersException(String message) {
+        super(message);
+    }
+
+}
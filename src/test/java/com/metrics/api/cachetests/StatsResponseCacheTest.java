@@ -0,0 +1,117 @@
+package com.metrics.api.cachetests;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.metrics.api.cache.StatsResponseCache;
+import com.metrics.api.datatransferobjects.SaveItemDTO;
+import com.metrics.api.datatransferobjects.UpdateItemDTO;
+import com.metrics.api.model.MetricItem;
+import com.metrics.api.repository.CustomMetricRepository;
+import com.metrics.api.repository.CustomStatsRepository;
+import com.metrics.api.repository.MetricLocks;
+import com.metrics.api.repository.StatsRepository;
+import com.metrics.api.storage.ChunkedDoubleSeries;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StatsResponseCacheTest {
+
+    private MetricLocks metricLocks = new MetricLocks();
+
+    private CustomStatsRepository statsRepository = new CustomStatsRepository(metricLocks, "", Clock.systemUTC());
+
+    private CustomMetricRepository metricRepository =
+            new CustomMetricRepository(ChunkedDoubleSeries::new, statsRepository, metricLocks);
+
+    private StatsResponseCache cache = new StatsResponseCache(statsRepository, new ObjectMapper(), 2,
+            Clock.systemUTC());
+
+
+    /**
+     * REPEATED REQUESTS SHOULD BE SERVED FROM THE CACHE UNTIL ONE OF THE METRICS IS UPDATED
+     */
+    @Test
+    public void cached_until_update() throws Exception {
+        UUID first = save("Apple", 1.0);
+        UUID second = save("Pear", 2.0);
+        List<UUID> metricIds = Arrays.asList(first, second);
+        AtomicInteger loads = new AtomicInteger();
+
+        byte[] response = get(metricIds, loads);
+        assertThat(get(metricIds, loads)).isSameAs(response);
+        assertThat(loads.get()).isEqualTo(1);
+
+        metricRepository.update(new ArrayList<>(Arrays.asList(new UpdateItemDTO(second, 4.0))));
+        byte[] updated = get(metricIds, loads);
+        assertThat(loads.get()).isEqualTo(2);
+        assertThat(new String(updated, StandardCharsets.UTF_8)).contains("\"mean\":3.0");
+    }
+
+    /**
+     * THE CACHE SHOULD EVICT THE LEAST RECENTLY USED ENTRY ONCE FULL
+     */
+    @Test
+    public void evicts_least_recently_used() throws Exception {
+        UUID first = save("Apple", 1.0);
+        UUID second = save("Pear", 2.0);
+        UUID third = save("Plum", 3.0);
+        AtomicInteger loads = new AtomicInteger();
+
+        get(Collections.singletonList(first), loads);
+        get(Collections.singletonList(second), loads);
+        get(Collections.singletonList(first), loads);
+        get(Collections.singletonList(third), loads);
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(loads.get()).isEqualTo(3);
+
+        get(Collections.singletonList(first), loads);
+        assertThat(loads.get()).isEqualTo(3);
+        get(Collections.singletonList(second), loads);
+        assertThat(loads.get()).isEqualTo(4);
+    }
+
+
+    /**
+     * THE CACHE SHOULD EVICT THE LEAST RECENTLY USED ENTRIES ONCE THEIR BYTES EXCEED THE BUDGET
+     */
+    @Test
+    public void evicts_beyond_max_bytes() throws Exception {
+        UUID first = save("Apple", 1.0);
+        UUID second = save("Pear", 2.0);
+        UUID third = save("Plum", 3.0);
+        AtomicInteger loads = new AtomicInteger();
+        int size = get(Collections.singletonList(first), loads).length;
+        cache = new StatsResponseCache(statsRepository, new ObjectMapper(), 100, size * 5 / 2, Clock.systemUTC());
+
+        get(Collections.singletonList(first), loads);
+        get(Collections.singletonList(second), loads);
+        get(Collections.singletonList(third), loads);
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.bytes()).isLessThanOrEqualTo(size * 5 / 2);
+
+        get(Collections.singletonList(third), loads);
+        assertThat(loads.get()).isEqualTo(4);
+        get(Collections.singletonList(first), loads);
+        assertThat(loads.get()).isEqualTo(5);
+    }
+
+
+    // Helper Methods
+    private UUID save(String name, double value) {
+        List<MetricItem> savedMetrics = metricRepository.save(
+                new ArrayList<>(Arrays.asList(new SaveItemDTO(name, value))));
+        return savedMetrics.get(0).getId();
+    }
+
+    private byte[] get(List<UUID> metricIds, AtomicInteger loads) throws Exception {
+        return cache.get(metricIds, StatsRepository.DEFAULT_PERCENTILES, () -> {
+            loads.incrementAndGet();
+            return statsRepository.findStatsForMetric(metricIds, StatsRepository.DEFAULT_PERCENTILES);
+        });
+    }
+}
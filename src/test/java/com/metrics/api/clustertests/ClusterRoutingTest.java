@@ -0,0 +1,227 @@
+package com.metrics.api.clustertests;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.metrics.api.MetricsApplication;
+import com.metrics.api.cluster.HashRing;
+import com.metrics.api.datatransferobjects.SaveItemDTO;
+import com.metrics.api.datatransferobjects.UpdateItemDTO;
+import com.metrics.api.model.MetricItem;
+import com.metrics.api.model.MetricRef;
+import com.metrics.api.model.PartialStatistics;
+import com.metrics.api.model.SummaryStatistics;
+import com.metrics.api.repository.CustomMetricRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Three nodes started in this JVM on their own ports , talking to each other over HTTP
+ */
+public class ClusterRoutingTest {
+
+    private static final int NODES = 3;
+
+    private static List<String> urls = new ArrayList<>();
+
+    private static List<ConfigurableApplicationContext> contexts = new ArrayList<>();
+
+    private RestTemplate restTemplate = new RestTemplate();
+
+
+    @BeforeAll
+    public static void start_nodes() throws IOException {
+        List<Integer> ports = new ArrayList<>();
+        for (int i = 0; i < NODES; i++) {
+            try (ServerSocket socket = new ServerSocket(0)) {
+                ports.add(socket.getLocalPort());
+            }
+            urls.add("http://localhost:" + ports.get(i) + "/api");
+        }
+        for (int i = 0; i < NODES; i++) {
+            // Arguments , they take precedence over application.properties
+            contexts.add(new SpringApplicationBuilder(MetricsApplication.class).run(
+                    "--server.port=" + ports.get(i),
+                    "--metrics.cluster.enabled=true",
+                    "--metrics.cluster.nodes=" + String.join(",", urls),
+                    "--metrics.cluster.self=" + urls.get(i)));
+        }
+    }
+
+    @AfterAll
+    public static void stop_nodes() {
+        for (ConfigurableApplicationContext context : contexts) {
+            context.close();
+        }
+    }
+
+
+    /**
+     * METRICS SAVED ON ONE NODE SHOULD LAND ON THEIR OWNERS , UPDATES AND STATS THROUGH ANY NODE SHOULD REACH THEM
+     */
+    @Test
+    public void calls_are_routed_to_owners() {
+        List<SaveItemDTO> posted = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            posted.add(new SaveItemDTO("metric-" + i, (double) i));
+        }
+        MetricItem[] saved = restTemplate.postForObject(urls.get(0) + "/metrics", posted, MetricItem[].class);
+        assertThat(saved).hasSize(30);
+
+        HashRing ring = new HashRing(urls, 128);
+        Map<String, Integer> expected = new HashMap<>();
+        List<UpdateItemDTO> updates = new ArrayList<>();
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < saved.length; i++) {
+            assertThat(saved[i].getName()).isEqualTo("metric-" + i);
+            expected.merge(ring.ownerOf(saved[i].getId()), 1, Integer::sum);
+            updates.add(new UpdateItemDTO(saved[i].getId(), 100.0 + i, null));
+            ids.add(saved[i].getId().toString());
+        }
+        for (int i = 0; i < NODES; i++) {
+            // Every node owns a share and only stores that share
+            assertThat(contexts.get(i).getBean(CustomMetricRepository.class).metricCount())
+                    .isEqualTo(expected.get(urls.get(i))).isPositive();
+        }
+
+        restTemplate.put(urls.get(1) + "/metrics", updates);
+
+        // One batch per owner , answers back in the order of the request
+        SummaryStatistics[] stats = restTemplate.postForObject(urls.get(2) + "/metrics/summarystatistics", ids,
+                SummaryStatistics[].class);
+        assertThat(stats).hasSize(30);
+        for (int i = 0; i < stats.length; i++) {
+            assertThat(stats[i].getId()).isEqualTo(ids.get(i));
+            assertThat(stats[i].getCount()).isEqualTo(2L);
+            assertThat(stats[i].getMax()).isEqualTo(100.0 + i);
+        }
+
+        // Values are relayed by a node that does not own the metric
+        String owner = ring.ownerOf(saved[0].getId());
+        String other = urls.get((urls.indexOf(owner) + 1) % NODES);
+        JsonNode page = restTemplate.getForObject(other + "/metrics/" + ids.get(0) + "?last=1", JsonNode.class);
+        assertThat(page.get("values").get(0).asDouble()).isEqualTo(100.0);
+    }
+
+
+    /**
+     * AN UNKNOWN ID SHOULD BE A 404 FROM WHICHEVER NODE IS ASKED
+     */
+    @Test
+    public void unknown_id_is_not_found_through_any_node() {
+        String unknown = UUID.randomUUID().toString();
+        for (String url : urls) {
+            assertThatThrownBy(() -> restTemplate.exchange(url + "/metrics/summarystatistics", HttpMethod.POST,
+                    new HttpEntity<>(Collections.singletonList(unknown)), String.class))
+                    .isInstanceOf(HttpClientErrorException.NotFound.class);
+            // Relayed by the nodes that do not own it
+            assertThatThrownBy(() -> restTemplate.getForObject(url + "/metrics/" + unknown, String.class))
+                    .isInstanceOf(HttpClientErrorException.NotFound.class);
+        }
+    }
+
+
+    /**
+     * A PARTIAL REQUEST SHOULD GATHER THE STATS FROM EVERY OWNER AND REPORT THE UNKNOWN IDS
+     */
+    @Test
+    public void partial_stats_across_nodes() {
+        List<SaveItemDTO> posted = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            posted.add(new SaveItemDTO("partial-" + i, (double) i));
+        }
+        MetricItem[] saved = restTemplate.postForObject(urls.get(0) + "/metrics", posted, MetricItem[].class);
+        List<String> ids = new ArrayList<>();
+        for (MetricItem metricItem : saved) {
+            ids.add(metricItem.getId().toString());
+        }
+        String unknown = UUID.randomUUID().toString();
+        ids.add(3, unknown);
+
+        PartialStatistics stats = restTemplate.postForObject(urls.get(1) + "/metrics/summarystatistics?partial=true",
+                ids, PartialStatistics.class);
+        assertThat(stats.getMissing()).containsExactly(unknown);
+        assertThat(stats.getStatistics()).extracting(SummaryStatistics::getMax)
+                .containsExactly(0.0, 1.0, 2.0, 3.0, 4.0, 5.0, 6.0, 7.0, 8.0, 9.0);
+    }
+
+
+    /**
+     * METRICS SHARING A NAME SHOULD LIVE ON THE NODE HOLDING THE NAME , NAMES SHOULD RESOLVE THROUGH ANY NODE
+     */
+    @Test
+    public void names_are_looked_up_through_any_node() {
+        List<SaveItemDTO> posted = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            posted.add(new SaveItemDTO("named-" + i, (double) i));
+        }
+        posted.add(new SaveItemDTO("twin", 1.0));
+        posted.add(new SaveItemDTO("twin", 2.0));
+        MetricItem[] saved = restTemplate.postForObject(urls.get(0) + "/metrics", posted, MetricItem[].class);
+
+        HashRing ring = new HashRing(urls, 128);
+        for (MetricItem metricItem : saved) {
+            assertThat(ring.ownerOf(metricItem.getId())).isEqualTo(ring.ownerOfName(metricItem.getName()));
+        }
+
+        List<UpdateItemDTO> updates = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            updates.add(new UpdateItemDTO("named-" + i, 100.0 + i));
+            names.add("named-" + i);
+        }
+        for (String url : urls) {
+            MetricRef[] found = restTemplate.getForObject(url + "/metrics?name=named-3", MetricRef[].class);
+            assertThat(found).extracting(MetricRef::getId).containsExactly(saved[3].getId());
+        }
+        restTemplate.put(urls.get(1) + "/metrics", updates);
+        SummaryStatistics[] stats = restTemplate.postForObject(urls.get(2) + "/metrics/summarystatistics", names,
+                SummaryStatistics[].class);
+        for (int i = 0; i < stats.length; i++) {
+            assertThat(stats[i].getId()).isEqualTo(saved[i].getId().toString());
+            assertThat(stats[i].getMax()).isEqualTo(100.0 + i);
+        }
+
+        // Both twins are on one node , ambiguous from every node
+        for (String url : urls) {
+            assertThatThrownBy(() -> restTemplate.put(url + "/metrics",
+                    Collections.singletonList(new UpdateItemDTO("twin", 3.0))))
+                    .isInstanceOf(HttpClientErrorException.BadRequest.class);
+        }
+    }
+
+
+    /**
+     * ADDING A NODE SHOULD ONLY MOVE ABOUT ITS SHARE OF THE IDS , ALL TO THE NEW NODE
+     */
+    @Test
+    public void ring_moves_few_ids_when_a_node_joins() {
+        List<String> nodes = new ArrayList<>(Arrays.asList("http://a/api", "http://b/api", "http://c/api"));
+        HashRing before = new HashRing(nodes, 128);
+        nodes.add("http://d/api");
+        HashRing after = new HashRing(nodes, 128);
+
+        int moved = 0;
+        for (int i = 0; i < 10_000; i++) {
+            UUID metricId = UUID.randomUUID();
+            String owner = after.ownerOf(metricId);
+            if (!owner.equals(before.ownerOf(metricId))) {
+                assertThat(owner).isEqualTo("http://d/api");
+                moved++;
+            }
+        }
+        assertThat(moved).isBetween(1_500, 3_500);
+    }
+}
@@ -0,0 +1,155 @@
+package com.metrics.api.controllertests;
+
+import com.metrics.api.controller.MetricIngestController;
+import com.metrics.api.ingest.JsonValueStreamReader;
+import com.metrics.api.ingest.MetricFrames;
+import com.metrics.api.ingest.ValueBatch;
+import com.metrics.api.monitoring.IngestMetrics;
+import com.metrics.api.repository.MetricRepository;
+import com.metrics.api.repository.StatsRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(MetricIngestController.class)
+@Import({JsonValueStreamReader.class, IngestMetrics.class})
+public class MetricIngestControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+
+    @MockBean
+    private MetricRepository metricRepository;
+
+
+    @MockBean
+    private StatsRepository statsRepository;
+
+
+    /**
+     * TEST BULK INGEST HAPPY PATH
+     * Values should be applied in batches and the response should only hold counts
+     */
+    @Test
+    public void bulk_update_metrics() throws Exception {
+        UUID metricId = UUID.randomUUID();
+        List<Double> applied = new ArrayList<>();
+        given(metricRepository.ingest(any(ValueBatch.class))).willAnswer(invocation -> {
+            ValueBatch batch = invocation.getArgument(0);
+            for (int i = 0; i < batch.size(); i++) {
+                assertThat(batch.getId(i)).isEqualTo(metricId);
+                assertThat(batch.getTimestamp(i)).isEqualTo(42L + applied.size());
+                applied.add(batch.getValue(i));
+            }
+            return batch.size() - 1;
+        });
+
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < 10_000; i++) {
+            body.append(i == 0 ? "" : ",").append("{\"id\":\"").append(metricId).append("\",\"value\":").append(i)
+                    .append(",\"timestamp\":").append(42 + i).append(",\"note\":{\"ignored\":[1,2]}}");
+        }
+        body.append("]");
+
+        mockMvc.perform(put("/metrics/bulk")
+                .content(body.toString())
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.received").value(10_000))
+                .andExpect(jsonPath("$.accepted").value(9_997))
+                .andExpect(jsonPath("$.rejected").value(3))
+                .andExpect(jsonPath("$.batches").value(3));
+
+        Mockito.verify(metricRepository, times(3)).ingest(any(ValueBatch.class));
+        assertThat(applied).hasSize(10_000);
+        assertThat(applied.get(9_999)).isEqualTo(9_999.0);
+    }
+
+
+    /**
+     * TEST BULK INGEST NON HAPPY PATH
+     * A value without id should be rejected with 400
+     */
+    @Test
+    public void bulk_update_missing_id_non_happy_path() throws Exception {
+        mockMvc.perform(put("/metrics/bulk")
+                .content("[{\"value\":1.0}]")
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(put("/metrics/bulk")
+                .content("[{\"id\":\"not-a-uuid\",\"value\":1.0}]")
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+
+        Mockito.verify(metricRepository, never()).ingest(any(ValueBatch.class));
+    }
+
+
+    /**
+     * TEST BINARY FRAMES HAPPY PATH
+     * Frames written by the encoder should be decoded back to the same ids and values
+     */
+    @Test
+    public void bulk_update_metric_frames() throws Exception {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        List<UUID> ids = new ArrayList<>();
+        List<Double> applied = new ArrayList<>();
+        given(metricRepository.ingest(any(ValueBatch.class))).willAnswer(invocation -> {
+            ValueBatch batch = invocation.getArgument(0);
+            for (int i = 0; i < batch.size(); i++) {
+                ids.add(batch.getId(i));
+                applied.add(batch.getValue(i));
+            }
+            return batch.size();
+        });
+
+        int count = 5_000;
+        ByteBuffer body = ByteBuffer.allocate(count * MetricFrames.FRAME_BYTES);
+        for (int i = 0; i < count; i++) {
+            MetricFrames.encode(i % 2 == 0 ? first : second, i * 0.5, body);
+        }
+
+        mockMvc.perform(put("/metrics/bulk")
+                .content(body.array())
+                .header(HttpHeaders.CONTENT_TYPE, MetricFrames.CONTENT_TYPE))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.received").value(count))
+                .andExpect(jsonPath("$.accepted").value(count))
+                .andExpect(jsonPath("$.batches").value(2));
+
+        assertThat(applied).hasSize(count);
+        assertThat(ids.get(0)).isEqualTo(first);
+        assertThat(ids.get(count - 1)).isEqualTo(second);
+        assertThat(applied.get(count - 1)).isEqualTo((count - 1) * 0.5);
+
+        // A truncated frame is rejected
+        mockMvc.perform(put("/metrics/bulk")
+                .content(new byte[MetricFrames.FRAME_BYTES + 5])
+                .header(HttpHeaders.CONTENT_TYPE, MetricFrames.CONTENT_TYPE))
+                .andExpect(status().isBadRequest());
+    }
+
+}
@@ -2,12 +2,18 @@ package com.metrics.api.controllertests;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import com.metrics.api.StorageConfig;
+import com.metrics.api.cache.StatsResponseCache;
 import com.metrics.api.controller.MetricItemController;
 import com.metrics.api.datatransferobjects.SaveItemDTO;
 import com.metrics.api.datatransferobjects.UpdateItemDTO;
 import com.metrics.api.model.MetricItem;
+import com.metrics.api.model.SummaryStatistics;
+import com.metrics.api.model.UpdateResult;
+import com.metrics.api.monitoring.IngestMetrics;
 import com.metrics.api.repository.MetricDoestNotExistException;
 import com.metrics.api.repository.MetricRepository;
+import com.metrics.api.repository.StatsBackpressureException;
 import com.metrics.api.repository.StatsRepository;
 import org.junit.jupiter.api.Test;
 import org.junit.runner.RunWith;
@@ -15,6 +21,7 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
@@ -27,10 +34,12 @@ import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.times;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
 @WebMvcTest(MetricItemController.class)
+@Import({StatsResponseCache.class, IngestMetrics.class, StorageConfig.class})
 public class MetricItemControllerTest {
 
     @Autowired
@@ -78,13 +87,11 @@ public class MetricItemControllerTest {
     @Test
     public void update_metric() throws Exception, MetricDoestNotExistException {
         UUID metricId = UUID.randomUUID();
-        List<Double> values = new ArrayList<Double>(Arrays.asList(232.300));
-        MetricItem metricItem = new MetricItem(metricId, "Apple", values);
-        List<MetricItem> metricItemList = new ArrayList<>(Arrays.asList(metricItem));
+        UpdateResult updateResult = new UpdateResult(metricId, "Apple", 1, 2L);
         UpdateItemDTO metricItemDTO = new UpdateItemDTO(metricId, 123.00);
         List<UpdateItemDTO> updateItemDTOS = new ArrayList<>(Arrays.asList(metricItemDTO));
 
-        given(metricRepository.update(updateItemDTOS)).willReturn(metricItemList);
+        given(metricRepository.update(updateItemDTOS)).willReturn(new ArrayList<>(Arrays.asList(updateResult)));
 
         mockMvc.perform(put("/metrics")
                 .content(asJsonString(updateItemDTOS))
@@ -120,6 +127,28 @@ public class MetricItemControllerTest {
     }
 
 
+    /**
+     * TEST  API_TO_Update_Metric_NON_HAPPY_PATH ( Stats pipeline is full )
+     * Should Return 429 and nothing should be written
+     */
+    @Test
+    public void update_metric_backpressure_non_happy_path() throws Exception {
+        UUID metricId = UUID.randomUUID();
+        List<UpdateItemDTO> updateItemDTOS = new ArrayList<>(Arrays.asList(new UpdateItemDTO(metricId, 123.00)));
+
+        Mockito.doThrow(new StatsBackpressureException("Stats pipeline is full"))
+                .when(statsRepository).admit(any(List.class));
+
+        mockMvc.perform(put("/metrics")
+                .content(asJsonString(updateItemDTOS))
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isTooManyRequests());
+
+        Mockito.verify(metricRepository, times(0)).update(any(List.class));
+    }
+
+
     /**
      * TEST  API_TO_RETRIEVE_METRIC_DETAILS_NON_HAPPY_PATH
      * Should Return MetricItem
@@ -141,6 +170,36 @@ public class MetricItemControllerTest {
     }
 
 
+    /**
+     * TEST  API_TO_RETRIEVE_PARTIAL_SUMMARY_STATISTICS
+     * Should Return 200 with the stats found and the unknown id and name reported as missing
+     */
+    @Test
+    public void summary_statistics_partial() throws Exception {
+        UUID metricId = UUID.randomUUID();
+        UUID unknownId = UUID.randomUUID();
+        SummaryStatistics stats = new SummaryStatistics();
+        stats.setId(metricId.toString());
+        stats.setCount(3L);
+
+        given(metricRepository.findByName("Pear")).willThrow(MetricDoestNotExistException.class);
+        given(statsRepository.findAvailableStats(Arrays.asList(metricId, unknownId),
+                StatsRepository.DEFAULT_PERCENTILES)).willReturn(Arrays.asList(stats, null));
+
+        mockMvc.perform(post("/metrics/summarystatistics?partial=true")
+                .content(asJsonString(Arrays.asList(metricId.toString(), unknownId.toString(), "Pear")))
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.statistics.length()").value(1))
+                .andExpect(jsonPath("$.statistics[0].id").value(metricId.toString()))
+                .andExpect(jsonPath("$.missing[0]").value(unknownId.toString()))
+                .andExpect(jsonPath("$.missing[1]").value("Pear"));
+
+        Mockito.verify(statsRepository, times(0)).findStatsForMetric(any(List.class), any(List.class));
+    }
+
+
     public static String asJsonString(final Object obj) {
         try {
             return new ObjectMapper().writeValueAsString(obj);
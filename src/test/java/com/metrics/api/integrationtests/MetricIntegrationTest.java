@@ -1,5 +1,6 @@
 package com.metrics.api.integrationtests;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.metrics.api.datatransferobjects.SaveItemDTO;
 import com.metrics.api.datatransferobjects.UpdateItemDTO;
 import com.metrics.api.model.MetricItem;
@@ -90,4 +91,45 @@ public class MetricIntegrationTest {
     }
 
 
+    /**
+     * VALUES SHOULD BE PAGED BY OFFSET , THE LAST N OR A TIME RANGE , EACH PAGE POINTING AT THE NEXT ONE
+     */
+    @Test
+    public void paged_values() {
+
+        List<SaveItemDTO> postedMetrics = new ArrayList<>(Arrays.asList(new SaveItemDTO("Paged", 0.0, null, 0L)));
+        MetricItem[] metricItems = testRestTemplate.postForEntity("/metrics", postedMetrics, MetricItem[].class)
+                .getBody();
+        String metricId = metricItems[0].getId().toString();
+
+        List<UpdateItemDTO> updateItemDTOList = new ArrayList<>();
+        for (int i = 1; i < 10; i++) {
+            updateItemDTOList.add(new UpdateItemDTO(metricItems[0].getId(), (double) i, i * 1000L));
+        }
+        testRestTemplate.put("/metrics", updateItemDTOList);
+
+        JsonNode page = testRestTemplate.getForObject("/metrics/" + metricId + "?offset=2&limit=3&timestamps=true",
+                JsonNode.class);
+        assertThat(page.get("values").toString()).isEqualTo("[2.0,3.0,4.0]");
+        assertThat(page.get("timestamps").toString()).isEqualTo("[2000,3000,4000]");
+        assertThat(page.get("offset").asLong()).isEqualTo(2);
+        assertThat(page.get("nextOffset").asLong()).isEqualTo(5);
+
+        JsonNode last = testRestTemplate.getForObject("/metrics/" + metricId + "?last=2", JsonNode.class);
+        assertThat(last.get("values").toString()).isEqualTo("[8.0,9.0]");
+        assertThat(last.has("nextOffset")).isFalse();
+
+        JsonNode range = testRestTemplate.getForObject("/metrics/" + metricId + "?from=3000&to=6000", JsonNode.class);
+        assertThat(range.get("values").toString()).isEqualTo("[3.0,4.0,5.0]");
+
+        MetricItem whole = testRestTemplate.getForObject("/metrics/" + metricId, MetricItem.class);
+        assertThat(whole.getValues()).hasSize(10);
+        assertThat(whole.getName()).isEqualTo("Paged");
+
+        assertThat(testRestTemplate.getForEntity("/metrics/" + metricId + "?offset=-1", String.class)
+                .getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(testRestTemplate.getForEntity("/metrics/" + metricId + "?limit=0", String.class)
+                .getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
 }
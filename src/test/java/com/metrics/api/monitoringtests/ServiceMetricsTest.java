@@ -0,0 +1,80 @@
+package com.metrics.api.monitoringtests;
+
+import com.metrics.api.datatransferobjects.SaveItemDTO;
+import com.metrics.api.datatransferobjects.UpdateItemDTO;
+import com.metrics.api.monitoring.IngestMetrics;
+import com.metrics.api.monitoring.ServiceMetrics;
+import com.metrics.api.repository.CustomMetricRepository;
+import com.metrics.api.repository.CustomStatsRepository;
+import com.metrics.api.repository.MetricLocks;
+import com.metrics.api.storage.ChunkedDoubleSeries;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ServiceMetricsTest {
+
+    private MetricLocks metricLocks = new MetricLocks();
+
+    private CustomStatsRepository customStatsRepository = new CustomStatsRepository(metricLocks);
+
+    private CustomMetricRepository customMetricRepository =
+            new CustomMetricRepository(ChunkedDoubleSeries::new, customStatsRepository, metricLocks);
+
+    private SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+
+    /**
+     * COUNTERS AND GAUGES SHOULD FOLLOW SAVES , UPDATES AND STATS READS
+     */
+    @Test
+    public void service_metrics_follow_the_repositories() {
+        new ServiceMetrics(customMetricRepository, customStatsRepository, customStatsRepository).bindTo(registry);
+
+        UUID metricId = customMetricRepository.save(new ArrayList<>(Arrays.asList(
+                new SaveItemDTO("Apple", 1.0, null, null),
+                new SaveItemDTO("Pear", 2.0, null, null)))).get(0).getId();
+        List<UpdateItemDTO> updates = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            updates.add(new UpdateItemDTO(metricId, (double) i, null));
+        }
+        customMetricRepository.update(updates);
+        customStatsRepository.findStatsForMetric(Collections.singletonList(metricId));
+
+        assertThat(registry.get("metricdata.ingest.values").functionCounter().count()).isEqualTo(12);
+        assertThat(registry.get("metricdata.stats.recorded").functionCounter().count()).isEqualTo(10);
+        assertThat(registry.get("metricdata.stats.reads").functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("metricdata.metrics").gauge().value()).isEqualTo(2);
+        assertThat(registry.get("metricdata.values.stored").gauge().value()).isEqualTo(12);
+        assertThat(registry.get("metricdata.memory.estimated").tag("kind", "values").gauge().value())
+                .isGreaterThanOrEqualTo(12 * 16);
+        assertThat(registry.get("metricdata.memory.per.metric").tag("statistic", "max").gauge().value())
+                .isGreaterThan(registry.get("metricdata.memory.per.metric").tag("statistic", "mean").gauge().value());
+        // Only registered in front of the stats pipeline
+        assertThat(registry.find("metricdata.stats.queue.depth").gauge()).isNull();
+    }
+
+
+    /**
+     * BATCH SIZES SHOULD ONLY BE RECORDED ONCE BOUND , PER ENDPOINT
+     */
+    @Test
+    public void batch_sizes_per_endpoint() {
+        IngestMetrics ingestMetrics = new IngestMetrics();
+        ingestMetrics.recordBatch(IngestMetrics.UPDATE, 5);
+        ingestMetrics.bindTo(registry);
+        ingestMetrics.recordBatch(IngestMetrics.UPDATE, 10);
+        ingestMetrics.recordBatch(IngestMetrics.UPDATE, 30);
+        ingestMetrics.recordBatch(IngestMetrics.BULK, 1000);
+
+        assertThat(registry.get("metricdata.ingest.batch.size").tag("endpoint", "update").summary().count())
+                .isEqualTo(2);
+        assertThat(registry.get("metricdata.ingest.batch.size").tag("endpoint", "update").summary().totalAmount())
+                .isEqualTo(40);
+        assertThat(registry.get("metricdata.ingest.batch.size").tag("endpoint", "bulk").summary().max())
+                .isEqualTo(1000);
+    }
+}
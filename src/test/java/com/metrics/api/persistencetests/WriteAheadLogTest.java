@@ -0,0 +1,152 @@
+package com.metrics.api.persistencetests;
+
+import com.metrics.api.datatransferobjects.SaveItemDTO;
+import com.metrics.api.datatransferobjects.UpdateItemDTO;
+import com.metrics.api.model.MetricItem;
+import com.metrics.api.model.Rollup;
+import com.metrics.api.model.StatsMode;
+import com.metrics.api.model.SummaryStatistics;
+import com.metrics.api.persistence.DurabilityManager;
+import com.metrics.api.persistence.RecoveryReport;
+import com.metrics.api.persistence.WriteAheadLog;
+import com.metrics.api.repository.CustomMetricRepository;
+import com.metrics.api.repository.CustomStatsRepository;
+import com.metrics.api.repository.MetricLocks;
+import com.metrics.api.retention.RetentionPolicy;
+import com.metrics.api.storage.ChunkedDoubleSeries;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WriteAheadLogTest {
+
+    @TempDir
+    Path directory;
+
+    private CustomStatsRepository customStatsRepository;
+    private CustomMetricRepository customMetricRepository;
+    private WriteAheadLog writeAheadLog;
+    private DurabilityManager durabilityManager;
+
+
+    /**
+     * A RESTART SHOULD RESTORE THE SNAPSHOT AND EVERY VALUE LOGGED AFTER IT , STATS INCLUDED
+     */
+    @Test
+    public void recover_snapshot_and_log_tail() throws IOException {
+        RecoveryReport empty = startNode();
+        assertThat(empty.getMetrics()).isEqualTo(0);
+
+        List<MetricItem> savedMetrics = customMetricRepository.save(new ArrayList<>(Arrays.asList(
+                new SaveItemDTO("Apple", 1.0), new SaveItemDTO("Latency", 10.0, StatsMode.APPROXIMATE))));
+        UUID apple = savedMetrics.get(0).getId();
+        UUID latency = savedMetrics.get(1).getId();
+        update(apple, 2.0, 3.0);
+        durabilityManager.snapshot();
+        update(apple, 4.0);
+        update(latency, 20.0);
+        durabilityManager.stop();
+
+        RecoveryReport report = startNode();
+        assertThat(report.getMetrics()).isEqualTo(2);
+        assertThat(report.getSnapshotValues()).isEqualTo(4);
+        assertThat(report.getReplayedRecords()).isGreaterThanOrEqualTo(2);
+
+        MetricItem recovered = customMetricRepository.find(apple.toString());
+        assertThat(recovered.getName()).isEqualTo("Apple");
+        assertThat(recovered.getValues()).containsExactly(1.0, 2.0, 3.0, 4.0);
+        assertThat(customMetricRepository.find(latency.toString()).getStatsMode()).isEqualTo(StatsMode.APPROXIMATE);
+
+        SummaryStatistics stats = customStatsRepository.findStatsForMetric(Collections.singletonList(apple)).get(0);
+        assertThat(stats.getCount()).isEqualTo(4);
+        assertThat(stats.getMedian()).isEqualTo(2.5);
+
+        // Writes keep going after recovery
+        update(apple, 5.0);
+        durabilityManager.stop();
+        startNode();
+        assertThat(customMetricRepository.find(apple.toString()).getValues()).hasSize(5);
+        durabilityManager.stop();
+    }
+
+
+    /**
+     * A RECORD TORN BY A CRASH SHOULD BE IGNORED , EVERY RECORD BEFORE IT IS RECOVERED
+     */
+    @Test
+    public void torn_tail_is_ignored() throws IOException {
+        startNode();
+        UUID apple = customMetricRepository.save(new ArrayList<>(Arrays.asList(new SaveItemDTO("Apple", 1.0))))
+                .get(0).getId();
+        update(apple, 2.0);
+        durabilityManager.stop();
+
+        Path segment = WriteAheadLog.segments(directory).lastEntry().getValue();
+        Files.write(segment, new byte[]{0, 0, 0, 40, 2, 7, 7}, StandardOpenOption.APPEND);
+
+        RecoveryReport report = startNode();
+        assertThat(report.getReplayedRecords()).isEqualTo(2);
+        assertThat(customMetricRepository.find(apple.toString()).getValues()).containsExactly(1.0, 2.0);
+        durabilityManager.stop();
+    }
+
+
+    /**
+     * VALUES COMPACTED BEFORE A SNAPSHOT SHOULD COME BACK AS ROLLUPS , STATS STILL COVERING EVERY VALUE
+     */
+    @Test
+    public void recover_compacted_metric() throws IOException {
+        startNode();
+        UUID apple = customMetricRepository.save(new ArrayList<>(Arrays.asList(new SaveItemDTO("Apple", 1.0))))
+                .get(0).getId();
+        update(apple, 2.0, 3.0, 4.0, 5.0, 6.0, 7.0, 8.0);
+        RetentionPolicy policy = new RetentionPolicy(null, 2, Duration.ofMinutes(1), 0);
+        assertThat(customMetricRepository.compact(customMetricRepository.find(apple.toString()), policy,
+                System.currentTimeMillis())).isEqualTo(6);
+        durabilityManager.snapshot();
+        update(apple, 9.0, 10.0);
+        durabilityManager.stop();
+
+        startNode();
+        MetricItem recovered = customMetricRepository.find(apple.toString());
+        assertThat(recovered.getValues()).containsExactly(7.0, 8.0, 9.0, 10.0);
+        assertThat(recovered.getTotalCount()).isEqualTo(10);
+        assertThat(recovered.getRollups().stream().mapToDouble(Rollup::getSum).sum()).isEqualTo(21.0);
+
+        SummaryStatistics stats = customStatsRepository.findStatsForMetric(Collections.singletonList(apple)).get(0);
+        assertThat(stats.getCount()).isEqualTo(10);
+        assertThat(stats.getMean()).isEqualTo(5.5);
+        assertThat(stats.getMin()).isEqualTo(1.0);
+        durabilityManager.stop();
+    }
+
+
+    // Helper Methods
+    private RecoveryReport startNode() throws IOException {
+        MetricLocks metricLocks = new MetricLocks();
+        customStatsRepository = new CustomStatsRepository(metricLocks);
+        writeAheadLog = new WriteAheadLog(directory, 1);
+        customMetricRepository = new CustomMetricRepository(ChunkedDoubleSeries::new, customStatsRepository,
+                metricLocks, writeAheadLog);
+        durabilityManager = new DurabilityManager(customMetricRepository, customStatsRepository, writeAheadLog, 0);
+        durabilityManager.start();
+        return durabilityManager.getRecoveryReport();
+    }
+
+    private void update(UUID metricId, double... values) {
+        List<UpdateItemDTO> updates = new ArrayList<>();
+        for (double value : values) {
+            updates.add(new UpdateItemDTO(metricId, value));
+        }
+        customMetricRepository.update(updates);
+    }
+
+}
@@ -0,0 +1,20 @@
+package com.metrics.api.repositorytests;
+
+import com.metrics.api.repository.CustomMetricRepository;
+import com.metrics.api.repository.CustomStatsRepository;
+import com.metrics.api.repository.MetricLocks;
+import com.metrics.api.storage.CompressedValueSeries;
+
+/**
+ * Runs the repository suite against values sealed into XOR compressed blocks
+ */
+public class CompressedMetricItemRepositoryTest extends MetricItemRepositoryTest {
+
+    @Override
+    protected CustomMetricRepository createRepository() {
+        MetricLocks metricLocks = new MetricLocks();
+        return new CustomMetricRepository(CompressedValueSeries::new, new CustomStatsRepository(metricLocks),
+                metricLocks);
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.metrics.api.repositorytests;
+
+import com.metrics.api.datatransferobjects.SaveItemDTO;
+import com.metrics.api.datatransferobjects.UpdateItemDTO;
+import com.metrics.api.model.MetricItem;
+import com.metrics.api.model.SummaryStatistics;
+import com.metrics.api.repository.CustomMetricRepository;
+import com.metrics.api.repository.CustomStatsRepository;
+import com.metrics.api.repository.MetricLocks;
+import com.metrics.api.storage.ChunkedDoubleSeries;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConcurrentIngestTest {
+
+    private static final int THREADS = 16;
+    private static final int UPDATES_PER_THREAD = 5_000;
+    private static final int METRICS = 4;
+
+    private MetricLocks metricLocks = new MetricLocks();
+
+    private CustomStatsRepository customStatsRepository = new CustomStatsRepository(metricLocks);
+
+    private CustomMetricRepository customMetricRepository =
+            new CustomMetricRepository(ChunkedDoubleSeries::new, customStatsRepository, metricLocks);
+
+
+    /**
+     * MANY THREADS UPDATING THE SAME METRICS SHOULD NOT LOSE A SINGLE VALUE IN EITHER THE VALUES OR THE STATS,
+     * AND EVERY STATS READ SHOULD SEE A CONSISTENT SNAPSHOT
+     */
+    @Test
+    public void concurrent_updates_are_not_lost() throws Exception {
+        List<SaveItemDTO> postedMetrics = new ArrayList<>();
+        for (int i = 0; i < METRICS; i++) {
+            postedMetrics.add(new SaveItemDTO("Metric" + i, 0.0));
+        }
+        List<MetricItem> metricItems = customMetricRepository.save(postedMetrics);
+        List<UUID> metricIds = new ArrayList<>();
+        for (MetricItem metricItem : metricItems) {
+            metricIds.add(metricItem.getId());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Future<?>> writers = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            writers.add(executor.submit(() -> {
+                start.await();
+                for (int i = 1; i <= UPDATES_PER_THREAD; i++) {
+                    UUID metricId = metricIds.get(i % METRICS);
+                    customMetricRepository.update(new ArrayList<>(Arrays.asList(new UpdateItemDTO(metricId, (double) i))));
+                }
+                return null;
+            }));
+        }
+
+        Future<?> reader = executor.submit(() -> {
+            start.await();
+            long[] lastCount = new long[METRICS];
+            while (writing.get()) {
+                List<SummaryStatistics> stats = customStatsRepository.findStatsForMetric(metricIds);
+                for (int m = 0; m < METRICS; m++) {
+                    SummaryStatistics stat = stats.get(m);
+                    assertThat(stat.getCount()).isGreaterThanOrEqualTo(lastCount[m]);
+                    assertThat(stat.getMin()).isLessThanOrEqualTo(stat.getMedian());
+                    assertThat(stat.getMedian()).isLessThanOrEqualTo(stat.getMax());
+                    lastCount[m] = stat.getCount();
+                }
+            }
+            return null;
+        });
+
+        start.countDown();
+        for (Future<?> writer : writers) {
+            writer.get(60, TimeUnit.SECONDS);
+        }
+        writing.set(false);
+        reader.get(60, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        long expectedPerMetric = 1 + (long) THREADS * UPDATES_PER_THREAD / METRICS;
+        List<SummaryStatistics> stats = customStatsRepository.findStatsForMetric(metricIds);
+        for (int m = 0; m < METRICS; m++) {
+            MetricItem metricItem = customMetricRepository.find(metricIds.get(m).toString());
+            assertThat((long) metricItem.getValues().size()).isEqualTo(expectedPerMetric);
+            assertThat(stats.get(m).getCount()).isEqualTo(expectedPerMetric);
+
+            double[] sum = new double[1];
+            metricItem.getSeries().forEach(value -> sum[0] += value);
+            assertThat(stats.get(m).getMean()).isEqualTo(sum[0] / expectedPerMetric);
+        }
+    }
+
+}
@@ -0,0 +1,40 @@
+package com.metrics.api.repositorytests;
+
+import com.metrics.api.repository.CustomMetricRepository;
+import com.metrics.api.repository.MappedMetricRepository;
+import com.metrics.api.storage.SegmentArena;
+import org.junit.jupiter.api.AfterEach;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Runs the repository suite against values stored in memory-mapped segments
+ */
+public class MappedMetricItemRepositoryTest extends MetricItemRepositoryTest {
+
+    private SegmentArena arena;
+
+    @Override
+    protected CustomMetricRepository createRepository() {
+        try {
+            arena = new SegmentArena(Files.createTempDirectory("metric-segments"), 1 << 20);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new MappedMetricRepository(arena);
+    }
+
+    @AfterEach
+    public void deleteSegments() throws IOException {
+        arena.close();
+        try (Stream<Path> files = Files.walk(arena.getDirectory())) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+}
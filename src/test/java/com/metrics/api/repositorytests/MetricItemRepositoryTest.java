@@ -4,9 +4,9 @@ import com.metrics.api.datatransferobjects.SaveItemDTO;
 import com.metrics.api.datatransferobjects.UpdateItemDTO;
 import com.metrics.api.model.MetricItem;
 import com.metrics.api.model.SummaryStatistics;
-import com.metrics.api.repository.CustomMetricRepository;
-import com.metrics.api.repository.MetricAlreadyExistsException;
-import com.metrics.api.repository.MetricDoestNotExistException;
+import com.metrics.api.model.UpdateResult;
+import com.metrics.api.repository.*;
+import com.metrics.api.storage.ChunkedDoubleSeries;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -21,7 +21,14 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 @RunWith(MockitoJUnitRunner.class)
 public class MetricItemRepositoryTest {
 
-    private CustomMetricRepository customMetricRepository = new CustomMetricRepository();
+    private CustomMetricRepository customMetricRepository = createRepository();
+
+    /**
+     * Repository under test , overridden to run the suite against other storage
+     */
+    protected CustomMetricRepository createRepository() {
+        return new CustomMetricRepository();
+    }
 
 
     /**
@@ -102,6 +109,108 @@ public class MetricItemRepositoryTest {
 
     }
 
+    /**
+     * METRICS SHOULD BE FOUND BY EXACT NAME , PREFIX AND GLOB , AND UPDATED BY NAME
+     */
+    @Test
+    public void find_and_update_by_name() throws MetricDoestNotExistException {
+        List<MetricItem> metricItems = saveAndUpdateMetric();
+
+        assertThat(customMetricRepository.findByName("Ford").getId()).isEqualTo(metricItems.get(1).getId());
+        assertThrows(IllegalArgumentException.class, () -> customMetricRepository.findByName("Microsoft"));
+        assertThrows(MetricDoestNotExistException.class, () -> customMetricRepository.findByName("Pear"));
+
+        assertThat(customMetricRepository.search("Mic", 10)).hasSize(2);
+        assertThat(customMetricRepository.search("*o*", 10)).extracting(MetricItem::getName)
+                .containsExactly("Ford", "Microsoft", "Microsoft");
+        assertThat(customMetricRepository.search("?pple", 10)).containsExactly(metricItems.get(0));
+        assertThat(customMetricRepository.search("", 2)).hasSize(2);
+
+        customMetricRepository.update(new ArrayList<>(Arrays.asList(new UpdateItemDTO("Ford", 5.0))));
+        assertThat(customMetricRepository.find(metricItems.get(1).getId().toString()).getValues()).hasSize(4);
+    }
+
+    /**
+     * AN INTERLEAVED BATCH SHOULD ANSWER ONE RESULT PER METRIC , IN THE ORDER EACH METRIC FIRST APPEARS
+     */
+    @Test
+    public void update_groups_values_per_metric() throws MetricDoestNotExistException {
+        List<MetricItem> metricItems = customMetricRepository.save(new ArrayList<>(Arrays.asList(
+                new SaveItemDTO("Apple", 1.0), new SaveItemDTO("Pear", 1.0))));
+        UUID apple = metricItems.get(0).getId();
+        UUID pear = metricItems.get(1).getId();
+
+        List<UpdateItemDTO> updates = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            updates.add(new UpdateItemDTO(i % 100 == 50 ? pear : apple, (double) i));
+        }
+        List<UpdateResult> results = customMetricRepository.update(updates);
+
+        assertThat(results).containsExactly(new UpdateResult(apple, "Apple", 495, 496L),
+                new UpdateResult(pear, "Pear", 5, 6L));
+        assertThat(customMetricRepository.find(apple.toString()).getValues()).hasSize(496)
+                .endsWith(498.0, 499.0);
+        assertThat(customMetricRepository.find(pear.toString()).getValues())
+                .containsExactly(1.0, 50.0, 150.0, 250.0, 350.0, 450.0);
+    }
+
+    /**
+     * WITH UNIQUE NAMES A TAKEN NAME SHOULD REJECT THE WHOLE BATCH / non happy path
+     */
+    @Test
+    public void unique_names_non_happy_path() {
+        MetricLocks metricLocks = new MetricLocks();
+        CustomMetricRepository uniqueRepository = new CustomMetricRepository(ChunkedDoubleSeries::new,
+                new CustomStatsRepository(metricLocks), metricLocks, MetricJournal.NONE, new MetricNameIndex(true));
+        uniqueRepository.save(new ArrayList<>(Arrays.asList(new SaveItemDTO("Apple", 1.0))));
+
+        assertThrows(MetricAlreadyExistsException.class, () -> uniqueRepository.save(new ArrayList<>(Arrays.asList(
+                new SaveItemDTO("Pear", 1.0), new SaveItemDTO("Apple", 2.0)))));
+        assertThrows(MetricAlreadyExistsException.class, () -> uniqueRepository.save(new ArrayList<>(Arrays.asList(
+                new SaveItemDTO("Plum", 1.0), new SaveItemDTO("Plum", 2.0)))));
+        assertThat(uniqueRepository.metrics()).hasSize(1);
+        assertThat(uniqueRepository.search("P", 10)).isEmpty();
+
+        uniqueRepository.save(new ArrayList<>(Arrays.asList(new SaveItemDTO("Pear", 1.0))));
+        assertThat(uniqueRepository.findByName("Pear").getValues()).containsExactly(1.0);
+    }
+
+    /**
+     * VALUES POSTED BY NAME SHOULD REACH THE METRIC WITHOUT THE POSTED VALUES BEING CHANGED
+     */
+    @Test
+    public void update_by_name_leaves_posted_values_untouched() {
+        UUID apple = customMetricRepository.save(new ArrayList<>(Arrays.asList(new SaveItemDTO("Apple", 1.0))))
+                .get(0).getId();
+        UpdateItemDTO posted = new UpdateItemDTO("Apple", 2.0);
+
+        assertThat(customMetricRepository.update(new ArrayList<>(Arrays.asList(posted))))
+                .extracting(UpdateResult::getId).containsExactly(apple);
+        assertThat(posted.getId()).isNull();
+        assertThat(customMetricRepository.find(apple.toString()).getValues()).containsExactly(1.0, 2.0);
+    }
+
+    /**
+     * AN ID ALREADY IN USE OR POSTED TWICE SHOULD REJECT THE WHOLE BATCH / non happy path
+     */
+    @Test
+    public void posted_ids_non_happy_path() {
+        UUID taken = UUID.randomUUID();
+        UUID twice = UUID.randomUUID();
+        customMetricRepository.save(new ArrayList<>(Arrays.asList(
+                new SaveItemDTO("Apple", 1.0, null, null, taken))));
+
+        assertThrows(MetricAlreadyExistsException.class, () -> customMetricRepository.save(new ArrayList<>(
+                Arrays.asList(new SaveItemDTO("Pear", 1.0), new SaveItemDTO("Plum", 1.0, null, null, taken)))));
+        assertThrows(MetricAlreadyExistsException.class, () -> customMetricRepository.save(new ArrayList<>(
+                Arrays.asList(new SaveItemDTO("Pear", 1.0, null, null, twice),
+                        new SaveItemDTO("Plum", 1.0, null, null, twice)))));
+        assertThat(customMetricRepository.metrics()).hasSize(1);
+
+        customMetricRepository.save(new ArrayList<>(Arrays.asList(new SaveItemDTO("Pear", 2.0, null, null, twice))));
+        assertThat(customMetricRepository.find(twice.toString()).getValues()).containsExactly(2.0);
+    }
+
     // Helper Method
     private List<MetricItem> saveAndUpdateMetric() throws MetricDoestNotExistException {
         // Save Metric
@@ -0,0 +1,204 @@
+package com.metrics.api.repositorytests;
+
+import com.metrics.api.datatransferobjects.SaveItemDTO;
+import com.metrics.api.datatransferobjects.UpdateItemDTO;
+import com.metrics.api.model.MetricItem;
+import com.metrics.api.model.SummaryStatistics;
+import com.metrics.api.repository.*;
+import com.metrics.api.storage.ChunkedDoubleSeries;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.Lock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class StatsPipelineTest {
+
+    private MetricLocks metricLocks = new MetricLocks();
+
+    private CustomStatsRepository customStatsRepository = new CustomStatsRepository(metricLocks);
+
+    private PipelinedStatsRepository pipeline;
+
+    @AfterEach
+    public void shutdown() {
+        pipeline.shutdown();
+    }
+
+
+    /**
+     * AFTER awaitWrites EVERY VALUE POSTED BEFORE IT SHOULD BE IN THE STATS
+     */
+    @Test
+    public void reads_see_their_own_writes() throws Exception {
+        pipeline = new PipelinedStatsRepository(customStatsRepository, 4, 100_000,
+                PipelinedStatsRepository.Backpressure.BLOCK, 5_000);
+        CustomMetricRepository customMetricRepository = repositoryWithPipeline();
+        List<UUID> metricIds = saveMetrics(customMetricRepository, 8);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            writers.add(executor.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    List<UpdateItemDTO> batch = new ArrayList<>(Arrays.asList(
+                            new UpdateItemDTO(metricIds.get(i % metricIds.size()), (double) i)));
+                    pipeline.admit(Collections.singletonList(batch.get(0).getId()));
+                    customMetricRepository.update(batch);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> writer : writers) {
+            writer.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        pipeline.awaitWrites(metricIds);
+        List<SummaryStatistics> stats = pipeline.findStatsForMetric(metricIds);
+        long total = 0;
+        for (SummaryStatistics stat : stats) {
+            total += stat.getCount();
+        }
+        assertThat(total).isEqualTo(8 + 40_000);
+        assertThat(pipeline.pendingValues()).isEqualTo(0);
+    }
+
+
+    /**
+     * REJECT MODE SHOULD REFUSE A BATCH ONCE THE SHARD HOLDS queueCapacity PENDING VALUES
+     */
+    @Test
+    public void reject_when_shard_is_full_non_happy_path() {
+        pipeline = new PipelinedStatsRepository(customStatsRepository, 1, 10,
+                PipelinedStatsRepository.Backpressure.REJECT, 0);
+        CustomMetricRepository customMetricRepository = repositoryWithPipeline();
+        UUID metricId = saveMetrics(customMetricRepository, 1).get(0);
+        pipeline.awaitWrites(Collections.singletonList(metricId));
+
+        // Holding the stats lock of the metric stalls the shard thread
+        Lock lock = metricLocks.forMetric(metricId).writeLock();
+        lock.lock();
+        try {
+            List<UpdateItemDTO> batch = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                batch.add(new UpdateItemDTO(metricId, (double) i));
+            }
+            customMetricRepository.update(batch);
+
+            assertThrows(StatsBackpressureException.class,
+                    () -> pipeline.admit(Collections.singletonList(metricId)));
+        } finally {
+            lock.unlock();
+        }
+
+        pipeline.awaitWrites(Collections.singletonList(metricId));
+        pipeline.admit(Collections.singletonList(metricId));
+        assertThat(pipeline.findStatsForMetric(Collections.singletonList(metricId)).get(0).getCount()).isEqualTo(11);
+    }
+
+
+    /**
+     * BLOCK MODE SHOULD GIVE UP WITH BACKPRESSURE ONCE THE TIMEOUT EXPIRES
+     */
+    @Test
+    public void block_times_out_non_happy_path() {
+        pipeline = new PipelinedStatsRepository(customStatsRepository, 1, 1,
+                PipelinedStatsRepository.Backpressure.BLOCK, 50);
+        CustomMetricRepository customMetricRepository = repositoryWithPipeline();
+        UUID metricId = saveMetrics(customMetricRepository, 1).get(0);
+        pipeline.awaitWrites(Collections.singletonList(metricId));
+
+        Lock lock = metricLocks.forMetric(metricId).writeLock();
+        lock.lock();
+        try {
+            customMetricRepository.update(new ArrayList<>(Arrays.asList(new UpdateItemDTO(metricId, 1.0))));
+            assertThrows(StatsBackpressureException.class,
+                    () -> pipeline.admit(Collections.singletonList(metricId)));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * A NEW METRIC SHOULD HAVE STATS RIGHT AWAY , EVEN WHILE ITS SHARD IS STILL BEHIND
+     */
+    @Test
+    public void new_metric_has_stats_before_shard_applies_it() {
+        pipeline = new PipelinedStatsRepository(customStatsRepository, 1, 100,
+                PipelinedStatsRepository.Backpressure.BLOCK, 5_000);
+        CustomMetricRepository customMetricRepository = repositoryWithPipeline();
+        UUID busyId = saveMetrics(customMetricRepository, 1).get(0);
+        pipeline.awaitWrites(Collections.singletonList(busyId));
+
+        UUID metricId;
+        Lock lock = metricLocks.forMetric(busyId).writeLock();
+        lock.lock();
+        try {
+            // The only shard is stuck on the busy metric , so the rebuild of the new one stays queued
+            customMetricRepository.update(new ArrayList<>(Arrays.asList(new UpdateItemDTO(busyId, 1.0))));
+            metricId = saveMetrics(customMetricRepository, 1).get(0);
+
+            SummaryStatistics stats = pipeline.findAvailableStats(Collections.singletonList(metricId),
+                    StatsRepository.DEFAULT_PERCENTILES).get(0);
+            assertThat(stats).isNotNull();
+            assertThat(stats.getCount()).isEqualTo(0);
+        } finally {
+            lock.unlock();
+        }
+
+        pipeline.awaitWrites(Collections.singletonList(metricId));
+        assertThat(pipeline.findStatsForMetric(Collections.singletonList(metricId)).get(0).getCount()).isEqualTo(1);
+    }
+
+
+    /**
+     * VALUES APPENDED WHILE THE REBUILD OF A NEW METRIC IS QUEUED SHOULD BE COUNTED ONCE
+     */
+    @Test
+    public void queued_rebuild_does_not_count_later_values_twice() {
+        pipeline = new PipelinedStatsRepository(customStatsRepository, 1, 100,
+                PipelinedStatsRepository.Backpressure.BLOCK, 5_000);
+        CustomMetricRepository customMetricRepository = repositoryWithPipeline();
+        UUID busyId = saveMetrics(customMetricRepository, 1).get(0);
+        pipeline.awaitWrites(Collections.singletonList(busyId));
+
+        UUID metricId;
+        Lock lock = metricLocks.forMetric(busyId).writeLock();
+        lock.lock();
+        try {
+            customMetricRepository.update(new ArrayList<>(Arrays.asList(new UpdateItemDTO(busyId, 1.0))));
+            metricId = saveMetrics(customMetricRepository, 1).get(0);
+            customMetricRepository.update(new ArrayList<>(Arrays.asList(
+                    new UpdateItemDTO(metricId, 1.0), new UpdateItemDTO(metricId, 2.0))));
+        } finally {
+            lock.unlock();
+        }
+
+        pipeline.awaitWrites(Collections.singletonList(metricId));
+        assertThat(pipeline.findStatsForMetric(Collections.singletonList(metricId)).get(0).getCount()).isEqualTo(3);
+    }
+
+
+    private CustomMetricRepository repositoryWithPipeline() {
+        return new CustomMetricRepository(ChunkedDoubleSeries::new, pipeline, new MetricLocks());
+    }
+
+    private List<UUID> saveMetrics(CustomMetricRepository customMetricRepository, int count) {
+        List<SaveItemDTO> postedMetrics = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            postedMetrics.add(new SaveItemDTO("Metric" + i, 0.0));
+        }
+        List<UUID> metricIds = new ArrayList<>();
+        for (MetricItem metricItem : customMetricRepository.save(postedMetrics)) {
+            metricIds.add(metricItem.getId());
+        }
+        return metricIds;
+    }
+
+}
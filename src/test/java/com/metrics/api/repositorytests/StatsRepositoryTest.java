@@ -0,0 +1,281 @@
+package com.metrics.api.repositorytests;
+
+import com.metrics.api.datatransferobjects.SaveItemDTO;
+import com.metrics.api.datatransferobjects.UpdateItemDTO;
+import com.metrics.api.model.AggregateStatistics;
+import com.metrics.api.model.MetricItem;
+import com.metrics.api.model.StatsMode;
+import com.metrics.api.model.SummaryStatistics;
+import com.metrics.api.repository.CustomMetricRepository;
+import com.metrics.api.repository.CustomStatsRepository;
+import com.metrics.api.repository.MetricDoestNotExistException;
+import com.metrics.api.repository.MetricLocks;
+import com.metrics.api.repository.StatsRepository;
+import com.metrics.api.storage.ChunkedDoubleSeries;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class StatsRepositoryTest {
+
+    private MetricLocks metricLocks = new MetricLocks();
+
+    private CustomStatsRepository customStatsRepository = new CustomStatsRepository(metricLocks);
+
+    private CustomMetricRepository customMetricRepository =
+            new CustomMetricRepository(ChunkedDoubleSeries::new, customStatsRepository, metricLocks);
+
+
+    /**
+     * MEDIAN OF AN ODD NUMBER OF VALUES SHOULD BE THE MIDDLE VALUE
+     */
+    @Test
+    public void median_odd_count() {
+        UUID metricId = saveAndUpdate(5.0, 1.0, 9.0);
+
+        SummaryStatistics stats = customStatsRepository.findStatsForMetric(Collections.singletonList(metricId)).get(0);
+        assertThat(stats.getCount()).isEqualTo(3);
+        assertThat(stats.getMedian()).isEqualTo(5.0);
+        assertThat(stats.getMin()).isEqualTo(1.0);
+        assertThat(stats.getMax()).isEqualTo(9.0);
+    }
+
+
+    /**
+     * MEDIAN OF AN EVEN NUMBER OF VALUES SHOULD BE THE MEAN OF THE TWO MIDDLE VALUES
+     */
+    @Test
+    public void median_even_count() {
+        UUID metricId = saveAndUpdate(4.0, 1.0, 3.0, 10.0);
+
+        SummaryStatistics stats = customStatsRepository.findStatsForMetric(Collections.singletonList(metricId)).get(0);
+        assertThat(stats.getMedian()).isEqualTo(3.5);
+        assertThat(stats.getMean()).isEqualTo(4.5);
+        assertThat(stats.getVariance()).isEqualTo(11.25);
+        assertThat(stats.getStandardDeviation()).isEqualTo(Math.sqrt(11.25));
+    }
+
+
+    /**
+     * EXACT METRICS ONLY REPORT THE MEDIAN AS A PERCENTILE
+     */
+    @Test
+    public void exact_mode_reports_median_only() {
+        UUID metricId = saveAndUpdate(4.0, 1.0, 3.0);
+
+        SummaryStatistics stats = customStatsRepository.findStatsForMetric(Collections.singletonList(metricId)).get(0);
+        assertThat(stats.getStatsMode()).isEqualTo(StatsMode.EXACT);
+        assertThat(stats.getPercentiles()).containsOnlyKeys("p50");
+        assertThat(stats.getRankErrorBound()).isEqualTo(0.0);
+    }
+
+
+    /**
+     * LAZY EXACT METRICS REPORT ANY PERCENTILE EXACTLY , RECOMPUTED AFTER A WRITE
+     */
+    @Test
+    public void lazy_exact_mode_reports_exact_percentiles() {
+        List<MetricItem> savedMetrics = customMetricRepository.save(
+                new ArrayList<>(Arrays.asList(new SaveItemDTO("Latency", 0.0, StatsMode.LAZY_EXACT))));
+        UUID metricId = savedMetrics.get(0).getId();
+
+        List<UpdateItemDTO> updates = new ArrayList<>();
+        for (int i = 1000; i >= 1; i--) {
+            updates.add(new UpdateItemDTO(metricId, (double) i));
+        }
+        customMetricRepository.update(updates);
+
+        SummaryStatistics stats = customStatsRepository.findStatsForMetric(Collections.singletonList(metricId),
+                Arrays.asList(50.0, 90.0, 99.9)).get(0);
+        assertThat(stats.getStatsMode()).isEqualTo(StatsMode.LAZY_EXACT);
+        assertThat(stats.getMedian()).isEqualTo(500.0);
+        assertThat(stats.getPercentiles()).containsEntry("p50", 500.0).containsEntry("p90", 900.0);
+        assertThat(stats.getPercentiles().get("p99.9")).isCloseTo(999.0, within(1e-9));
+        assertThat(stats.getRankErrorBound()).isEqualTo(0.0);
+
+        customMetricRepository.update(new ArrayList<>(Arrays.asList(new UpdateItemDTO(metricId, 5000.0))));
+        stats = customStatsRepository.findStatsForMetric(Collections.singletonList(metricId)).get(0);
+        assertThat(stats.getMedian()).isEqualTo(500.5);
+    }
+
+
+    /**
+     * APPROXIMATE METRICS REPORT ANY PERCENTILE AND KEEP THEIR MEMORY BOUNDED
+     */
+    @Test
+    public void approximate_mode_reports_percentiles() {
+        List<MetricItem> savedMetrics = customMetricRepository.save(
+                new ArrayList<>(Arrays.asList(new SaveItemDTO("Latency", 0.0, StatsMode.APPROXIMATE))));
+        UUID metricId = savedMetrics.get(0).getId();
+
+        List<UpdateItemDTO> updates = new ArrayList<>();
+        for (int i = 1; i < 100_000; i++) {
+            updates.add(new UpdateItemDTO(metricId, (double) i));
+        }
+        customMetricRepository.update(updates);
+
+        SummaryStatistics stats = customStatsRepository.findStatsForMetric(Collections.singletonList(metricId),
+                Arrays.asList(50.0, 99.9)).get(0);
+        assertThat(stats.getStatsMode()).isEqualTo(StatsMode.APPROXIMATE);
+        assertThat(stats.getCount()).isEqualTo(100_000);
+        assertThat(stats.getPercentiles()).containsOnlyKeys("p50", "p99.9");
+        assertThat(Math.abs(stats.getPercentiles().get("p99.9") - 99_900)).isLessThanOrEqualTo(
+                2 * stats.getRankErrorBound() * 100_000);
+        assertThat(stats.getMemoryBytes()).isLessThan(32 * 1024);
+    }
+
+
+    /**
+     * PERCENTILES OUTSIDE 0 - 100 SHOULD BE REJECTED
+     */
+    @Test
+    public void invalid_percentile_non_happy_path() {
+        UUID metricId = saveAndUpdate(4.0);
+
+        assertThrows(IllegalArgumentException.class, () -> customStatsRepository.findStatsForMetric(
+                Collections.singletonList(metricId), Collections.singletonList(101.0)));
+    }
+
+
+    /**
+     * REQUESTING STATS FOR A METRIC THAT DOES NOT EXIST SHOULD THROW
+     */
+    @Test
+    public void stats_for_unknown_metric_non_happy_path() {
+        assertThrows(MetricDoestNotExistException.class, () ->
+                customStatsRepository.findStatsForMetric(Collections.singletonList(UUID.randomUUID())));
+    }
+
+
+    /**
+     * WINDOWED STATS SHOULD ONLY COVER VALUES TIMESTAMPED WITHIN EACH WINDOW
+     */
+    @Test
+    public void windowed_stats() {
+        Clock clock = Clock.fixed(Instant.ofEpochMilli(3_600_000), ZoneOffset.UTC);
+        CustomStatsRepository windowedStats = new CustomStatsRepository(metricLocks, "1m,1h", clock);
+        CustomMetricRepository repository = new CustomMetricRepository(ChunkedDoubleSeries::new, windowedStats,
+                metricLocks);
+
+        List<MetricItem> savedMetrics = repository.save(
+                new ArrayList<>(Arrays.asList(new SaveItemDTO("Apple", 10.0, StatsMode.EXACT, 0L))));
+        UUID metricId = savedMetrics.get(0).getId();
+        repository.update(new ArrayList<>(Arrays.asList(
+                new UpdateItemDTO(metricId, 20.0, 1_000_000L),
+                new UpdateItemDTO(metricId, 30.0, 3_570_000L))));
+
+        SummaryStatistics stats = windowedStats.findStatsForMetric(Collections.singletonList(metricId)).get(0);
+        assertThat(stats.getCount()).isEqualTo(3);
+        assertThat(stats.getWindows()).containsOnlyKeys("1m", "1h");
+        assertThat(stats.getWindows().get("1m").getCount()).isEqualTo(1);
+        assertThat(stats.getWindows().get("1m").getMean()).isEqualTo(30.0);
+        assertThat(stats.getWindows().get("1h").getCount()).isEqualTo(2);
+        assertThat(stats.getWindows().get("1h").getMedian()).isEqualTo(20.0);
+    }
+
+    /**
+     * READS WITHOUT WRITES IN BETWEEN SHOULD SHARE ONE SNAPSHOT , A WRITE SHOULD REPLACE IT
+     */
+    @Test
+    public void snapshot_reused_until_write() {
+        UUID metricId = saveAndUpdate(1.0, 2.0);
+        long version = customStatsRepository.statsVersion(metricId);
+
+        SummaryStatistics first = customStatsRepository.findStatsForMetric(Collections.singletonList(metricId)).get(0);
+        SummaryStatistics second = customStatsRepository.findStatsForMetric(Collections.singletonList(metricId)).get(0);
+        assertThat(second).isSameAs(first);
+
+        customMetricRepository.update(new ArrayList<>(Arrays.asList(new UpdateItemDTO(metricId, 3.0))));
+        SummaryStatistics third = customStatsRepository.findStatsForMetric(Collections.singletonList(metricId)).get(0);
+        assertThat(third).isNotSameAs(first);
+        assertThat(third.getCount()).isEqualTo(3);
+        assertThat(customStatsRepository.statsVersion(metricId)).isGreaterThan(version);
+        assertThat(customStatsRepository.statsVersion(UUID.randomUUID())).isEqualTo(-1);
+    }
+
+    /**
+     * AGGREGATES SHOULD MERGE MOMENTS OF EVERY METRIC AND QUANTILES OF APPROXIMATE METRICS ONLY
+     */
+    @Test
+    public void aggregate_stats() {
+        List<UUID> metricIds = new ArrayList<>();
+        for (int metric = 0; metric < 100; metric++) {
+            List<MetricItem> saved = customMetricRepository.save(new ArrayList<>(Arrays.asList(
+                    new SaveItemDTO("api.latency." + metric, metric * 100.0, StatsMode.APPROXIMATE))));
+            UUID metricId = saved.get(0).getId();
+            List<UpdateItemDTO> updates = new ArrayList<>();
+            for (int i = 1; i < 100; i++) {
+                updates.add(new UpdateItemDTO(metricId, metric * 100.0 + i));
+            }
+            customMetricRepository.update(updates);
+            metricIds.add(metricId);
+        }
+        UUID exactId = saveAndUpdate(-1.0, 20_000.0);
+        metricIds.add(exactId);
+        metricIds.add(UUID.randomUUID());
+
+        AggregateStatistics aggregate = customStatsRepository.aggregateStats(metricIds, Arrays.asList(50.0, 99.0));
+        assertThat(aggregate.getMetrics()).isEqualTo(101);
+        assertThat(aggregate.getQuantileMetrics()).isEqualTo(100);
+        assertThat(aggregate.getCount()).isEqualTo(10_002);
+        assertThat(aggregate.getMin()).isEqualTo(-1.0);
+        assertThat(aggregate.getMax()).isEqualTo(20_000.0);
+        assertThat(aggregate.getSum()).isEqualTo(9999.0 * 10_000 / 2 + 19_999.0);
+        assertThat(aggregate.getPercentiles().get("p50")).isCloseTo(5000.0, within(200.0));
+        assertThat(aggregate.getPercentiles().get("p99")).isCloseTo(9900.0, within(200.0));
+    }
+
+
+    /**
+     * A REQUEST ABOVE THE PARALLEL THRESHOLD SHOULD ANSWER IN REQUEST ORDER , NULL FOR UNKNOWN IDS WHEN PARTIAL
+     */
+    @Test
+    public void parallel_stats_in_request_order() {
+        CustomStatsRepository parallelStats = new CustomStatsRepository(metricLocks, "", Clock.systemUTC(), 8);
+        CustomMetricRepository repository =
+                new CustomMetricRepository(ChunkedDoubleSeries::new, parallelStats, metricLocks);
+        List<UUID> metricIds = new ArrayList<>();
+        for (int metric = 0; metric < 100; metric++) {
+            metricIds.add(repository.save(new ArrayList<>(Arrays.asList(
+                    new SaveItemDTO("api.latency." + metric, (double) metric)))).get(0).getId());
+            if (metric % 40 == 0) {
+                metricIds.add(UUID.randomUUID());
+            }
+        }
+
+        List<SummaryStatistics> stats =
+                parallelStats.findAvailableStats(metricIds, StatsRepository.DEFAULT_PERCENTILES);
+        assertThat(stats).hasSize(103);
+        int metric = 0;
+        for (int i = 0; i < stats.size(); i++) {
+            if (i == 1 || i == 42 || i == 83) {
+                assertThat(stats.get(i)).isNull();
+                continue;
+            }
+            assertThat(stats.get(i).getId()).isEqualTo(metricIds.get(i).toString());
+            assertThat(stats.get(i).getMax()).isEqualTo(metric++);
+        }
+        assertThrows(MetricDoestNotExistException.class, () -> parallelStats.findStatsForMetric(metricIds));
+    }
+
+
+    // Helper Method
+    private UUID saveAndUpdate(double first, double... rest) {
+        List<MetricItem> savedMetrics = customMetricRepository.save(
+                new ArrayList<>(Arrays.asList(new SaveItemDTO("Apple", first))));
+        UUID metricId = savedMetrics.get(0).getId();
+
+        for (double value : rest) {
+            customMetricRepository.update(new ArrayList<>(Arrays.asList(new UpdateItemDTO(metricId, value))));
+        }
+        return metricId;
+    }
+
+}
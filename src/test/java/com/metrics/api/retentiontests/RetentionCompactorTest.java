@@ -0,0 +1,152 @@
+package com.metrics.api.retentiontests;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.metrics.api.datatransferobjects.SaveItemDTO;
+import com.metrics.api.datatransferobjects.UpdateItemDTO;
+import com.metrics.api.model.MetricItem;
+import com.metrics.api.model.Rollup;
+import com.metrics.api.model.SummaryStatistics;
+import com.metrics.api.query.MetricValuesBody;
+import com.metrics.api.query.ValueQuery;
+import com.metrics.api.repository.CustomMetricRepository;
+import com.metrics.api.repository.CustomStatsRepository;
+import com.metrics.api.repository.MetricLocks;
+import com.metrics.api.retention.RetentionCompactor;
+import com.metrics.api.retention.RetentionPolicy;
+import com.metrics.api.storage.ChunkedDoubleSeries;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RetentionCompactorTest {
+
+    private MetricLocks metricLocks = new MetricLocks();
+
+    private CustomStatsRepository customStatsRepository = new CustomStatsRepository(metricLocks);
+
+    private CustomMetricRepository customMetricRepository =
+            new CustomMetricRepository(ChunkedDoubleSeries::new, customStatsRepository, metricLocks);
+
+    // Raw values are kept 10 minutes , at most 100 of them , older ones roll up per minute
+    private RetentionCompactor compactor = new RetentionCompactor(customMetricRepository, customStatsRepository,
+            new RetentionPolicy(Duration.ofMinutes(10), 100, Duration.ofMinutes(1), 0), 1000,
+            Clock.fixed(Instant.ofEpochMilli(3_600_000), ZoneOffset.UTC));
+
+
+    /**
+     * OLD VALUES SHOULD ROLL UP PER INTERVAL , RECENT ONES STAY RAW AND STATS STILL COVER EVERYTHING
+     */
+    @Test
+    public void compacts_old_values_into_rollups() {
+        UUID metricId = customMetricRepository.save(new ArrayList<>(Arrays.asList(
+                new SaveItemDTO("Apple", 0.0, null, 0L)))).get(0).getId();
+        List<UpdateItemDTO> updates = new ArrayList<>();
+        // One value per 30 seconds over the hour , the last 20 are younger than 10 minutes
+        for (int i = 1; i < 120; i++) {
+            updates.add(new UpdateItemDTO(metricId, (double) i, i * 30_000L));
+        }
+        customMetricRepository.update(updates);
+
+        assertThat(compactor.compactAll()).isEqualTo(100);
+        // Nothing left to compact until a quarter of the retained values is old enough
+        assertThat(compactor.compactAll()).isEqualTo(0);
+
+        MetricItem metricItem = customMetricRepository.find(metricId.toString());
+        assertThat(metricItem.getValues()).hasSize(20).startsWith(100.0).endsWith(119.0);
+        assertThat(metricItem.getTotalCount()).isEqualTo(120);
+        List<Rollup> rollups = metricItem.getRollups();
+        assertThat(rollups).hasSize(50);
+        assertThat(rollups.get(0).getStart()).isEqualTo(0L);
+        assertThat(rollups.get(0).getCount()).isEqualTo(2);
+        assertThat(rollups.get(0).getSum()).isEqualTo(1.0);
+
+        SummaryStatistics stats = customStatsRepository.findStatsForMetric(Collections.singletonList(metricId))
+                .get(0);
+        assertThat(stats.getCount()).isEqualTo(120);
+        assertThat(stats.getMin()).isEqualTo(0.0);
+
+        customMetricRepository.update(new ArrayList<>(Arrays.asList(new UpdateItemDTO(metricId, 120.0))));
+        assertThat(customMetricRepository.find(metricId.toString()).getTotalCount()).isEqualTo(121);
+    }
+
+
+    /**
+     * ROLLUPS SHOULD COME WITH THE FIRST PAGE OF VALUES ONLY , NOT WITH LATER PAGES OR A TIME RANGE
+     */
+    @Test
+    public void rollups_come_with_the_first_unfiltered_page() throws IOException {
+        UUID metricId = customMetricRepository.save(new ArrayList<>(Arrays.asList(
+                new SaveItemDTO("Apple", 0.0, null, 0L)))).get(0).getId();
+        List<UpdateItemDTO> updates = new ArrayList<>();
+        for (int i = 1; i < 120; i++) {
+            updates.add(new UpdateItemDTO(metricId, (double) i, i * 30_000L));
+        }
+        customMetricRepository.update(updates);
+        compactor.compactAll();
+
+        assertThat(page(metricId, new ValueQuery()).get("rollups")).hasSize(50);
+        assertThat(page(metricId, new ValueQuery(0, 5, null, null, null, false)).get("rollups")).hasSize(50);
+        assertThat(page(metricId, new ValueQuery(105, 5, null, null, null, false)).has("rollups")).isFalse();
+        assertThat(page(metricId, new ValueQuery(0, null, null, 3_300_000L, null, false)).has("rollups"))
+                .isFalse();
+    }
+
+
+    /**
+     * COMPACTION SHOULD LEAVE ONLY RETAINED VALUES IN THE MEDIAN , AND DROPPED ROLLUPS SHOULD STILL COUNT AFTER A
+     * REBUILD
+     */
+    @Test
+    public void compaction_bounds_median_and_keeps_dropped_rollups() {
+        RetentionCompactor limited = new RetentionCompactor(customMetricRepository, customStatsRepository,
+                new RetentionPolicy(Duration.ofMinutes(10), 100, Duration.ofMinutes(1), 5), 1000,
+                Clock.fixed(Instant.ofEpochMilli(3_600_000), ZoneOffset.UTC));
+        UUID metricId = customMetricRepository.save(new ArrayList<>(Arrays.asList(
+                new SaveItemDTO("Apple", 0.0, null, 0L)))).get(0).getId();
+        List<UpdateItemDTO> updates = new ArrayList<>();
+        for (int i = 1; i < 120; i++) {
+            updates.add(new UpdateItemDTO(metricId, (double) i, i * 30_000L));
+        }
+        customMetricRepository.update(updates);
+        long bytesBefore = customStatsRepository.estimatedBytes(metricId);
+
+        assertThat(limited.compactAll()).isEqualTo(100);
+        assertThat(customMetricRepository.find(metricId.toString()).getRollups()).hasSize(5);
+        assertThat(customStatsRepository.estimatedBytes(metricId)).isLessThan(bytesBefore);
+
+        SummaryStatistics stats = customStatsRepository.findStatsForMetric(Collections.singletonList(metricId))
+                .get(0);
+        assertThat(stats.getCount()).isEqualTo(120);
+        assertThat(stats.getMean()).isEqualTo(59.5);
+        assertThat(stats.getMin()).isEqualTo(0.0);
+        // Median of the 20 retained values 100 to 119
+        assertThat(stats.getMedian()).isEqualTo(109.5);
+
+        // Rebuilding like a restart does reports the same numbers
+        customMetricRepository.rebuildStats();
+        SummaryStatistics rebuilt = customStatsRepository.findStatsForMetric(Collections.singletonList(metricId))
+                .get(0);
+        assertThat(rebuilt.getCount()).isEqualTo(120);
+        assertThat(rebuilt.getMean()).isEqualTo(59.5);
+        assertThat(rebuilt.getMedian()).isEqualTo(109.5);
+    }
+
+    // Helper Method
+    private JsonNode page(UUID metricId, ValueQuery query) throws IOException {
+        MetricItem metricItem = customMetricRepository.find(metricId.toString());
+        ObjectMapper objectMapper = new ObjectMapper();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        new MetricValuesBody(objectMapper.getFactory(), metricItem, customMetricRepository.retained(metricItem),
+                query).writeTo(body);
+        return objectMapper.readTree(body.toByteArray());
+    }
+}
@@ -0,0 +1,90 @@
+package com.metrics.api.statisticstests;
+
+import com.metrics.api.statistics.KllSketch;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class KllSketchTest {
+
+
+    /**
+     * QUANTILES OF A SHUFFLED 0..N-1 STREAM SHOULD BE WITHIN THE DOCUMENTED RANK ERROR
+     */
+    @Test
+    public void quantiles_within_rank_error() {
+        int count = 1_000_000;
+        KllSketch sketch = new KllSketch(KllSketch.DEFAULT_K, new SplittableRandom(42));
+        for (double value : shuffled(count, 7)) {
+            sketch.add(value);
+        }
+
+        double allowed = sketch.rankErrorBound() * count;
+        for (double quantile : new double[]{0.01, 0.5, 0.9, 0.99, 0.999}) {
+            // Value i has rank i, so the answer itself tells how far off the rank is
+            assertThat(Math.abs(sketch.quantile(quantile) - quantile * count)).isLessThanOrEqualTo(allowed);
+        }
+        assertThat(sketch.quantile(0)).isEqualTo(0.0);
+        assertThat(sketch.quantile(1)).isEqualTo(count - 1.0);
+    }
+
+
+    /**
+     * MEMORY SHOULD STAY BOUNDED WHATEVER THE NUMBER OF VALUES ADDED
+     */
+    @Test
+    public void memory_is_bounded() {
+        KllSketch sketch = new KllSketch();
+        Random random = new Random(11);
+        for (int i = 0; i < 100_000; i++) {
+            sketch.add(random.nextDouble());
+        }
+        long smallBytes = sketch.estimatedBytes();
+        for (int i = 0; i < 2_000_000; i++) {
+            sketch.add(random.nextDouble());
+        }
+
+        assertThat(sketch.getCount()).isEqualTo(2_100_000);
+        assertThat(sketch.estimatedBytes()).isLessThan(smallBytes * 2);
+        assertThat(sketch.estimatedBytes()).isLessThan(32 * 1024);
+    }
+
+
+    /**
+     * MERGING TWO SKETCHES SHOULD ANSWER FOR THE UNION OF BOTH STREAMS
+     */
+    @Test
+    public void merge_two_sketches() {
+        int count = 200_000;
+        double[] values = shuffled(count, 3);
+        KllSketch left = new KllSketch(KllSketch.DEFAULT_K, new SplittableRandom(1));
+        KllSketch right = new KllSketch(KllSketch.DEFAULT_K, new SplittableRandom(2));
+        for (int i = 0; i < count; i++) {
+            (i % 2 == 0 ? left : right).add(values[i]);
+        }
+        left.merge(right);
+
+        assertThat(left.getCount()).isEqualTo(count);
+        assertThat(Math.abs(left.quantile(0.5) - count / 2.0)).isLessThanOrEqualTo(left.rankErrorBound() * count);
+    }
+
+
+    private double[] shuffled(int count, long seed) {
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = i;
+        }
+        Random random = new Random(seed);
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            double swap = values[i];
+            values[i] = values[j];
+            values[j] = swap;
+        }
+        return values;
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.metrics.api.statisticstests;
+
+import com.metrics.api.statistics.RunningMoments;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class RunningMomentsTest {
+
+
+    /**
+     * COMPENSATED SUM SHOULD KEEP SMALL VALUES ADDED TO A VERY LARGE ONE
+     */
+    @Test
+    public void compensated_sum_keeps_precision() {
+        RunningMoments moments = new RunningMoments();
+        moments.add(1e16);
+        for (int i = 0; i < 1000; i++) {
+            moments.add(1.0);
+        }
+        moments.add(-1e16);
+
+        assertThat(moments.getCount()).isEqualTo(1002);
+        assertThat(moments.getSum()).isEqualTo(1000.0);
+    }
+
+
+    /**
+     * VARIANCE SHOULD STAY ACCURATE FOR VALUES WITH A LARGE OFFSET
+     */
+    @Test
+    public void variance_with_large_offset() {
+        RunningMoments moments = new RunningMoments();
+        double[] values = {4.0, 7.0, 13.0, 16.0};
+        for (double value : values) {
+            moments.add(1e9 + value);
+        }
+
+        assertThat(moments.getMean()).isEqualTo(1e9 + 10.0);
+        assertThat(moments.getVariance()).isCloseTo(22.5, within(1e-6));
+        assertThat(moments.getMin()).isEqualTo(1e9 + 4.0);
+        assertThat(moments.getMax()).isEqualTo(1e9 + 16.0);
+    }
+
+
+    /**
+     * MERGING TWO ACCUMULATORS SHOULD MATCH ADDING EVERY VALUE TO ONE
+     */
+    @Test
+    public void merge_matches_single_accumulator() {
+        RunningMoments all = new RunningMoments();
+        RunningMoments left = new RunningMoments();
+        RunningMoments right = new RunningMoments();
+        for (int i = 0; i < 100; i++) {
+            double value = i * 1.5 - 20;
+            all.add(value);
+            (i % 3 == 0 ? left : right).add(value);
+        }
+        left.merge(right);
+        left.merge(new RunningMoments());
+
+        assertThat(left.getCount()).isEqualTo(all.getCount());
+        assertThat(left.getSum()).isEqualTo(all.getSum());
+        assertThat(left.getMean()).isCloseTo(all.getMean(), within(1e-9));
+        assertThat(left.getVariance()).isCloseTo(all.getVariance(), within(1e-9));
+        assertThat(left.getMin()).isEqualTo(-20.0);
+        assertThat(left.getMax()).isEqualTo(all.getMax());
+    }
+
+}
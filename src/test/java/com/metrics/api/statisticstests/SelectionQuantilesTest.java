@@ -0,0 +1,66 @@
+package com.metrics.api.statisticstests;
+
+import com.metrics.api.statistics.SelectionQuantiles;
+import com.metrics.api.statistics.StreamingMedian;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class SelectionQuantilesTest {
+
+
+    /**
+     * EVERY QUANTILE SHOULD MATCH THE ONE INTERPOLATED FROM A SORTED COPY , DUPLICATES INCLUDED
+     */
+    @Test
+    public void quantiles_match_sorted_values() {
+        SplittableRandom random = new SplittableRandom(3);
+        for (int count : new int[]{1, 2, 15, 16, 17, 1000, 100_001}) {
+            SelectionQuantiles quantiles = new SelectionQuantiles();
+            StreamingMedian median = new StreamingMedian();
+            double[] values = new double[count];
+            for (int i = 0; i < count; i++) {
+                // Few distinct values half of the time , to exercise the equal partitions
+                values[i] = i % 2 == 0 ? random.nextInt(5) : random.nextDouble() * 1000;
+                quantiles.add(values[i]);
+                median.add(values[i]);
+            }
+            Arrays.sort(values);
+
+            for (double quantile : new double[]{0, 0.01, 0.25, 0.5, 0.9, 0.99, 0.999, 1}) {
+                double rank = (count - 1) * quantile;
+                int lower = (int) Math.floor(rank);
+                double expected = lower == rank ? values[lower]
+                        : values[lower] + (rank - lower) * (values[lower + 1] - values[lower]);
+                assertThat(quantiles.quantile(quantile)).isEqualTo(expected);
+            }
+            assertThat(quantiles.quantile(0.5)).isEqualTo(median.getMedian());
+        }
+    }
+
+
+    /**
+     * AN ANSWER SHOULD BE REUSED UNTIL THE NEXT WRITE , THEN REFLECT IT
+     */
+    @Test
+    public void answers_follow_writes() {
+        SelectionQuantiles quantiles = new SelectionQuantiles();
+        assertThat(quantiles.quantile(0.5)).isNull();
+
+        for (int i = 1; i <= 9; i++) {
+            quantiles.add(i);
+        }
+        assertThat(quantiles.quantile(0.5)).isEqualTo(5.0);
+        assertThat(quantiles.quantile(0.5)).isEqualTo(5.0);
+
+        quantiles.add(100);
+        assertThat(quantiles.quantile(0.5)).isEqualTo(5.5);
+        assertThat(quantiles.quantile(1)).isEqualTo(100.0);
+        assertThat(quantiles.size()).isEqualTo(10);
+        assertThrows(IllegalArgumentException.class, () -> quantiles.quantile(1.5));
+    }
+}
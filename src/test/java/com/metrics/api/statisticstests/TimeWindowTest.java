@@ -0,0 +1,69 @@
+package com.metrics.api.statisticstests;
+
+import com.metrics.api.model.WindowStatistics;
+import com.metrics.api.statistics.TimeWindow;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TimeWindowTest {
+
+
+    /**
+     * ONLY VALUES TIMESTAMPED WITHIN THE WINDOW SHOULD BE SUMMARIZED
+     */
+    @Test
+    public void window_slides_with_time() {
+        TimeWindow window = new TimeWindow(Duration.ofMinutes(1));
+        window.add(0, 100.0);
+        window.add(30_000, 1.0);
+        window.add(59_000, 3.0);
+
+        WindowStatistics first = window.summarize(59_999);
+        assertThat(first.getCount()).isEqualTo(3);
+        assertThat(first.getMax()).isEqualTo(100.0);
+
+        WindowStatistics later = window.summarize(60_000);
+        assertThat(later.getCount()).isEqualTo(2);
+        assertThat(later.getMean()).isEqualTo(2.0);
+        assertThat(later.getMin()).isEqualTo(1.0);
+        assertThat(later.getMax()).isEqualTo(3.0);
+
+        assertThat(window.summarize(200_000).getCount()).isEqualTo(0);
+    }
+
+
+    /**
+     * LATE VALUES STILL INSIDE THE WINDOW ARE KEPT , OLDER ONES ARE DROPPED
+     */
+    @Test
+    public void late_values() {
+        TimeWindow window = new TimeWindow(Duration.ofSeconds(1));
+        window.add(5_000, 1.0);
+        window.add(4_500, 2.0);
+        window.add(3_000, 50.0);
+
+        WindowStatistics stats = window.summarize(5_000);
+        assertThat(stats.getCount()).isEqualTo(2);
+        assertThat(stats.getMax()).isEqualTo(2.0);
+    }
+
+
+    /**
+     * MEMORY SHOULD NOT GROW WITH THE NUMBER OF VALUES
+     */
+    @Test
+    public void memory_bounded_by_buckets() {
+        TimeWindow window = new TimeWindow(Duration.ofHours(1));
+        for (int i = 0; i < 1_000_000; i++) {
+            window.add(i * 7L, i);
+        }
+
+        WindowStatistics stats = window.summarize(7_000_000);
+        assertThat(stats.getCount()).isEqualTo(485_714);
+        assertThat(window.estimatedBytes()).isLessThan(64 * 1024);
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.metrics.api.storagetests;
+
+import com.metrics.api.storage.ChunkedDoubleSeries;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ChunkedDoubleSeriesTest {
+
+
+    /**
+     * VALUES APPENDED ACROSS SEVERAL CHUNKS SHOULD BE READ BACK IN INSERTION ORDER
+     */
+    @Test
+    public void append_across_chunks() {
+        ChunkedDoubleSeries series = new ChunkedDoubleSeries();
+        int count = 10_000;
+        for (int i = 0; i < count; i++) {
+            series.append(1000L + i, i);
+        }
+
+        assertThat(series.size()).isEqualTo(count);
+        assertThat(series.get(0)).isEqualTo(0.0);
+        assertThat(series.get(4096)).isEqualTo(4096.0);
+        assertThat(series.get(count - 1)).isEqualTo(count - 1.0);
+
+        double[] sum = new double[1];
+        series.forEach(value -> sum[0] += value);
+        assertThat(sum[0]).isEqualTo((count - 1.0) * count / 2);
+        assertThat(series.getTimestamp(4096)).isEqualTo(5096L);
+    }
+
+
+    /**
+     * BULK APPEND SHOULD BEHAVE LIKE APPENDING EACH VALUE
+     */
+    @Test
+    public void append_all_across_chunks() {
+        ChunkedDoubleSeries series = new ChunkedDoubleSeries();
+        series.append(0L, -1.0);
+
+        long[] timestamps = new long[9000];
+        double[] batch = new double[9000];
+        for (int i = 0; i < batch.length; i++) {
+            timestamps[i] = i + 1;
+            batch[i] = i;
+        }
+        series.appendAll(timestamps, batch, 0, batch.length);
+
+        double[] copy = series.toArray();
+        assertThat(copy.length).isEqualTo(9001);
+        assertThat(copy[0]).isEqualTo(-1.0);
+        assertThat(copy[9000]).isEqualTo(8999.0);
+
+        long[] previous = {-1};
+        series.forEachTimestamped((timestamp, value) -> {
+            assertThat(timestamp).isEqualTo(previous[0] + 1);
+            assertThat(value).isEqualTo(timestamp - 1.0);
+            previous[0] = timestamp;
+        });
+        assertThat(previous[0]).isEqualTo(9000L);
+    }
+
+
+    /**
+     * LIST VIEW IS READ ONLY AND ONLY SEES THE VALUES PRESENT WHEN IT WAS CREATED
+     */
+    @Test
+    public void list_view_is_read_only_snapshot() {
+        ChunkedDoubleSeries series = new ChunkedDoubleSeries();
+        series.append(1L, 1.0);
+        series.append(2L, 2.0);
+
+        List<Double> view = series.asList();
+        series.append(3L, 3.0);
+
+        assertThat(view).containsExactly(1.0, 2.0);
+        assertThrows(UnsupportedOperationException.class, () -> view.add(4.0));
+        assertThrows(IndexOutOfBoundsException.class, () -> series.get(3));
+    }
+
+}
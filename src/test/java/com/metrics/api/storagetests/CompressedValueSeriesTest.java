@@ -0,0 +1,101 @@
+package com.metrics.api.storagetests;
+
+import com.metrics.api.storage.ChunkedDoubleSeries;
+import com.metrics.api.storage.CompressedValueSeries;
+import com.metrics.api.storage.ValueCursor;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CompressedValueSeriesTest {
+
+
+    /**
+     * EVERY VALUE AND TIMESTAMP SHOULD COME BACK BIT FOR BIT , WHATEVER THE JITTER OR THE VALUE
+     */
+    @Test
+    public void round_trip_across_blocks() {
+        double[] special = {0.0, -0.0, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+                Double.MIN_VALUE, Double.MAX_VALUE, 1e-300};
+        SplittableRandom random = new SplittableRandom(11);
+        ChunkedDoubleSeries expected = new ChunkedDoubleSeries();
+        CompressedValueSeries series = new CompressedValueSeries();
+
+        long timestamp = 1_600_000_000_000L;
+        double value = 100.0;
+        for (int i = 0; i < 5000; i++) {
+            // Steady rate , small and large jitter , clock going backwards
+            int kind = random.nextInt(10);
+            timestamp += kind < 6 ? 1000
+                    : kind < 8 ? random.nextInt(-3000, 3000) : random.nextLong(-1L << 40, 1L << 40);
+            value = kind < 4 ? value : kind < 8 ? value + random.nextDouble() : kind == 8
+                    ? special[random.nextInt(special.length)] : Double.longBitsToDouble(random.nextLong());
+            expected.append(timestamp, value);
+            if (i % 700 == 0) {
+                series.appendAll(new long[]{timestamp}, new double[]{value}, 0, 1);
+            } else {
+                series.append(timestamp, value);
+            }
+        }
+
+        assertThat(series.size()).isEqualTo(5000);
+        ValueCursor cursor = series.cursor(0, series.size());
+        for (int i = 0; i < 5000; i++) {
+            assertThat(cursor.next()).isTrue();
+            assertThat(cursor.timestamp()).isEqualTo(expected.getTimestamp(i));
+            assertThat(Double.doubleToRawLongBits(cursor.value()))
+                    .isEqualTo(Double.doubleToRawLongBits(expected.get(i)));
+            assertThat(Double.doubleToRawLongBits(series.get(i)))
+                    .isEqualTo(Double.doubleToRawLongBits(expected.get(i)));
+        }
+        assertThat(cursor.next()).isFalse();
+        assertThat(series.getTimestamp(1500)).isEqualTo(expected.getTimestamp(1500));
+    }
+
+
+    /**
+     * A CURSOR SHOULD START ANYWHERE , ALSO INSIDE A SEALED BLOCK , AND STOP AT ITS END
+     */
+    @Test
+    public void cursor_over_a_range() {
+        CompressedValueSeries series = new CompressedValueSeries();
+        long[] timestamps = new long[3000];
+        double[] values = new double[3000];
+        for (int i = 0; i < values.length; i++) {
+            timestamps[i] = i * 10L;
+            values[i] = i;
+        }
+        series.appendAll(timestamps, values, 0, values.length);
+
+        ValueCursor cursor = series.cursor(1000, 2050);
+        double sum = 0;
+        int count = 0;
+        while (cursor.next()) {
+            assertThat(cursor.timestamp()).isEqualTo((long) cursor.value() * 10);
+            sum += cursor.value();
+            count++;
+        }
+        assertThat(count).isEqualTo(1050);
+        assertThat(sum).isEqualTo((1000.0 + 2049.0) * 1050 / 2);
+        assertThat(series.toArray()).containsExactly(values);
+        assertThrows(IndexOutOfBoundsException.class, () -> series.cursor(0, 3001));
+    }
+
+
+    /**
+     * A STEADY SERIES OF REPEATED OR CLOSE VALUES SHOULD TAKE A FEW BYTES PER VALUE
+     */
+    @Test
+    public void steady_series_compresses() {
+        CompressedValueSeries series = new CompressedValueSeries();
+        for (int i = 0; i < 100_000; i++) {
+            series.append(1_600_000_000_000L + i * 1000L, 20.0 + (i / 50) * 0.5);
+        }
+
+        assertThat(series.estimatedHeapBytes()).isLessThan(100_000L * 2);
+        assertThat(series.get(99_999)).isEqualTo(20.0 + 1999 * 0.5);
+    }
+}
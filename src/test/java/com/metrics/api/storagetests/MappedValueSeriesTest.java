@@ -0,0 +1,80 @@
+package com.metrics.api.storagetests;
+
+import com.metrics.api.storage.MappedValueSeries;
+import com.metrics.api.storage.SegmentArena;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MappedValueSeriesTest {
+
+    @TempDir
+    Path directory;
+
+
+    /**
+     * VALUES SPREAD ACROSS BLOCKS AND SEGMENT FILES SHOULD BE READ BACK IN INSERTION ORDER
+     */
+    @Test
+    public void append_across_blocks_and_segments() {
+        SegmentArena arena = new SegmentArena(directory, 1 << 16);
+        MappedValueSeries first = new MappedValueSeries(arena);
+        MappedValueSeries second = new MappedValueSeries(arena);
+        int count = 20_000;
+        for (int i = 0; i < count; i++) {
+            first.append(i, i);
+            second.append(-i, -i);
+        }
+
+        assertThat(first.size()).isEqualTo(count);
+        assertThat(first.get(4087)).isEqualTo(4087.0);
+        assertThat(first.get(4088)).isEqualTo(4088.0);
+        assertThat(first.getTimestamp(count - 1)).isEqualTo(count - 1L);
+        assertThat(second.get(count - 1)).isEqualTo(1.0 - count);
+        assertThat(arena.mappedBytes()).isGreaterThan(1 << 16);
+
+        long[] previous = {-1};
+        first.forEachTimestamped((timestamp, value) -> {
+            assertThat(timestamp).isEqualTo(previous[0] + 1);
+            assertThat(value).isEqualTo((double) timestamp);
+            previous[0] = timestamp;
+        });
+        assertThat(first.asList()).hasSize(count);
+        arena.close();
+    }
+
+
+    /**
+     * BLOCKS OF A RELEASED SERIES SHOULD BE REUSED ONCE ITS LAST READER IS DONE , WITHOUT MAPPING MORE SPACE
+     */
+    @Test
+    public void released_blocks_are_reused() {
+        SegmentArena arena = new SegmentArena(directory, 1 << 16);
+        MappedValueSeries replaced = new MappedValueSeries(arena);
+        for (int i = 0; i < 1000; i++) {
+            replaced.append(i, i);
+        }
+        long mapped = arena.mappedBytes();
+
+        replaced.retain();
+        replaced.release();
+        // A reader still holds the series
+        assertThat(arena.freeBytes()).isEqualTo(0);
+        assertThat(replaced.get(999)).isEqualTo(999.0);
+        replaced.release();
+        assertThat(arena.freeBytes()).isGreaterThan(0);
+
+        MappedValueSeries next = new MappedValueSeries(arena);
+        for (int i = 0; i < 1000; i++) {
+            next.append(-i, -i);
+        }
+        assertThat(arena.freeBytes()).isEqualTo(0);
+        assertThat(arena.mappedBytes()).isEqualTo(mapped);
+        assertThat(next.get(999)).isEqualTo(-999.0);
+        arena.close();
+    }
+
+}
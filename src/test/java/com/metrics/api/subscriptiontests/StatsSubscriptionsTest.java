@@ -0,0 +1,188 @@
+package com.metrics.api.subscriptiontests;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.metrics.api.datatransferobjects.SaveItemDTO;
+import com.metrics.api.datatransferobjects.UpdateItemDTO;
+import com.metrics.api.model.MetricItem;
+import com.metrics.api.model.SummaryStatistics;
+import com.metrics.api.repository.CustomMetricRepository;
+import com.metrics.api.repository.CustomStatsRepository;
+import com.metrics.api.repository.MetricLocks;
+import com.metrics.api.storage.ChunkedDoubleSeries;
+import com.metrics.api.subscription.StatsSubscriptions;
+import com.metrics.api.subscription.TooManySubscribersException;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class StatsSubscriptionsTest {
+
+    private MetricLocks metricLocks = new MetricLocks();
+
+    private CustomStatsRepository statsRepository = new CustomStatsRepository(metricLocks);
+
+    private CustomMetricRepository metricRepository =
+            new CustomMetricRepository(ChunkedDoubleSeries::new, statsRepository, metricLocks);
+
+    private StatsSubscriptions subscriptions = new StatsSubscriptions(statsRepository, new ObjectMapper(), 100, 2,
+            60_000);
+
+
+    /**
+     * EVERY SUBSCRIBER SHOULD GET THE CURRENT STATS , THEN ONE COALESCED EVENT PER ROUND FOR CHANGED METRICS ONLY
+     */
+    @Test
+    public void coalesced_updates() {
+        UUID apple = save("Apple");
+        UUID pear = save("Pear");
+        RecordingEmitter first = new RecordingEmitter();
+        RecordingEmitter second = new RecordingEmitter();
+        subscriptions.subscribe(Arrays.asList(apple, pear), first);
+        subscriptions.subscribe(Collections.singletonList(pear), second);
+
+        assertThat(subscriptions.publish()).isEqualTo(3);
+        assertThat(subscriptions.publish()).isEqualTo(0);
+
+        for (int i = 0; i < 100; i++) {
+            metricRepository.update(new ArrayList<>(Arrays.asList(new UpdateItemDTO(pear, (double) i))));
+        }
+        assertThat(subscriptions.publish()).isEqualTo(2);
+        assertThat(first.events).isEqualTo(3);
+        assertThat(second.events).isEqualTo(2);
+    }
+
+    /**
+     * THE STATS OF A METRIC WHOSE VERSION DID NOT MOVE SHOULD NOT BE READ AGAIN ON LATER ROUNDS
+     */
+    @Test
+    public void unchanged_metric_is_not_read_again() {
+        AtomicInteger reads = new AtomicInteger();
+        CustomStatsRepository counting = new CustomStatsRepository(metricLocks) {
+            @Override
+            public List<SummaryStatistics> findStatsForMetric(List<UUID> uuids, List<Double> percentiles) {
+                reads.incrementAndGet();
+                return super.findStatsForMetric(uuids, percentiles);
+            }
+        };
+        CustomMetricRepository repository =
+                new CustomMetricRepository(ChunkedDoubleSeries::new, counting, metricLocks);
+        StatsSubscriptions idle = new StatsSubscriptions(counting, new ObjectMapper(), 100, 2, 60_000);
+        UUID apple = repository.save(new ArrayList<>(Arrays.asList(new SaveItemDTO("Apple", 1.0)))).get(0).getId();
+        RecordingEmitter emitter = new RecordingEmitter();
+        idle.subscribe(Collections.singletonList(apple), emitter);
+
+        assertThat(idle.publish()).isEqualTo(1);
+        for (int i = 0; i < 10; i++) {
+            assertThat(idle.publish()).isEqualTo(0);
+        }
+        assertThat(reads.get()).isEqualTo(1);
+
+        repository.update(new ArrayList<>(Arrays.asList(new UpdateItemDTO(apple, 2.0))));
+        assertThat(idle.publish()).isEqualTo(1);
+        assertThat(idle.publish()).isEqualTo(0);
+        assertThat(reads.get()).isEqualTo(2);
+        assertThat(emitter.events).isEqualTo(2);
+    }
+
+    /**
+     * A SUBSCRIBER WHOSE CONNECTION FAILED SHOULD BE DROPPED , SUBSCRIBERS ABOVE THE LIMIT REJECTED
+     */
+    @Test
+    public void failed_and_excess_subscribers() {
+        UUID apple = save("Apple");
+        RecordingEmitter broken = new RecordingEmitter();
+        broken.failing = true;
+        subscriptions.subscribe(Collections.singletonList(apple), broken);
+        subscriptions.subscribe(Collections.singletonList(apple), new RecordingEmitter());
+
+        assertThrows(TooManySubscribersException.class,
+                () -> subscriptions.subscribe(Collections.singletonList(apple), new RecordingEmitter()));
+
+        // Both events are queued , the broken subscriber is dropped when its flush fails
+        assertThat(subscriptions.publish()).isEqualTo(2);
+        assertThat(subscriptions.subscriberCount()).isEqualTo(1);
+    }
+
+
+    /**
+     * A SUBSCRIBER THAT STOPS READING SHOULD NEITHER STALL THE PUBLISHER NOR THE OTHER SUBSCRIBERS , AND BE DROPPED
+     * ONCE IT FELL BEHIND
+     */
+    @Test
+    public void slow_subscriber_does_not_stall_others() throws Exception {
+        ExecutorService sender = Executors.newFixedThreadPool(2);
+        StatsSubscriptions async = new StatsSubscriptions(statsRepository, new ObjectMapper(), 100, 10, 60_000,
+                50, sender);
+        UUID apple = save("Apple");
+        RecordingEmitter stuck = new RecordingEmitter();
+        stuck.blocked = new CountDownLatch(1);
+        RecordingEmitter fast = new RecordingEmitter();
+        async.subscribe(Collections.singletonList(apple), stuck);
+        async.subscribe(Collections.singletonList(apple), fast);
+
+        assertThat(async.publish()).isEqualTo(2);
+        fast.awaitEvents(1);
+
+        Thread.sleep(100);
+        metricRepository.update(new ArrayList<>(Arrays.asList(new UpdateItemDTO(apple, 2.0))));
+        // The stuck subscriber is dropped without waiting for its write , the fast one gets the update
+        assertThat(async.publish()).isEqualTo(1);
+        assertThat(async.subscriberCount()).isEqualTo(1);
+        fast.awaitEvents(2);
+
+        stuck.blocked.countDown();
+        sender.shutdown();
+        assertThat(sender.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(stuck.events).isEqualTo(1);
+    }
+
+
+    // Helper Method
+    private UUID save(String name) {
+        List<MetricItem> savedMetrics = metricRepository.save(
+                new ArrayList<>(Arrays.asList(new SaveItemDTO(name, 1.0))));
+        return savedMetrics.get(0).getId();
+    }
+
+    private static class RecordingEmitter extends SseEmitter {
+
+        private volatile int events;
+        private boolean failing;
+        // Holds every send until counted down , like a client that stopped reading
+        private CountDownLatch blocked;
+
+        @Override
+        public synchronized void send(SseEventBuilder builder) throws IOException {
+            if (failing) {
+                throw new IOException("Broken pipe");
+            }
+            if (blocked != null) {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            events++;
+            notifyAll();
+        }
+
+        private synchronized void awaitEvents(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (events < count && System.currentTimeMillis() < deadline) {
+                wait(100);
+            }
+            assertThat(events).isEqualTo(count);
+        }
+    }
+}